@@ -0,0 +1,69 @@
+package com.rahman.shard.OpenStackShard;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import com.rahman.arctic.shard.objects.ArcticHostSO;
+import com.rahman.arctic.shard.objects.ArcticVolumeSO;
+
+/**
+ * Spots volumes that exist only to be one host's root disk. Those are not built by Cinder
+ * up front, instead the host boots with an image to volume block device mapping and Nova
+ * creates the volume as part of the boot.
+ * <p>
+ * A volume qualifies when it is bootable, has an image and is attached to exactly one host.
+ * The decision is made once, by the volume's task when it runs, after every volume and host
+ * of the range has been registered by the build* methods. The host follows whatever the
+ * volume task did.
+ */
+public class BootVolumePlanner {
+
+	private volatile boolean enabled = true;
+	private final ConcurrentMap<String, ArcticVolumeSO> volumes = new ConcurrentHashMap<>();
+	private final ConcurrentMap<String, Set<String>> hosts = new ConcurrentHashMap<>();
+	
+	/**
+	 * @param enabled False to always build bootable volumes through Cinder first
+	 */
+	public void setEnabled(boolean enabled) {
+		this.enabled = enabled;
+	}
+	
+	public void registerVolume(ArcticVolumeSO av) {
+		volumes.put(key(av.getRangeId(), av.getName()), av);
+	}
+	
+	public void registerHost(ArcticHostSO ah) {
+		for(String volume : ah.getVolumes()) {
+			hosts.computeIfAbsent(key(ah.getRangeId(), volume), k -> ConcurrentHashMap.newKeySet()).add(ah.getName());
+		}
+	}
+	
+	/**
+	 * @param rangeId Range the volume belongs to
+	 * @param name Name of the volume
+	 * @return True if Nova should create the volume while booting its host
+	 */
+	public boolean isInlineRootDisk(String rangeId, String name) {
+		if(!enabled) return false;
+		String key = key(rangeId, name);
+		ArcticVolumeSO av = volumes.get(key);
+		Set<String> users = hosts.get(key);
+		return av != null && av.isBootable() && av.getImageId() != null && users != null && users.size() == 1;
+	}
+	
+	/**
+	 * Drops what was registered for the range
+	 * @param rangeId Range that finished building or was torn down
+	 */
+	public void forget(String rangeId) {
+		volumes.keySet().removeIf(k -> k.startsWith(rangeId + "/"));
+		hosts.keySet().removeIf(k -> k.startsWith(rangeId + "/"));
+	}
+	
+	private static String key(String rangeId, String name) {
+		return rangeId + "/" + name;
+	}
+	
+}
@@ -0,0 +1,164 @@
+package com.rahman.shard.OpenStackShard;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Function;
+
+import org.openstack4j.api.Builders;
+import org.openstack4j.model.network.IPVersionType;
+import org.openstack4j.model.network.Network;
+import org.openstack4j.model.network.Subnet;
+
+import com.rahman.arctic.shard.objects.ArcticNetworkSO;
+import com.rahman.shard.OpenStackShard.bulk.BulkBatcher;
+import com.rahman.shard.OpenStackShard.bulk.NeutronBulkService;
+import com.rahman.shard.OpenStackShard.client.OpenStackClients;
+import com.rahman.shard.OpenStackShard.client.OpenStackService;
+
+/**
+ * Builds a range's networks in two separate stages. Networks are created first, batched per
+ * range into Neutron bulk creates. Once a network is ACTIVE its subnet is created, again batched
+ * per range, and only then is the network reported ready.
+ * <p>
+ * Anything that needs a network's subnet can wait on {@link #whenReady(String, String)} rather
+ * than on the whole network task, so it is released the moment that one subnet exists. The
+ * futures of a range are kept until {@link #forget(String)}, once its build finished or it
+ * is torn down. Waiting on a forgotten range fails straight away instead of waiting on a
+ * network that will never be built, until {@link #started(String)} reports a rebuild, which
+ * starts with fresh futures.
+ */
+public class NetworkPipeline {
+
+	private final BulkBatcher<String, Network, Network> networks;
+	private final BulkBatcher<String, Subnet, Subnet> subnets;
+	private final ConcurrentMap<String, CompletableFuture<Network>> ready = new ConcurrentHashMap<>();
+	private final Set<String> forgotten = ConcurrentHashMap.newKeySet();
+	
+	/**
+	 * @param clients Clients of the target each range is built on
+	 * @param maxBatch Most networks or subnets sent in one bulk request
+	 * @param lingerMillis How long a batch waits for more networks or subnets of the same range
+	 */
+	public NetworkPipeline(Function<String, OpenStackClients> clients, NeutronBulkService bulk, int maxBatch, long lingerMillis) {
+		this.networks = new BulkBatcher<>("Network", maxBatch, lingerMillis,
+				(rangeId, nets) -> new ArrayList<>(clients.apply(rangeId).call(OpenStackService.NETWORK, "networks.bulkCreate", c -> bulk.createNetworks(nets))),
+				(rangeId, net) -> clients.apply(rangeId).call(OpenStackService.NETWORK, "networks.create", c -> c.networking().network().create(net)));
+		this.subnets = new BulkBatcher<>("Subnet", maxBatch, lingerMillis,
+				(rangeId, subs) -> new ArrayList<>(clients.apply(rangeId).call(OpenStackService.NETWORK, "subnets.bulkCreate", c -> bulk.createSubnets(subs))),
+				(rangeId, sub) -> clients.apply(rangeId).call(OpenStackService.NETWORK, "subnets.create", c -> c.networking().subnet().create(sub)));
+	}
+	
+	/**
+	 * Creates the network, without its subnet
+	 * @param an Network to create
+	 * @return The created network
+	 */
+	public Network createNetwork(ArcticNetworkSO an) {
+		return BulkBatcher.await(networks.submit(an.getRangeId(), Builders.network()
+				.name(an.getName())
+				.adminStateUp(true)
+				.build()));
+	}
+	
+	/**
+	 * Creates the subnet of a network that is already ACTIVE and reports the network ready
+	 * @param an Network the subnet belongs to
+	 * @param net Network returned by {@link #createNetwork(ArcticNetworkSO)}
+	 * @return The created subnet
+	 */
+	public Subnet createSubnet(ArcticNetworkSO an, Network net) {
+		Subnet s = BulkBatcher.await(subnets.submit(an.getRangeId(), Builders.subnet()
+				.name(subnetName(an))
+				.networkId(net.getId())
+				.enableDHCP(true)
+				.addPool(an.getIpRangeStart(), an.getIpRangeEnd())
+				.ipVersion(IPVersionType.V4)
+				.cidr(an.getIpCidr())
+				.gateway(an.getIpGateway())
+				.build()));
+		net.getSubnets().add(s.getId());
+		future(an.getRangeId(), an.getName()).complete(net);
+		return s;
+	}
+	
+	/**
+	 * Reports a network ready with a subnet that already existed
+	 * @param an Network the subnet belongs to
+	 * @param net Network the subnet was created on
+	 * @param s Existing subnet
+	 */
+	public void adoptSubnet(ArcticNetworkSO an, Network net, Subnet s) {
+		if(!net.getSubnets().contains(s.getId())) net.getSubnets().add(s.getId());
+		future(an.getRangeId(), an.getName()).complete(net);
+	}
+	
+	/**
+	 * @return Name given to the subnet of the network
+	 */
+	public static String subnetName(ArcticNetworkSO an) {
+		return an.getName() + "-Subnet";
+	}
+	
+	/**
+	 * Reports that a network will never become ready
+	 * @param an Network that failed
+	 * @param cause Why it failed
+	 */
+	public void fail(ArcticNetworkSO an, Throwable cause) {
+		future(an.getRangeId(), an.getName()).completeExceptionally(cause);
+	}
+	
+	/**
+	 * @param rangeId Range the network belongs to
+	 * @param name Name of the network within the range
+	 * @return Future completed with the network once its subnet exists
+	 */
+	public CompletableFuture<Network> whenReady(String rangeId, String name) {
+		return future(rangeId, name);
+	}
+	
+	/**
+	 * Drops the range's futures, failing any that are still waited on
+	 * @param rangeId Range that finished building or was torn down
+	 */
+	public void forget(String rangeId) {
+		// Marked first, a future created while the range is swept is failed by future()
+		forgotten.add(rangeId);
+		Iterator<Map.Entry<String, CompletableFuture<Network>>> it = ready.entrySet().iterator();
+		while(it.hasNext()) {
+			Map.Entry<String, CompletableFuture<Network>> e = it.next();
+			if(!e.getKey().startsWith(rangeId + "/")) continue;
+			it.remove();
+			e.getValue().completeExceptionally(noLongerBuilt(rangeId));
+		}
+	}
+	
+	/**
+	 * Reports that a range is being built again after it was forgotten
+	 * @param rangeId Range whose build started
+	 */
+	public void started(String rangeId) {
+		forgotten.remove(rangeId);
+	}
+	
+	private CompletableFuture<Network> future(String rangeId, String name) {
+		String key = rangeId + "/" + name;
+		CompletableFuture<Network> future = ready.computeIfAbsent(key, k -> new CompletableFuture<>());
+		if(forgotten.contains(rangeId)) {
+			ready.remove(key, future);
+			future.completeExceptionally(noLongerBuilt(rangeId));
+		}
+		return future;
+	}
+	
+	private static CancellationException noLongerBuilt(String rangeId) {
+		return new CancellationException("Range " + rangeId + " Is No Longer Being Built");
+	}
+	
+}
@@ -1,17 +1,36 @@
 package com.rahman.shard.OpenStackShard;
 
+import java.io.IOException;
+import java.nio.file.Paths;
 import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiFunction;
+import java.util.function.Function;
 
 import org.openstack4j.api.Builders;
 import org.openstack4j.api.OSClient.OSClientV3;
-import org.openstack4j.model.common.Identifier;
+import org.openstack4j.model.common.ActionResponse;
 import org.openstack4j.model.compute.BDMDestType;
 import org.openstack4j.model.compute.BDMSourceType;
+import org.openstack4j.model.compute.Flavor;
 import org.openstack4j.model.compute.Server;
 import org.openstack4j.model.compute.builder.ServerCreateBuilder;
+import org.openstack4j.model.image.v2.Image;
 import org.openstack4j.model.network.AttachInterfaceType;
-import org.openstack4j.model.network.IPVersionType;
 import org.openstack4j.model.network.Network;
 import org.openstack4j.model.network.Router;
 import org.openstack4j.model.network.SecurityGroup;
@@ -19,10 +38,8 @@ import org.openstack4j.model.network.SecurityGroupRule;
 import org.openstack4j.model.network.Subnet;
 import org.openstack4j.model.network.builder.RouterBuilder;
 import org.openstack4j.model.storage.block.Volume;
-import org.openstack4j.openstack.OSFactory;
 
 import com.rahman.arctic.shard.ShardProviderTmpl;
-import com.rahman.arctic.shard.Waiter;
 import com.rahman.arctic.shard.exceptions.ResourceErrorException;
 import com.rahman.arctic.shard.exceptions.ResourceTimeoutException;
 import com.rahman.arctic.shard.objects.ArcticHostSO;
@@ -33,19 +50,197 @@ import com.rahman.arctic.shard.objects.ArcticSecurityGroupSO;
 import com.rahman.arctic.shard.objects.ArcticTask;
 import com.rahman.arctic.shard.objects.ArcticVolumeSO;
 import com.rahman.arctic.shard.util.UserDataHelper;
+import com.rahman.shard.OpenStackShard.TaskPriorities.TaskType;
+import com.rahman.shard.OpenStackShard.bulk.BulkBatcher;
+import com.rahman.shard.OpenStackShard.bulk.GlanceBulkService;
+import com.rahman.shard.OpenStackShard.bulk.NeutronBulkService;
+import com.rahman.shard.OpenStackShard.client.ConnectorSettings;
+import com.rahman.shard.OpenStackShard.client.OpenStackClients;
+import com.rahman.shard.OpenStackShard.client.OpenStackService;
+import com.rahman.shard.OpenStackShard.client.ServiceGovernor;
+import com.rahman.shard.OpenStackShard.client.Target;
+import com.rahman.shard.OpenStackShard.client.TargetPlacer;
+import com.rahman.shard.OpenStackShard.journal.BuildJournal;
+import com.rahman.shard.OpenStackShard.journal.JournalRecovery;
+import com.rahman.shard.OpenStackShard.metrics.Metrics;
+import com.rahman.shard.OpenStackShard.metrics.MetricsServer;
+import com.rahman.shard.OpenStackShard.metrics.MetricsSnapshot;
+import com.rahman.shard.OpenStackShard.progress.ProgressReporter;
+import com.rahman.shard.OpenStackShard.readiness.PollPolicy;
+import com.rahman.shard.OpenStackShard.readiness.ReadinessEngine;
+import com.rahman.shard.OpenStackShard.teardown.RangeInventory;
+import com.rahman.shard.OpenStackShard.teardown.RangeTeardown;
+import com.rahman.shard.OpenStackShard.ui.ImageQuery;
 import com.rahman.shard.OpenStackShard.ui.ObtainFlavors;
 import com.rahman.shard.OpenStackShard.ui.ObtainOS;
 
 public class OpenStackShard extends ShardProviderTmpl<OSClientV3> {
 
+	private final OpenStackClients clients = new OpenStackClients();
+	private final NeutronBulkService neutronBulk = new NeutronBulkService();
+	private final GlanceBulkService glance = new GlanceBulkService();
+	private ObtainOS obtainOS;
+	private ObtainFlavors obtainFlavors;
+	private BulkBatcher<String, SecurityGroupRule, SecurityGroupRule> ruleBatcher;
+	private NetworkPipeline networkPipeline;
+	/** Attaches router interfaces once their networks are ready, off the pipeline's threads */
+	private ExecutorService attachWorkers;
+	private int attachTimeoutSeconds;
+	private final BootVolumePlanner bootVolumes = new BootVolumePlanner();
+	private VolumeWarmPool volumePool;
+	private ServerMultiCreate multiCreate;
+	private final TaskPriorities priorities = new TaskPriorities();
+	private final RangeInventory inventory = new RangeInventory();
+	private RangeTeardown teardown;
+	private BuildJournal journal = new BuildJournal(null, 0);
+	private JournalRecovery recovery;
+	private TargetPlacer placer;
+	private final Set<String> adopted = ConcurrentHashMap.newKeySet();
+	/** Type of each volume task by range/name, for the hosts that wait on them */
+	private final ConcurrentMap<String, TaskType> volumeTypes = new ConcurrentHashMap<>();
+	/** Tasks of each range that have not finished yet */
+	private final ConcurrentMap<String, AtomicInteger> building = new ConcurrentHashMap<>();
+
 	@Override
 	public String getDomain() {
 		return "openstack";
 	}
 	
 	public void pluginEnabled() {
-		registerUICreation(new ObtainOS());
-		registerUICreation(new ObtainFlavors());
+		long catalogTtl = intProperty("catalog.ttlSeconds", 300) * 1000L;
+		obtainOS = new ObtainOS(clients, catalogTtl, new ImageQuery(this::property));
+		obtainFlavors = new ObtainFlavors(clients, catalogTtl);
+		registerUICreation(obtainOS);
+		registerUICreation(obtainFlavors);
+		
+		// Start loading the catalogs now so the first range form does not wait on Glance/Nova
+		obtainOS.getCache().warm();
+		obtainFlavors.getCache().warm();
+	}
+	
+	/**
+	 * Drops the cached image and flavor catalogs so the next request reloads them
+	 */
+	public void invalidateCatalogs() {
+		if(obtainOS != null) obtainOS.getCache().invalidate();
+		if(obtainFlavors != null) obtainFlavors.getCache().invalidate();
+	}
+	
+	/**
+	 * Deletes everything this shard built for the range
+	 * @param rangeId Range to delete
+	 * @return Future completed once the teardown has finished
+	 */
+	public CompletableFuture<Void> teardownRange(String rangeId) {
+		building.remove(rangeId);
+		rangeDone(rangeId);
+		return teardown.teardown(rangeId).thenRun(() -> {
+			if(inventory.count(rangeId) == 0) {
+				journal.rangeDeleted(rangeId);
+				placer.release(rangeId);
+			}
+		});
+	}
+	
+	/**
+	 * Looks for a resource the journal says was already created for the range, recording
+	 * the intent to create it when there is none. A resource whose create was recorded
+	 * without an ID, such as one whose request failed after OpenStack accepted it, is looked
+	 * up by name.
+	 * @param get Fetches the resource by ID, returning null if it is gone
+	 * @return The existing resource, or null if it still has to be created
+	 */
+	private <R> R adopt(String rangeId, RangeInventory.Type type, String name, OpenStackService service, BiFunction<OSClientV3, String, R> get) {
+		BuildJournal.Entry entry = journal.get(rangeId, type, name);
+		String id = entry == null ? null : entry.getId();
+		if(entry != null && id == null && recovery != null) {
+			try {
+				id = recovery.findByName(entry);
+			} catch(RuntimeException e) {
+				System.out.println(String.format("Could Not Look Up %s %s By Name: %s", type, name, e.getMessage()));
+			}
+		}
+		if(id != null) {
+			String found = id;
+			R existing = rangeClients(rangeId).call(service, type.name().toLowerCase() + ".adopt", c -> get.apply(c, found));
+			if(existing != null) {
+				System.out.println(String.format("Adopting Existing %s %s [%s]", type, name, found));
+				if(entry.getId() == null) BuildJournal.await(journal.created(rangeId, type, name, found));
+				inventory.record(rangeId, type, found);
+				adopted.add(found);
+				return existing;
+			}
+		}
+		BuildJournal.await(journal.intent(rangeId, type, name));
+		return null;
+	}
+	
+	/**
+	 * Records a resource the build created
+	 */
+	private void created(String rangeId, RangeInventory.Type type, String name, String id) {
+		inventory.record(rangeId, type, id);
+		journal.created(rangeId, type, name, id);
+	}
+	
+	/**
+	 * Tags a network, subnet, router or security group with its range. Unlike servers and
+	 * volumes they cannot be tagged as they are created, and recovery only matches a tagged
+	 * resource by name, so a resource left untagged is not adopted by another range.
+	 */
+	private void tagRange(String rangeId, RangeInventory.Type type, String id) {
+		String collection = type == RangeInventory.Type.SECURITY_GROUP ? "security-groups" : type.name().toLowerCase() + "s";
+		try {
+			ActionResponse response = rangeClients(rangeId).call(OpenStackService.NETWORK, (type == RangeInventory.Type.SECURITY_GROUP ? "securityGroups" : collection) + ".tag", c -> neutronBulk.tag(collection, id, RangeTeardown.neutronTag(rangeId)));
+			if(!response.isSuccess()) {
+				System.out.println(String.format("Could Not Tag %s [%s] With Its Range: %s", type, id, response.getFault()));
+			}
+		} catch(RuntimeException e) {
+			System.out.println(String.format("Could Not Tag %s [%s] With Its Range: %s", type, id, e.getMessage()));
+		}
+	}
+	
+	/**
+	 * @return Current API, polling and task measurements
+	 */
+	public MetricsSnapshot getMetrics() {
+		return Metrics.shared().snapshot();
+	}
+	
+	/**
+	 * @return Current measurements in the Prometheus text format
+	 */
+	public String getPrometheusMetrics() {
+		return Metrics.shared().toPrometheus();
+	}
+	
+	/**
+	 * @return Value of a shard property, or null if it is not set
+	 */
+	protected String property(String key) {
+		return getProperties().getPropertyValue(key);
+	}
+	
+	private int intProperty(String key, int def) {
+		String value = property(key);
+		if(value == null) return def;
+		try {
+			return Integer.parseInt(value.trim());
+		} catch(NumberFormatException e) {
+			System.out.println("Invalid Number For `" + key + "`, Using Default " + def);
+			return def;
+		}
+	}
+	
+	private double doubleProperty(String key, double def) {
+		String value = property(key);
+		if(value == null) return def;
+		try {
+			return Double.parseDouble(value.trim());
+		} catch(NumberFormatException e) {
+			System.out.println("Invalid Number For `" + key + "`, Using Default " + def);
+			return def;
+		}
 	}
 	
 	@Override
@@ -53,10 +248,10 @@ public class OpenStackShard extends ShardProviderTmpl<OSClientV3> {
 		System.out.println("Attempting to Create OpenStack Client...");
 		
 		System.out.println("Attempting to load properties...");
-		String endpoint = getProperties().getPropertyValue("endpoint");
-		String username = getProperties().getPropertyValue("username");
-		String password = getProperties().getPropertyValue("password");
-		String projectId = getProperties().getPropertyValue("projectId");
+		String endpoint = property("endpoint");
+		String username = property("username");
+		String password = property("password");
+		String projectId = property("projectId");
 		
 		if(endpoint == null || username == null || password == null || projectId == null) {
 			System.out.println("Required configuration details do not exists. Please add and re-run.");
@@ -64,66 +259,306 @@ public class OpenStackShard extends ShardProviderTmpl<OSClientV3> {
 			return null;
 		}
 		
-		String domain = getProperties().getPropertyValue("domain");
+		String domain = property("domain");
 		
 		if(domain == null) {
 			domain = "Default";
 		}
 		
+		String region = property("region");
+		
 		System.out.println("Connecting with the following options:");
 		System.out.println("\tEndpoint: " + endpoint);
 		System.out.println("\tUsername: " + username);
 		System.out.println("\tPassword: *****");
 		System.out.println("\tProjectID: " + projectId);
 		System.out.println("\tDomain: " + domain);
-		OSClientV3 mainOSC = OSFactory.builderV3()
-				.endpoint(endpoint)
-				.credentials(username, password, Identifier.byName(domain))
-				.scopeToProject(Identifier.byId(projectId))
-				.authenticate();
+		System.out.println("\tRegion: " + (region == null ? "<default>" : region));
+		
+		ConnectorSettings connector = new ConnectorSettings(this::property);
+		connector.printSummary();
+		OSClientV3 mainOSC = clients.connect(endpoint, username, password, domain, projectId, region, connector.toConfig());
 		
 		if(mainOSC != null) {
 			System.out.println("OpenStack Client Successfully Loaded");
 		}
 		
+		clients.setGovernor(new ServiceGovernor(this::property));
+		
+		// Further endpoints, projects or regions ranges may be placed on
+		List<Target> targets = new ArrayList<>();
+		targets.add(new Target("default", clients));
+		String extra = property("targets");
+		if(extra != null) {
+			// Range forms offer the primary target's images and flavors, a target missing
+			// any of them could not build every range placed on it
+			Set<String> catalog = catalog(clients);
+			for(String name : extra.split(",")) {
+				if(name.trim().isEmpty()) continue;
+				try {
+					Target target = connectTarget(name.trim(), connector);
+					Set<String> missing = new HashSet<>(catalog);
+					missing.removeAll(catalog(target.getClients()));
+					if(!missing.isEmpty()) {
+						System.out.println(String.format("Target %s Lacks %d Images Or Flavors Of The Primary Target, Skipping It: %s", name.trim(), missing.size(), missing));
+						continue;
+					}
+					targets.add(target);
+				} catch(RuntimeException e) {
+					System.out.println("Could Not Connect To Target " + name.trim() + ", Skipping It: " + e.getMessage());
+				}
+			}
+		}
+		ReadinessEngine.shared().setPolicy(new PollPolicy(
+				intProperty("poll.initialMillis", 1000),
+				doubleProperty("poll.multiplier", 2.0),
+				doubleProperty("poll.jitter", 0.2)));
+		ProgressReporter.shared().setIntervalMillis(intProperty("progress.intervalSeconds", 5) * 1000L);
+		
+		int metricsPort = intProperty("metrics.port", 0);
+		if(metricsPort > 0) {
+			try {
+				new MetricsServer(metricsPort).start();
+			} catch (IOException e) {
+				System.out.println("Could Not Serve Metrics On Port " + metricsPort + ": " + e.getMessage());
+			}
+		}
+		
+		int maxBatch = intProperty("bulk.maxBatch", 100);
+		int linger = intProperty("bulk.lingerMillis", 50);
+		// Keyed by range and group, so each batch goes to the range's target
+		ruleBatcher = new BulkBatcher<>("Security Group Rule", maxBatch, linger,
+				(key, rules) -> new ArrayList<>(rangeClients(rangeOf(key)).call(OpenStackService.NETWORK, "securityGroupRules.bulkCreate", c -> neutronBulk.createSecurityGroupRules(rules))),
+				(key, rule) -> rangeClients(rangeOf(key)).call(OpenStackService.NETWORK, "securityGroupRules.create", c -> c.networking().securityrule().create(rule)));
+		networkPipeline = new NetworkPipeline(this::rangeClients, neutronBulk, maxBatch, linger);
+		AtomicInteger attachThreads = new AtomicInteger();
+		attachWorkers = Executors.newFixedThreadPool(intProperty("router.attachThreads", 8), r -> {
+			Thread t = new Thread(r, "openstack-router-attach-" + attachThreads.incrementAndGet());
+			t.setDaemon(true);
+			return t;
+		});
+		attachTimeoutSeconds = intProperty("router.attachTimeoutSeconds", 600);
+		
+		String bootFromImage = property("bootFromImage");
+		bootVolumes.setEnabled(bootFromImage == null || Boolean.parseBoolean(bootFromImage));
+		
+		volumePool = new VolumeWarmPool(clients, property("volumePool"));
+		volumePool.start(intProperty("volumePool.refillSeconds", 60));
+		
+		// Off unless asked for, guests of multi-created hosts do not get their own hostname
+		if(Boolean.parseBoolean(property("multiCreate"))) {
+			multiCreate = new ServerMultiCreate(this::rangeClients, intProperty("multiCreate.maxBatch", 50), intProperty("multiCreate.lingerMillis", 500),
+					intProperty("multiCreate.threads", 4));
+		}
+		
+		teardown = new RangeTeardown(this::rangeClients, inventory, intProperty("teardown.threads", 16));
+		
+		String journalPath = property("journal.path");
+		journal = new BuildJournal(Paths.get(journalPath == null ? "openstack-shard.journal" : journalPath), intProperty("journal.lingerMillis", 20));
+		try {
+			journal.open();
+		} catch (IOException e) {
+			System.out.println("Could Not Open Build Journal, Interrupted Builds Will Not Be Recovered: " + e.getMessage());
+		}
+		
+		placer = new TargetPlacer(targets, intProperty("placement.quotaSeconds", 30) * 1000L, doubleProperty("placement.latencyWeightMillis", 200), journal::placed);
+		Map<String, String> placed = journal.getPlacements();
+		for(BuildJournal.Entry e : journal.getEntries()) {
+			// Ranges journaled before they had a placement were built on the primary target
+			placed.putIfAbsent(e.getRangeId(), targets.get(0).getName());
+		}
+		placer.restore(placed);
+		recovery = new JournalRecovery(this::rangeClients, journal, inventory);
+		try {
+			recovery.reconcile();
+		} catch (IOException e) {
+			System.out.println("Could Not Compact Build Journal: " + e.getMessage());
+		}
+		
 		return mainOSC;
 	}
 
+	/**
+	 * Connects to a target configured under {@code target.<name>.}, anything not set there is
+	 * taken from the top-level properties
+	 */
+	private Target connectTarget(String name, ConnectorSettings connector) {
+		Function<String, String> prop = key -> {
+			String value = property("target." + name + "." + key);
+			return value != null ? value : property(key);
+		};
+		String domain = prop.apply("domain");
+		System.out.println(String.format("Connecting To Target %s: %s, Project %s, Region %s", name, prop.apply("endpoint"), prop.apply("projectId"), prop.apply("region")));
+		
+		OpenStackClients targetClients = new OpenStackClients();
+		targetClients.connect(prop.apply("endpoint"), prop.apply("username"), prop.apply("password"), domain == null ? "Default" : domain,
+				prop.apply("projectId"), prop.apply("region"), connector.toConfig());
+		targetClients.setGovernor(new ServiceGovernor(prop));
+		return new Target(name, targetClients);
+	}
+	
+	/**
+	 * @return IDs of the images the range forms offer and of every flavor, as image:ID and flavor:ID
+	 */
+	private Set<String> catalog(OpenStackClients target) {
+		ImageQuery query = new ImageQuery(this::property);
+		Map<String, String> params = query.toParams();
+		Set<String> ids = new HashSet<>();
+		for(Image image : target.call(OpenStackService.IMAGE, "images.list", c -> glance.listImages(params, query::matches))) {
+			ids.add("image:" + image.getId());
+		}
+		for(Flavor flavor : target.call(OpenStackService.COMPUTE, "flavors.list", c -> c.compute().flavors().list())) {
+			ids.add("flavor:" + flavor.getId());
+		}
+		return ids;
+	}
+	
+	/**
+	 * @return Clients of the target the range is placed on
+	 */
+	private OpenStackClients rangeClients(String rangeId) {
+		return placer == null ? clients : placer.clientsFor(rangeId);
+	}
+	
+	/**
+	 * Counts a task the range has to build
+	 */
+	private void building(String rangeId) {
+		building.computeIfAbsent(rangeId, k -> {
+			// The first task of a build, the range may have been forgotten by an earlier one
+			if(networkPipeline != null) networkPipeline.started(rangeId);
+			return new AtomicInteger();
+		}).incrementAndGet();
+	}
+	
+	/**
+	 * Counts a task of the range as finished, the range is done once none are left
+	 */
+	private void taskDone(String rangeId) {
+		AtomicInteger left = building.get(rangeId);
+		if(left != null && left.decrementAndGet() == 0 && building.remove(rangeId, left)) {
+			rangeDone(rangeId);
+		}
+	}
+	
+	/**
+	 * Drops what was only kept while the range was being built, and the journal lines it superseded
+	 */
+	private void rangeDone(String rangeId) {
+		if(networkPipeline != null) networkPipeline.forget(rangeId);
+		bootVolumes.forget(rangeId);
+		volumeTypes.keySet().removeIf(k -> k.startsWith(rangeId + "/"));
+		try {
+			journal.compact();
+		} catch (IOException e) {
+			System.out.println("Could Not Compact Build Journal: " + e.getMessage());
+		}
+	}
+	
+	/**
+	 * Records a finished task for the metrics, and for the priorities if it succeeded
+	 * @param task Name of the task within its range
+	 * @param depends Names of the tasks it waited on
+	 * @param succeeded False if the task failed or timed out, its duration says nothing about the type
+	 */
+	private void finished(String rangeId, TaskType type, String task, long started, long waitStarted, List<String> depends, boolean succeeded) {
+		long end = System.currentTimeMillis();
+		if(succeeded) priorities.observe(type, end - started);
+		Metrics.shared().task(rangeId, type.name(), task, started, waitStarted, end, depends);
+		taskDone(rangeId);
+	}
+	
+	private static String rangeOf(String ruleKey) {
+		return ruleKey.substring(0, ruleKey.lastIndexOf('/'));
+	}
+
 	@Override
 	protected ArcticTask<OSClientV3, Server> buildHost(ArcticHostSO ah) {
 		// Create the lists that will hold the dependencies needed further into the method
-		List<ArcticTask<OSClientV3, Volume>> volumes = new ArrayList<>();
+		Map<String, ArcticTask<OSClientV3, Volume>> volumes = new LinkedHashMap<>();
 		List<ArcticTask<OSClientV3, Network>> networks = new ArrayList<>();
 		List<ArcticTask<OSClientV3, ?>> depends = new ArrayList<>();
+		List<String> dependsOn = new ArrayList<>();
+		List<TaskType> dependsOnTypes = new ArrayList<>();
 		
 		// Grab all networks and volumes from ArcticHost and add
 		// 		them into the lists above
 		ah.getNetworks().forEach(e -> {
 			networks.add(getTypedTask(getNetworkTasks(), e));
 			depends.add(getNetworkTasks().get(e));
+			dependsOn.add("Network " + e);
+			dependsOnTypes.add(TaskType.NETWORK);
 		});
 		
 		ah.getVolumes().forEach(e -> {
-			volumes.add(getTypedTask(getVolumeTasks(), e));
+			volumes.put(e, getTypedTask(getVolumeTasks(), e));
 			depends.add(getVolumeTasks().get(e));
+			dependsOn.add("Volume " + e);
+			dependsOnTypes.add(volumeTypes.getOrDefault(ah.getRangeId() + "/" + e, TaskType.BLANK_VOLUME));
 		});
+		priorities.built(TaskType.HOST, dependsOnTypes);
+		bootVolumes.registerHost(ah);
+		building(ah.getRangeId());
 		
 		// Create the ArcticTask<Client, Resource>
-		ArcticTask<OSClientV3, Server> server = new ArcticTask<OSClientV3, Server>(10, getClient(), depends) {
+		ArcticTask<OSClientV3, Server> server = new ArcticTask<OSClientV3, Server>(priorities.of(TaskType.HOST), getClient(), depends) {
+			private long started;
+			private long waitStarted;
 			
 			// Actual action of building the Server following OSClientV3 Library
 			public Server action() {
+				started = System.currentTimeMillis();
+				// Counted from here rather than when the task is built, a host whose dependency
+				// failed never gets this far and would never be counted off again
+				Target target = placer.place(ah.getRangeId());
+				target.plan();
+				try {
+					return boot();
+				} finally {
+					// Booted, adopted or failed, either way Nova counts it now or never will
+					target.booted();
+				}
+			}
+			
+			private Server boot() {
+				Server existing = adopt(ah.getRangeId(), RangeInventory.Type.SERVER, ah.getName(), OpenStackService.COMPUTE, (c, id) -> c.compute().servers().get(id));
+				if(existing != null) return existing;
+				
 				ServerCreateBuilder scb = Builders.server();
+				// Everything that goes into the request besides the name, hosts with the same
+				// signature in a range can be booted together
+				StringBuilder signature = new StringBuilder();
+				boolean shareable = multiCreate != null;
 				
 				if(ah.getOsType().equalsIgnoreCase("linux")) {
 					scb.userData(UserDataHelper.createBasicLinuxUserData(ah.getDefaultUser(), ah.getDefaultPassword()));
 				}
 				
 				scb.configDrive(true);
+				scb.addMetadataItem(RangeTeardown.RANGE_TAG, ah.getRangeId());
 				scb.name(ah.getName());
 				scb.flavor(ah.getFlavor());
 				scb.image(ah.getImageId());
-				for(ArcticTask<OSClientV3, Volume> vol : volumes) {
+				signature.append(ah.getOsType()).append('|').append(ah.getDefaultUser()).append('|').append(ah.getDefaultPassword())
+					.append('|').append(ah.getFlavor()).append('|').append(ah.getImageId());
+				for(ArcticTask<OSClientV3, Volume> vol : volumes.values()) {
+					Volume root = vol.getResource();
+					if(root.getId() == null) {
+						// The volume task left the root disk to us, Nova and Cinder create it
+						// from the image as part of the boot
+						scb.blockDevice(Builders.blockDeviceMapping()
+								.uuid(root.getImageRef())
+								.bootIndex(0)
+								.sourceType(BDMSourceType.IMAGE)
+								.destinationType(BDMDestType.VOLUME)
+								.volumeSize(root.getSize())
+								.deleteOnTermination(true)
+								.build());
+						signature.append("|root:").append(root.getImageRef()).append(':').append(root.getSize());
+						continue;
+					}
+					// An existing volume can only be attached to one of the servers
+					shareable = false;
 					scb.blockDevice(Builders.blockDeviceMapping()
 							.uuid(vol.getResource().getId())
 							.bootIndex(0)
@@ -138,19 +573,31 @@ public class OpenStackShard extends ShardProviderTmpl<OSClientV3> {
 					networkIds.add(netObj.getId());
 				}
 				scb.networks(networkIds);
-				Server s = OSFactory.clientFromToken(getClient().getToken()).compute().servers().boot(scb.build());
+				signature.append("|net:").append(networkIds);
+				
+				Server s;
+				if(shareable) {
+					s = multiCreate.boot(ah.getRangeId(), signature.toString(), ah.getName(), scb.build());
+				} else {
+					s = rangeClients(ah.getRangeId()).call(OpenStackService.COMPUTE, "servers.boot", c -> c.compute().servers().boot(scb.build()));
+				}
+				created(ah.getRangeId(), RangeInventory.Type.SERVER, ah.getName(), s.getId());
 				return s;
 			}
 			
 			// Use the OpenStackWaiter class to wait or error out the building of the Server
 			public void waitMethod(Server s) {
-				Waiter<OSClientV3, Server> serverWaiter = OpenStackWaiter.waitForInstanceAvailable();
+				waitStarted = System.currentTimeMillis();
+				boolean succeeded = false;
 				try {
-					serverWaiter.waitUntilReady(OSFactory.clientFromToken(getClient().getToken()), ah.getRangeId(), s, 5000, 10);
+					OpenStackWaiter.await(OpenStackWaiter.instanceAvailable(rangeClients(ah.getRangeId()), ah.getRangeId(), s, 5000, 10));
+					succeeded = true;
 				} catch (ResourceTimeoutException e) {
 					e.printStackTrace();
 				} catch (ResourceErrorException e) {
 					e.printStackTrace();
+				} finally {
+					finished(ah.getRangeId(), TaskType.HOST, "Host " + ah.getName(), started, waitStarted, dependsOn, succeeded);
 				}
 			}
 		};
@@ -161,37 +608,51 @@ public class OpenStackShard extends ShardProviderTmpl<OSClientV3> {
 	
 	@Override
 	protected ArcticTask<OSClientV3, Network> buildNetwork(ArcticNetworkSO an) {
-		ArcticTask<OSClientV3, Network> net =  new ArcticTask<OSClientV3, Network>(0, getClient()) {
+		building(an.getRangeId());
+		priorities.built(TaskType.NETWORK, List.of());
+		ArcticTask<OSClientV3, Network> net =  new ArcticTask<OSClientV3, Network>(priorities.of(TaskType.NETWORK), getClient()) {
+			private long started;
+			private long waitStarted;
+			
 			public Network action() {
-				Network netObj = OSFactory.clientFromToken(getClient().getToken()).networking().network().create(Builders.network()
-						.name(an.getName())
-						.adminStateUp(true)
-						.build());
-				Waiter<OSClientV3, Network> netWaiter = OpenStackWaiter.waitForNetworkUp();
+				started = System.currentTimeMillis();
+				// Only the network is created here, the subnet follows once the network is up
 				try {
-					netWaiter.waitUntilReady(OSFactory.clientFromToken(getClient().getToken()), an.getRangeId(), netObj, 3000, 10);
-				} catch (ResourceTimeoutException | ResourceErrorException e1) {
-					e1.printStackTrace();
+					Network existing = adopt(an.getRangeId(), RangeInventory.Type.NETWORK, an.getName(), OpenStackService.NETWORK, (c, id) -> c.networking().network().get(id));
+					if(existing != null) return existing;
+					
+					Network n = networkPipeline.createNetwork(an);
+					tagRange(an.getRangeId(), RangeInventory.Type.NETWORK, n.getId());
+					created(an.getRangeId(), RangeInventory.Type.NETWORK, an.getName(), n.getId());
+					return n;
+				} catch (RuntimeException e) {
+					networkPipeline.fail(an, e);
+					throw e;
 				}
-				Subnet s = getClient().networking().subnet().create(Builders.subnet()
-						.name(an.getName() + "-Subnet")
-						.networkId(netObj.getId())
-						.enableDHCP(true)
-						.addPool(an.getIpRangeStart(), an.getIpRangeEnd())
-						.ipVersion(IPVersionType.V4)
-						.cidr(an.getIpCidr())
-						.gateway(an.getIpGateway())
-						.build());
-				netObj.getSubnets().add(s.getId());
-				return netObj;
-//				setResource(netObj);
 			}
 
 			@Override
 			public void waitMethod(Network resource) {
-				// TODO: Fix this, in this setup, the wait needs to be done else where, maybe make subnets and networks
-					// Separate objects?
-				return;
+				waitStarted = System.currentTimeMillis();
+				boolean succeeded = false;
+				try {
+					OpenStackWaiter.await(OpenStackWaiter.networkUp(rangeClients(an.getRangeId()), an.getRangeId(), resource, 3000, 10));
+					String subnetName = NetworkPipeline.subnetName(an);
+					Subnet existing = adopt(an.getRangeId(), RangeInventory.Type.SUBNET, subnetName, OpenStackService.NETWORK, (c, id) -> c.networking().subnet().get(id));
+					if(existing != null) {
+						networkPipeline.adoptSubnet(an, resource, existing);
+					} else {
+						Subnet sub = networkPipeline.createSubnet(an, resource);
+						tagRange(an.getRangeId(), RangeInventory.Type.SUBNET, sub.getId());
+						created(an.getRangeId(), RangeInventory.Type.SUBNET, subnetName, sub.getId());
+					}
+					succeeded = true;
+				} catch (ResourceTimeoutException | ResourceErrorException | RuntimeException e) {
+					networkPipeline.fail(an, e);
+					e.printStackTrace();
+				} finally {
+					finished(an.getRangeId(), TaskType.NETWORK, "Network " + an.getName(), started, waitStarted, List.of(), succeeded);
+				}
 			}
 		};
 		
@@ -200,19 +661,31 @@ public class OpenStackShard extends ShardProviderTmpl<OSClientV3> {
 
 	@Override
 	protected ArcticTask<OSClientV3, SecurityGroup> buildSecurityGroup(ArcticSecurityGroupSO asg) {
-		ArcticTask<OSClientV3, SecurityGroup> secGroup = new ArcticTask<OSClientV3, SecurityGroup>(4, getClient()) {
+		building(asg.getRangeId());
+		priorities.built(TaskType.SECURITY_GROUP, List.of());
+		ArcticTask<OSClientV3, SecurityGroup> secGroup = new ArcticTask<OSClientV3, SecurityGroup>(priorities.of(TaskType.SECURITY_GROUP), getClient()) {
+			private long started;
+			private long waitStarted;
+			
 			public SecurityGroup action() {
-				SecurityGroup sg = OSFactory.clientFromToken(getClient().getToken()).networking().securitygroup().create(Builders.securityGroup()
+				started = System.currentTimeMillis();
+				SecurityGroup existing = adopt(asg.getRangeId(), RangeInventory.Type.SECURITY_GROUP, asg.getName(), OpenStackService.NETWORK, (c, id) -> c.networking().securitygroup().get(id));
+				if(existing != null) return existing;
+				
+				SecurityGroup sg = rangeClients(asg.getRangeId()).call(OpenStackService.NETWORK, "securityGroups.create", c -> c.networking().securitygroup().create(Builders.securityGroup()
 						.name(asg.getName())
 						.description(asg.getDescription())
-						.build());
+						.build()));
+				tagRange(asg.getRangeId(), RangeInventory.Type.SECURITY_GROUP, sg.getId());
+				created(asg.getRangeId(), RangeInventory.Type.SECURITY_GROUP, asg.getName(), sg.getId());
 //				setResource(sg);
 				return sg;
 			}
 
 			@Override
 			public void waitMethod(SecurityGroup resource) {
-				// TODO: Again, No Waiting Needed
+				waitStarted = System.currentTimeMillis();
+				finished(asg.getRangeId(), TaskType.SECURITY_GROUP, "SecurityGroup " + asg.getName(), started, waitStarted, List.of(), true);
 				return;
 			}
 		};
@@ -221,37 +694,67 @@ public class OpenStackShard extends ShardProviderTmpl<OSClientV3> {
 
 	@Override
 	protected ArcticTask<OSClientV3, Router> buildRouter(ArcticRouterSO ar) {
-		List<ArcticTask<OSClientV3, Network>> networks = new ArrayList<>();
-		List<ArcticTask<OSClientV3, ?>> depends = new ArrayList<>();
-		
-		ar.getConnectedNetworkNames().forEach(e -> {
-			networks.add(getTypedTask(getNetworkTasks(), e));
-			depends.add(getNetworkTasks().get(e));
-		});
-		
-		ArcticTask<OSClientV3, Router> router = new ArcticTask<OSClientV3, Router>(1, getClient(), depends) {
+		// No dependencies, the router is created straight away and each interface is attached
+		// as soon as that network's subnet exists
+		building(ar.getRangeId());
+		priorities.built(TaskType.ROUTER, List.of());
+		ArcticTask<OSClientV3, Router> router = new ArcticTask<OSClientV3, Router>(priorities.of(TaskType.ROUTER), getClient()) {
+			private long started;
+			private long waitStarted;
+			
 			public Router action() {
-				OSClientV3 client = OSFactory.clientFromToken(getClient().getToken());
+				started = System.currentTimeMillis();
+				Router existing = adopt(ar.getRangeId(), RangeInventory.Type.ROUTER, ar.getName(), OpenStackService.NETWORK, (c, id) -> c.networking().router().get(id));
+				if(existing != null) return existing;
 				
 				RouterBuilder rb = Builders.router();
 				rb.adminStateUp(true);
 				rb.clearExternalGateway();
 				rb.name(ar.getName());
 				
-				Router r = client.networking().router().create(rb.build());
-				
-				OSFactory.clientFromToken(getClient().getToken()).networking().router().attachInterface(ar.getName(), null, ar.getName());
-				for(ArcticTask<OSClientV3, Network> net : networks) {
-					client.networking().router().attachInterface(r.getId(), AttachInterfaceType.SUBNET, net.getResource().getSubnets().get(0));
-				}
-				
+				Router r = rangeClients(ar.getRangeId()).call(OpenStackService.NETWORK, "routers.create", c -> c.networking().router().create(rb.build()));
+				tagRange(ar.getRangeId(), RangeInventory.Type.ROUTER, r.getId());
+				created(ar.getRangeId(), RangeInventory.Type.ROUTER, ar.getName(), r.getId());
 				return r;
 			}
 
 			@Override
 			public void waitMethod(Router resource) {
-				// TODO: NO wait is needed for this one... how do I make this better?
-				return;
+				waitStarted = System.currentTimeMillis();
+				List<CompletableFuture<?>> attached = new ArrayList<>();
+				for(String name : ar.getConnectedNetworkNames()) {
+					attached.add(networkPipeline.whenReady(ar.getRangeId(), name).thenAcceptAsync(net -> {
+						String subnetId = net.getSubnets().get(0);
+						String interfaceName = ar.getName() + "/" + name;
+						BuildJournal.Entry attachedBefore = journal.get(ar.getRangeId(), RangeInventory.Type.ROUTER_INTERFACE, interfaceName);
+						if(attachedBefore != null && RangeInventory.interfaceId(resource.getId(), subnetId).equals(attachedBefore.getId())) return;
+						
+						BuildJournal.await(journal.intent(ar.getRangeId(), RangeInventory.Type.ROUTER_INTERFACE, interfaceName));
+						rangeClients(ar.getRangeId()).call(OpenStackService.NETWORK, "routers.attachInterface", c -> c.networking().router().attachInterface(resource.getId(), AttachInterfaceType.SUBNET, subnetId));
+						created(ar.getRangeId(), RangeInventory.Type.ROUTER_INTERFACE, interfaceName, RangeInventory.interfaceId(resource.getId(), subnetId));
+					}, attachWorkers).whenComplete((v, e) -> {
+						if(e != null) System.out.println(String.format("Router %s Could Not Attach To Network %s: %s", ar.getName(), name, e.getMessage()));
+					}));
+				}
+				
+				// A failed or missing interface fails the router task
+				boolean succeeded = false;
+				try {
+					CompletableFuture.allOf(attached.toArray(new CompletableFuture[0])).get(attachTimeoutSeconds, TimeUnit.SECONDS);
+					succeeded = true;
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					System.out.println("Interrupted While Attaching Router " + ar.getName());
+				} catch (ExecutionException e) {
+					System.out.println(String.format("Router %s Could Not Attach Its Networks: %s", ar.getName(), e.getCause().getMessage()));
+				} catch (TimeoutException e) {
+					attached.forEach(f -> f.cancel(false));
+					System.out.println(String.format("Router %s Did Not Attach Its Networks Within %ds", ar.getName(), attachTimeoutSeconds));
+				} finally {
+					List<String> dependsOn = new ArrayList<>();
+					ar.getConnectedNetworkNames().forEach(n -> dependsOn.add("Network " + n));
+					finished(ar.getRangeId(), TaskType.ROUTER, "Router " + ar.getName(), started, waitStarted, dependsOn, succeeded);
+				}
 			}
 		};
 		
@@ -260,28 +763,70 @@ public class OpenStackShard extends ShardProviderTmpl<OSClientV3> {
 
 	@Override
 	protected ArcticTask<OSClientV3, Volume> buildVolume(ArcticVolumeSO av) {
-		ArcticTask<OSClientV3, Volume> vol = new ArcticTask<OSClientV3, Volume>(2, getClient()) {
+		bootVolumes.registerVolume(av);
+		building(av.getRangeId());
+		// Copying an image into a volume is what makes volumes slow, not their size
+		TaskType type = av.isBootable() && av.getImageId() != null ? TaskType.IMAGE_VOLUME : TaskType.BLANK_VOLUME;
+		volumeTypes.put(av.getRangeId() + "/" + av.getName(), type);
+		priorities.built(type, List.of());
+		ArcticTask<OSClientV3, Volume> vol = new ArcticTask<OSClientV3, Volume>(priorities.of(type), getClient()) {
+			private long started;
+			private long waitStarted;
+			
 			public Volume action() {
-				Volume v = OSFactory.clientFromToken(getClient().getToken()).blockStorage().volumes().create(Builders.volume()
+				started = System.currentTimeMillis();
+				if(bootVolumes.isInlineRootDisk(av.getRangeId(), av.getName())) {
+					// Built by Nova while booting the host, hand back a description of it without an ID
+					return Builders.volume()
+							.name(av.getName())
+							.description(av.getDescription())
+							.size(av.getSize())
+							.imageRef(av.getImageId())
+							.bootable(true)
+							.build();
+				}
+				Volume existing = adopt(av.getRangeId(), RangeInventory.Type.VOLUME, av.getName(), OpenStackService.BLOCK_STORAGE, (c, id) -> c.blockStorage().volumes().get(id));
+				if(existing != null) return existing;
+				
+				// The pool is kept on the primary target only
+				if(av.isBootable() && placer.place(av.getRangeId()) == placer.getPrimary()) {
+					Volume pooled = volumePool.claim(av);
+					if(pooled != null) {
+						created(av.getRangeId(), RangeInventory.Type.VOLUME, av.getName(), pooled.getId());
+						return pooled;
+					}
+				}
+				Volume v = rangeClients(av.getRangeId()).call(OpenStackService.BLOCK_STORAGE, "volumes.create", c -> c.blockStorage().volumes().create(Builders.volume()
 						.name(av.getName())
 						.description(av.getDescription())
 						.size(av.getSize())
 						.imageRef(av.getImageId())
 						.bootable(av.isBootable())
-						.build());
+						.metadata(Map.of(RangeTeardown.RANGE_TAG, av.getRangeId()))
+						.build()));
+				created(av.getRangeId(), RangeInventory.Type.VOLUME, av.getName(), v.getId());
 				return v;
 //				setResource(v);
 			}
 
 			@Override
 			public void waitMethod(Volume resource) {
-				Waiter<OSClientV3, Volume> waiter = OpenStackWaiter.waitForVolumeAvailable();
+				waitStarted = System.currentTimeMillis();
+				// Inline root disks are left out, they would teach the type that volumes are free
+				if(resource.getId() == null) {
+					taskDone(av.getRangeId());
+					return;
+				}
+				boolean succeeded = false;
 				try {
-					waiter.waitUntilReady(OSFactory.clientFromToken(getClient().getToken()), av.getRangeId(), resource, 3000, 10);
+					OpenStackWaiter.await(OpenStackWaiter.volumeAvailable(rangeClients(av.getRangeId()), av.getRangeId(), resource, 3000, 10));
+					succeeded = true;
 				} catch (ResourceTimeoutException e) {
 					e.printStackTrace();
 				} catch (ResourceErrorException e) {
 					e.printStackTrace();
+				} finally {
+					finished(av.getRangeId(), type, "Volume " + av.getName(), started, waitStarted, List.of(), succeeded);
 				}
 			}
 		};
@@ -292,12 +837,24 @@ public class OpenStackShard extends ShardProviderTmpl<OSClientV3> {
 	protected ArcticTask<OSClientV3, SecurityGroupRule> buildSecurityGroupRule(ArcticSecurityGroupRuleSO asgr) {
 		@SuppressWarnings("unchecked")
 		ArcticTask<OSClientV3, SecurityGroup> group = (ArcticTask<OSClientV3, SecurityGroup>) getSecurityGroupTasks().get(asgr.getSecGroup());
+		building(asgr.getRangeId());
+		priorities.built(TaskType.SECURITY_GROUP_RULE, List.of(TaskType.SECURITY_GROUP));
 		
-		ArcticTask<OSClientV3, SecurityGroupRule> rule = new ArcticTask<OSClientV3, SecurityGroupRule>(5, getClient(), List.of(group)) {
+		ArcticTask<OSClientV3, SecurityGroupRule> rule = new ArcticTask<OSClientV3, SecurityGroupRule>(priorities.of(TaskType.SECURITY_GROUP_RULE), getClient(), List.of(group)) {
+			private long started;
+			private long waitStarted;
+			
 			public SecurityGroupRule action() {
+				started = System.currentTimeMillis();
 				//String startMessage = String.format("Creating Security Rule: %s %s %s-%s", dir, protocol, String.valueOf(r1), String.valueOf(r2));
 				//IcebergViewer.sendConsoleBuildUpdate(re, new ConsoleMessage(startMessage));
-				SecurityGroupRule sgr = OSFactory.clientFromToken(getClient().getToken()).networking().securityrule().create(
+				if(adopted.contains(group.getResource().getId())) {
+					// The group survived an interrupted build, its rules may already be there
+					SecurityGroupRule existing = findRule(asgr.getRangeId(), group.getResource().getId(), asgr);
+					if(existing != null) return existing;
+				}
+				// Rules of the same group are released together and sent as one Neutron bulk create
+				SecurityGroupRule sgr = BulkBatcher.await(ruleBatcher.submit(asgr.getRangeId() + "/" + group.getResource().getId(),
 						Builders.securityGroupRule()
 						.securityGroupId(group.getResource().getId())
 						.direction(asgr.getDirection())
@@ -306,7 +863,7 @@ public class OpenStackShard extends ShardProviderTmpl<OSClientV3> {
 						.portRangeMin(asgr.getStartPortRange())
 						.portRangeMax(asgr.getEndPortRange())
 						.build()
-					);
+					));
 //				setResource(sgr);
 				//String endMessage = String.format("Security Rule Done: %s %s %s-%s", dir, protocol, String.valueOf(r1), String.valueOf(r2));
 				//IcebergViewer.sendConsoleBuildUpdate(re, new ConsoleMessage(endMessage));
@@ -315,13 +872,33 @@ public class OpenStackShard extends ShardProviderTmpl<OSClientV3> {
 
 			@Override
 			public void waitMethod(SecurityGroupRule resource) {
-				// TODO: Again, No waiting needed
+				waitStarted = System.currentTimeMillis();
+				String task = String.format("Rule %s %s %s %d-%d", asgr.getSecGroup(), asgr.getDirection(), asgr.getProtocol(), asgr.getStartPortRange(), asgr.getEndPortRange());
+				finished(asgr.getRangeId(), TaskType.SECURITY_GROUP_RULE, task, started, waitStarted, List.of("SecurityGroup " + asgr.getSecGroup()), true);
 				return;
 			}
 		};
 		return rule;
 	}
 
+	/**
+	 * @return Rule of the group matching the ArcticSecurityGroupRuleSO, or null if there is none
+	 */
+	private SecurityGroupRule findRule(String rangeId, String groupId, ArcticSecurityGroupRuleSO asgr) {
+		SecurityGroup sg = rangeClients(rangeId).call(OpenStackService.NETWORK, "securityGroups.get", c -> c.networking().securitygroup().get(groupId));
+		if(sg == null || sg.getRules() == null) return null;
+		for(SecurityGroupRule r : sg.getRules()) {
+			if(Objects.equals(r.getDirection(), asgr.getDirection())
+					&& Objects.equals(r.getEtherType(), asgr.getEth())
+					&& Objects.equals(r.getProtocol(), asgr.getProtocol())
+					&& Objects.equals(r.getPortRangeMin(), asgr.getStartPortRange())
+					&& Objects.equals(r.getPortRangeMax(), asgr.getEndPortRange())) {
+				return r;
+			}
+		}
+		return null;
+	}
+
 //	@Override
 //	public CompletableFuture<List<ProviderImage>> obtainOS() {
 //		return CompletableFuture.supplyAsync(() -> {
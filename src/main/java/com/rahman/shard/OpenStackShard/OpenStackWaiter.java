@@ -1,5 +1,8 @@
 package com.rahman.shard.OpenStackShard;
 
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+
 import org.openstack4j.api.OSClient.OSClientV3;
 import org.openstack4j.model.compute.Server;
 import org.openstack4j.model.network.Network;
@@ -9,11 +12,16 @@ import org.openstack4j.model.storage.block.Volume;
 import com.rahman.arctic.shard.Waiter;
 import com.rahman.arctic.shard.exceptions.ResourceErrorException;
 import com.rahman.arctic.shard.exceptions.ResourceTimeoutException;
-import com.rahman.arctic.shard.messaging.ConsoleMessage;
-import com.rahman.arctic.shard.messaging.IcebergViewer;
+import com.rahman.shard.OpenStackShard.client.OpenStackClients;
+import com.rahman.shard.OpenStackShard.progress.ProgressReporter;
+import com.rahman.shard.OpenStackShard.readiness.PendingResource;
+import com.rahman.shard.OpenStackShard.readiness.ReadinessEngine;
+import com.rahman.shard.OpenStackShard.readiness.ResourceKinds;
 
 public class OpenStackWaiter {
 
+	private static final ProgressReporter progress = ProgressReporter.shared();
+
 	/**
 	 * Waits on a Volume to become available in OpenStack
 	 * @param <R> Resource to be waited on
@@ -23,36 +31,13 @@ public class OpenStackWaiter {
 		return new Waiter<T, R>() {
 			@Override
 			public boolean waitUntilReady(T client, String re, R resource, int timeInSeconds, int pollingTimeInSeconds) throws ResourceTimeoutException, ResourceErrorException {
-				Volume vol = (Volume) resource;
 				OSClientV3 c = (OSClientV3)client;
-	            long start = System.currentTimeMillis();
-	            String startMessage = String.format("Creating Volume: %s [%s]...", vol.getName(), vol.getId());
-	            IcebergViewer.sendConsoleBuildUpdate(re, new ConsoleMessage(startMessage));
-	            while (vol.getStatus() != Volume.Status.AVAILABLE) {
-	                if (System.currentTimeMillis() - start > timeInSeconds * 1000) {
-	                	String msg = String.format("Volume %s [%s] Not Available After: %d Seconds", vol.getName(), vol.getId(), timeInSeconds);
-	                	IcebergViewer.sendConsoleBuildUpdate(re, new ConsoleMessage(msg));
-	                    throw new ResourceTimeoutException(msg);
-	                }
-	                if(vol.getStatus() == Volume.Status.ERROR) {
-	                	throw new ResourceErrorException("Volume Entered An `ERROR` State");
-	                }
-	                try {
-	                	String msg = String.format("Waiting for Volume %s [%s] To Become Available... (%ds) - %s", vol.getName(), vol.getId(), (int)((System.currentTimeMillis() - start)/1000), vol.getStatus().toString());
-	                	IcebergViewer.sendConsoleBuildUpdate(re, new ConsoleMessage(msg));
-	                	Thread.sleep(pollingTimeInSeconds * 1000);
-	                } catch (InterruptedException e) {
-	                    Thread.currentThread().interrupt();
-	                }
-	                vol = c.blockStorage().volumes().get(vol.getId());
-	            }
-	            String msg = String.format("Volume %s [%s] Was Built After (%d) Seconds", vol.getName(), vol.getId(), (int)((System.currentTimeMillis() - start)/1000));
-	            IcebergViewer.sendConsoleBuildUpdate(re, new ConsoleMessage(msg));
-	            return true;
+				await(volumeAvailable(OpenStackClients.ofToken(c.getToken()), re, (Volume) resource, timeInSeconds, pollingTimeInSeconds));
+				return true;
 			}
 		};
 	}
-	
+
 	/**
 	 * Waits on a Server to become available in OpenStack
 	 * @param <R> Resource to be waited on
@@ -62,40 +47,13 @@ public class OpenStackWaiter {
 	    return new Waiter<T, R>() {
 	        @Override
 	        public boolean waitUntilReady(T client, String re, R resource, int timeInSeconds, int pollingTimeInSeconds) throws ResourceTimeoutException, ResourceErrorException {
-	            Server srv = (Server) resource;
 	            OSClientV3 c = (OSClientV3)client;
-	            long start = System.currentTimeMillis();
-	            String startMessage = String.format("Creating Instance: %s [%s]...", srv.getName(), srv.getId());
-	            IcebergViewer.sendConsoleBuildUpdate(re, new ConsoleMessage(startMessage));
-	            while (srv.getStatus() != Server.Status.ACTIVE) {
-	                if (System.currentTimeMillis() - start > timeInSeconds * 1000) {
-	                	String msg = String.format("Instance %s [%s] Not Available After: %d Seconds", srv.getName(), srv.getId(), timeInSeconds);
-	                	IcebergViewer.sendConsoleBuildUpdate(re, new ConsoleMessage(msg));
-	                    throw new ResourceTimeoutException(msg);
-	                }
-	                if (srv.getStatus() == Server.Status.ERROR) {
-	                    String errorMessage = "";
-	                    if (srv.getFault() != null) {
-	                        errorMessage = srv.getFault().getMessage();
-	                    }
-	                    throw new ResourceErrorException("Instance entered ERROR state: " + errorMessage);
-	                }
-	                try {
-	                	String msg = String.format("Waiting for Instance %s [%s] To Become Available... (%ds)", srv.getName(), srv.getId(), (int)((System.currentTimeMillis() - start)/1000));
-	                	IcebergViewer.sendConsoleBuildUpdate(re, new ConsoleMessage(msg));
-	                    Thread.sleep(pollingTimeInSeconds * 1000);
-	                } catch (InterruptedException e) {
-	                    Thread.currentThread().interrupt();
-	                }
-	                srv = c.compute().servers().get(srv.getId());
-	            }
-	            String msg = String.format("Instance %s [%s] Was Built After (%d) Seconds", srv.getName(), srv.getId(), (int)((System.currentTimeMillis() - start)/1000));
-	            IcebergViewer.sendConsoleBuildUpdate(re, new ConsoleMessage(msg));
+	            await(instanceAvailable(OpenStackClients.ofToken(c.getToken()), re, (Server) resource, timeInSeconds, pollingTimeInSeconds));
 	            return true;
 	        }
 	    };
 	}
-	
+
 	/**
 	 * Waits on a Network to become available in OpenStack
 	 * @param <R> Resource to be waited on
@@ -105,26 +63,193 @@ public class OpenStackWaiter {
 		return new Waiter<T, R>() {
 			@Override
 			public boolean waitUntilReady(T client, String re, R resource, int timeInSeconds, int pollingTimeInSeconds) throws ResourceTimeoutException, ResourceErrorException {
-				Network net = (Network) resource;
 				OSClientV3 c = (OSClientV3)client;
-				long start = System.currentTimeMillis();
-				while(net.getStatus() != State.ACTIVE) {
-					if(System.currentTimeMillis() - start > timeInSeconds * 1000) {
-						throw new ResourceTimeoutException("Network Not Availabe After " + String.valueOf(timeInSeconds) + " Seconds");
-					}
-					if(net.getStatus() == State.ERROR) {
-						throw new ResourceErrorException("Network entered ERROR state");
-					}
-					try {
-						Thread.sleep(pollingTimeInSeconds * 1000);
-					} catch (InterruptedException e) {
-						Thread.currentThread().interrupt();
-					}
-					net = c.networking().network().get(net.getId());
-				}
+				await(networkUp(OpenStackClients.ofToken(c.getToken()), re, (Network) resource, timeInSeconds, pollingTimeInSeconds));
 				return true;
 			}
 		};
 	}
-	
-}
\ No newline at end of file
+
+	/**
+	 * Registers a Volume with the shared ReadinessEngine
+	 * @param clients Supplies a client bound to the polling thread
+	 * @return Future completed once the Volume is AVAILABLE
+	 */
+	public static CompletableFuture<Volume> volumeAvailable(OpenStackClients clients, String re, Volume volume, int timeInSeconds, int pollingTimeInSeconds) {
+		return ReadinessEngine.shared().register(new PendingResource<Volume>(ResourceKinds.VOLUME, clients, re, volume, timeInSeconds, pollingTimeInSeconds) {
+			protected boolean isReady(Volume vol) {
+				return vol.getStatus() == Volume.Status.AVAILABLE;
+			}
+
+			protected String getError(Volume vol) {
+				return vol.getStatus() == Volume.Status.ERROR ? "Volume Entered An `ERROR` State" : null;
+			}
+
+			protected String getTimeoutMessage(Volume vol) {
+				return String.format("Volume %s [%s] Not Available After: %d Seconds", vol.getName(), vol.getId(), timeInSeconds);
+			}
+
+			protected void onStart(Volume vol) {
+				progress.started(re, "Volume", vol.getId(), () -> String.format("Creating Volume: %s [%s]...", vol.getName(), vol.getId()));
+			}
+
+			protected void onWaiting(Volume vol, int elapsedSeconds) {
+				progress.waiting(re, "Volume", vol.getId(), String.valueOf(vol.getStatus()),
+						() -> String.format("Waiting for Volume %s [%s] To Become Available... (%ds) - %s", vol.getName(), vol.getId(), elapsedSeconds, String.valueOf(vol.getStatus())));
+			}
+
+			protected void onReady(Volume vol, int elapsedSeconds) {
+				progress.ready(re, "Volume", vol.getId(), () -> String.format("Volume %s [%s] Was Built After (%d) Seconds", vol.getName(), vol.getId(), elapsedSeconds));
+			}
+
+			protected void onTimeout(Volume vol, String message) {
+				progress.failed(re, "Volume", vol.getId(), () -> message);
+			}
+
+			protected void onError(Volume vol, String message) {
+				progress.failed(re, "Volume", vol.getId(), () -> String.format("Volume %s [%s] Failed: %s", vol.getName(), vol.getId(), message));
+			}
+		});
+	}
+
+	/**
+	 * Registers a Server with the shared ReadinessEngine
+	 * @param clients Supplies a client bound to the polling thread
+	 * @return Future completed once the Server is ACTIVE
+	 */
+	public static CompletableFuture<Server> instanceAvailable(OpenStackClients clients, String re, Server server, int timeInSeconds, int pollingTimeInSeconds) {
+		return ReadinessEngine.shared().register(new PendingResource<Server>(ResourceKinds.SERVER, clients, re, server, timeInSeconds, pollingTimeInSeconds) {
+			protected boolean isReady(Server srv) {
+				return srv.getStatus() == Server.Status.ACTIVE;
+			}
+
+			protected String getError(Server srv) {
+				if(srv.getStatus() != Server.Status.ERROR) return null;
+				String errorMessage = "";
+				if(srv.getFault() != null) {
+					errorMessage = srv.getFault().getMessage();
+				}
+				return "Instance entered ERROR state: " + errorMessage;
+			}
+
+			protected String getTimeoutMessage(Server srv) {
+				return String.format("Instance %s [%s] Not Available After: %d Seconds", srv.getName(), srv.getId(), timeInSeconds);
+			}
+
+			protected void onStart(Server srv) {
+				progress.started(re, "Instance", srv.getId(), () -> String.format("Creating Instance: %s [%s]...", srv.getName(), srv.getId()));
+			}
+
+			protected void onWaiting(Server srv, int elapsedSeconds) {
+				progress.waiting(re, "Instance", srv.getId(), String.valueOf(srv.getStatus()),
+						() -> String.format("Waiting for Instance %s [%s] To Become Available... (%ds) - %s", srv.getName(), srv.getId(), elapsedSeconds, String.valueOf(srv.getStatus())));
+			}
+
+			protected void onReady(Server srv, int elapsedSeconds) {
+				progress.ready(re, "Instance", srv.getId(), () -> String.format("Instance %s [%s] Was Built After (%d) Seconds", srv.getName(), srv.getId(), elapsedSeconds));
+			}
+
+			protected void onTimeout(Server srv, String message) {
+				progress.failed(re, "Instance", srv.getId(), () -> message);
+			}
+
+			protected void onError(Server srv, String message) {
+				progress.failed(re, "Instance", srv.getId(), () -> String.format("Instance %s [%s] Failed: %s", srv.getName(), srv.getId(), message));
+			}
+		});
+	}
+
+	/**
+	 * Registers a Network with the shared ReadinessEngine
+	 * @param clients Supplies a client bound to the polling thread
+	 * @return Future completed once the Network is ACTIVE
+	 */
+	public static CompletableFuture<Network> networkUp(OpenStackClients clients, String re, Network network, int timeInSeconds, int pollingTimeInSeconds) {
+		return ReadinessEngine.shared().register(new PendingResource<Network>(ResourceKinds.NETWORK, clients, re, network, timeInSeconds, pollingTimeInSeconds) {
+			protected boolean isReady(Network net) {
+				return net.getStatus() == State.ACTIVE;
+			}
+
+			protected String getError(Network net) {
+				return net.getStatus() == State.ERROR ? "Network entered ERROR state" : null;
+			}
+
+			protected String getTimeoutMessage(Network net) {
+				return "Network Not Availabe After " + String.valueOf(timeInSeconds) + " Seconds";
+			}
+		});
+	}
+
+	/**
+	 * Registers a deleted Server with the shared ReadinessEngine. Nova still deletes a server
+	 * in ERROR, which broken ranges are full of, so only the timeout fails the delete.
+	 * @param clients Supplies a client bound to the polling thread
+	 * @return Future completed once the Server is gone
+	 */
+	public static CompletableFuture<Server> instanceDeleted(OpenStackClients clients, String re, Server server, int timeInSeconds, int pollingTimeInSeconds) {
+		return ReadinessEngine.shared().register(new PendingResource<Server>(ResourceKinds.SERVER, clients, re, server, timeInSeconds, pollingTimeInSeconds) {
+			protected boolean isReady(Server srv) {
+				return srv.getStatus() == Server.Status.DELETED;
+			}
+
+			protected boolean isReadyWhenGone() {
+				return true;
+			}
+
+			protected String getError(Server srv) {
+				return null;
+			}
+
+			protected String getTimeoutMessage(Server srv) {
+				return String.format("Instance %s [%s] Not Deleted After: %d Seconds", srv.getName(), srv.getId(), timeInSeconds);
+			}
+		});
+	}
+
+	/**
+	 * Registers a deleted Volume with the shared ReadinessEngine
+	 * @param clients Supplies a client bound to the polling thread
+	 * @return Future completed once the Volume is gone
+	 */
+	public static CompletableFuture<Volume> volumeDeleted(OpenStackClients clients, String re, Volume volume, int timeInSeconds, int pollingTimeInSeconds) {
+		return ReadinessEngine.shared().register(new PendingResource<Volume>(ResourceKinds.VOLUME, clients, re, volume, timeInSeconds, pollingTimeInSeconds) {
+			protected boolean isReady(Volume vol) {
+				return false;
+			}
+
+			protected boolean isReadyWhenGone() {
+				return true;
+			}
+
+			protected String getError(Volume vol) {
+				return vol.getStatus() == Volume.Status.ERROR_DELETING ? "Volume Entered An `ERROR_DELETING` State" : null;
+			}
+
+			protected String getTimeoutMessage(Volume vol) {
+				return String.format("Volume %s [%s] Not Deleted After: %d Seconds", vol.getName(), vol.getId(), timeInSeconds);
+			}
+		});
+	}
+
+	/**
+	 * Blocks on a readiness future, unwrapping the failure back into the Waiter exceptions
+	 * @param future Future returned by one of the readiness methods above
+	 * @return The ready resource
+	 */
+	public static <R> R await(CompletableFuture<R> future) throws ResourceTimeoutException, ResourceErrorException {
+		try {
+			return future.get();
+		} catch (InterruptedException e) {
+			future.cancel(false);
+			Thread.currentThread().interrupt();
+			throw new ResourceTimeoutException("Interrupted While Waiting On Resource");
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			if(cause instanceof ResourceTimeoutException) throw (ResourceTimeoutException) cause;
+			if(cause instanceof ResourceErrorException) throw (ResourceErrorException) cause;
+			if(cause instanceof RuntimeException) throw (RuntimeException) cause;
+			throw new ResourceErrorException(String.valueOf(cause));
+		}
+	}
+
+}
@@ -0,0 +1,189 @@
+package com.rahman.shard.OpenStackShard;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import org.openstack4j.model.compute.Server;
+import org.openstack4j.model.compute.ServerCreate;
+import org.openstack4j.model.compute.ServerUpdateOptions;
+
+import com.rahman.shard.OpenStackShard.bulk.BulkBatcher;
+import com.rahman.shard.OpenStackShard.bulk.NovaBulkService;
+import com.rahman.shard.OpenStackShard.client.OpenStackClients;
+import com.rahman.shard.OpenStackShard.client.OpenStackService;
+
+/**
+ * Boots hosts that only differ by name with a single Nova multi-create request.
+ * <p>
+ * Hosts are batched by range and by a signature of everything that goes into the boot
+ * request except the name. A batch is booted with min_count = max_count = batch size, the
+ * servers are looked up by their reservation ID and each one is renamed to one of the
+ * batch's hosts. Since the servers are identical, which server goes to which host does not
+ * matter. Once the reservation exists the hosts are never booted again one by one, a host
+ * whose server does not show up or cannot be renamed fails on its own.
+ * <p>
+ * Only the Nova display name is renamed. The guest hostname and the name in the config
+ * drive metadata are set at boot and stay {@code <first>-N}, after the first host of the
+ * batch, which is why multiCreate has to be turned on explicitly.
+ * <p>
+ * Waiting for a reservation's servers takes seconds, so batches are booted on their own
+ * threads rather than on the pool shared with the Neutron batches.
+ */
+public class ServerMultiCreate {
+
+	/** Attempts to list a reservation before giving up on seeing every server */
+	private static final int LOOKUP_ATTEMPTS = 10;
+	private static final long LOOKUP_DELAY_MILLIS = 500;
+	private static final long MAX_LOOKUP_DELAY_MILLIS = 5000;
+	
+	private final Function<String, OpenStackClients> clients;
+	private final NovaBulkService nova = new NovaBulkService();
+	private final BulkBatcher<String, HostBoot, Server> batcher;
+	
+	/**
+	 * @param clients Clients of the target each range is built on
+	 * @param maxBatch Most servers booted by one request
+	 * @param lingerMillis How long a batch waits for more identical hosts to become bootable
+	 * @param threads Batches booted at once
+	 */
+	public ServerMultiCreate(Function<String, OpenStackClients> clients, int maxBatch, long lingerMillis, int threads) {
+		this.clients = clients;
+		AtomicInteger count = new AtomicInteger();
+		ExecutorService senders = Executors.newFixedThreadPool(Math.max(1, threads), r -> {
+			Thread t = new Thread(r, "openstack-multi-create-" + count.incrementAndGet());
+			t.setDaemon(true);
+			return t;
+		});
+		this.batcher = new BulkBatcher<>("Server", maxBatch, lingerMillis, this::bootMany,
+				(key, boot) -> clients.apply(boot.rangeId).call(OpenStackService.COMPUTE, "servers.boot", c -> c.compute().servers().boot(boot.create)), senders);
+	}
+	
+	/**
+	 * Boots a host, together with any identical hosts booted at the same time
+	 * @param rangeId Range the host belongs to
+	 * @param signature Everything in the boot request other than the name
+	 * @param name Name of the host
+	 * @param create Boot request for this host
+	 * @return The host's server
+	 */
+	public Server boot(String rangeId, String signature, String name, ServerCreate create) {
+		return BulkBatcher.await(batcher.submit(rangeId + "|" + signature, new HostBoot(rangeId, name, create)));
+	}
+	
+	private List<Server> bootMany(String key, List<HostBoot> boots) {
+		OpenStackClients clients = this.clients.apply(boots.get(0).rangeId);
+		// Failing up to here boots nothing, so the batcher may still boot the hosts one by one
+		String reservation = clients.call(OpenStackService.COMPUTE, "servers.multiCreate", c -> nova.bootMany(boots.get(0).create, boots.size()));
+		
+		// From here on the servers exist, a host without a server fails instead of booting again
+		List<Server> named = new ArrayList<>(Collections.nCopies(boots.size(), null));
+		List<Server> servers;
+		try {
+			servers = lookup(clients, reservation, boots.size());
+		} catch(RuntimeException e) {
+			System.out.println(String.format("Could Not List Reservation %s: %s", reservation, e.getMessage()));
+			return named;
+		}
+		System.out.println(String.format("Booted %d Of %d Servers With Reservation %s", servers.size(), boots.size(), reservation));
+		
+		String first = boots.get(0).name;
+		for(Map.Entry<Integer, Server> e : byHost(first, servers, boots.size()).entrySet()) {
+			String id = e.getValue().getId();
+			String name = boots.get(e.getKey()).name;
+			try {
+				named.set(e.getKey(), clients.call(OpenStackService.COMPUTE, "servers.update", c -> c.compute().servers().update(id, ServerUpdateOptions.create().name(name))));
+			} catch(RuntimeException ex) {
+				// Unnamed it could never be adopted, so it is not kept
+				System.out.println(String.format("Could Not Rename Server [%s] To %s, Deleting It: %s", id, name, ex.getMessage()));
+				try {
+					clients.call(OpenStackService.COMPUTE, "servers.delete", c -> c.compute().servers().delete(id));
+				} catch(RuntimeException deleteFailed) {
+					System.out.println(String.format("Could Not Delete Server [%s]: %s", id, deleteFailed.getMessage()));
+				}
+			}
+		}
+		return named;
+	}
+	
+	/**
+	 * Lists the reservation's servers, waiting longer between attempts until all of them show up
+	 * @return Servers of the reservation, fewer than expected if some never showed up
+	 */
+	private List<Server> lookup(OpenStackClients clients, String reservation, int expected) {
+		Map<String, String> filter = new HashMap<>();
+		filter.put("reservation_id", reservation);
+		List<Server> servers = new ArrayList<>();
+		long delay = LOOKUP_DELAY_MILLIS;
+		for(int attempt = 0; attempt < LOOKUP_ATTEMPTS; attempt++) {
+			if(attempt > 0) {
+				try {
+					Thread.sleep(delay);
+				} catch(InterruptedException e) {
+					Thread.currentThread().interrupt();
+					break;
+				}
+				delay = Math.min(delay * 2, MAX_LOOKUP_DELAY_MILLIS);
+			}
+			servers = clients.call(OpenStackService.COMPUTE, "servers.list", c -> nova.listServers(filter));
+			if(servers.size() >= expected) break;
+		}
+		return servers;
+	}
+	
+	/**
+	 * Matches the servers of a reservation to the batch's hosts. Nova names them after the
+	 * first host with a -1 to -N suffix in boot order, a server named otherwise goes to the
+	 * first host still without one.
+	 * @param first Name of the first host, which the boot request was made with
+	 * @return Server of each host that has one, by the host's index in the batch
+	 */
+	private static Map<Integer, Server> byHost(String first, List<? extends Server> servers, int hosts) {
+		Map<Integer, Server> matched = new TreeMap<>();
+		List<Server> unmatched = new ArrayList<>();
+		for(Server s : servers) {
+			int index = suffix(first, s.getName()) - 1;
+			if(index >= 0 && index < hosts && !matched.containsKey(index)) {
+				matched.put(index, s);
+			} else {
+				unmatched.add(s);
+			}
+		}
+		for(int i = 0; i < hosts && !unmatched.isEmpty(); i++) {
+			if(!matched.containsKey(i)) matched.put(i, unmatched.remove(0));
+		}
+		return matched;
+	}
+	
+	/**
+	 * @return N of a server named {@code <first>-N}, or 0
+	 */
+	private static int suffix(String first, String name) {
+		if(name == null || !name.startsWith(first + "-")) return 0;
+		try {
+			return Integer.parseInt(name.substring(first.length() + 1));
+		} catch(NumberFormatException e) {
+			return 0;
+		}
+	}
+	
+	private static class HostBoot {
+		private final String rangeId;
+		private final String name;
+		private final ServerCreate create;
+		
+		private HostBoot(String rangeId, String name, ServerCreate create) {
+			this.rangeId = rangeId;
+			this.name = name;
+			this.create = create;
+		}
+	}
+	
+}
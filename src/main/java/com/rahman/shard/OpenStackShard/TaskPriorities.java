@@ -0,0 +1,126 @@
+package com.rahman.shard.OpenStackShard;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+import com.rahman.shard.OpenStackShard.readiness.LatencyProfile;
+
+/**
+ * Hands out ArcticTask priorities from the range dependency graph instead of fixed
+ * constants. Every task type is ranked by the longest chain of work that still follows once
+ * it starts, its own duration plus the longest chain of anything waiting on it, so the
+ * start of a long chain (image backed volumes feeding hosts) goes first and cheap leaves
+ * (security group rules) fill what is left. Types with equal chains are ranked by how many
+ * tasks wait on each of their tasks. Lower numbers run first, as before.
+ * <p>
+ * The graph is learned from the dependencies each task is built with, see
+ * {@link #built(TaskType, List)}. A priority is fixed when its task is built, before the
+ * tasks that will wait on it, so a range is ranked by the graph of the ranges built before
+ * it and the very first range by duration alone.
+ * <p>
+ * Durations start from rough defaults and are replaced by the measured time from action()
+ * to the end of waitMethod() once a type has been built a few times. Once its edge has been
+ * seen, a dependency always has a longer chain than anything waiting on it, so it ranks
+ * ahead of them.
+ */
+public class TaskPriorities {
+
+	public enum TaskType {
+		NETWORK(3000),
+		ROUTER(2000),
+		IMAGE_VOLUME(60000),
+		BLANK_VOLUME(5000),
+		SECURITY_GROUP(1000),
+		SECURITY_GROUP_RULE(500),
+		HOST(45000);
+		
+		private final long defaultMillis;
+		
+		TaskType(long defaultMillis) {
+			this.defaultMillis = defaultMillis;
+		}
+	}
+	
+	private final Map<TaskType, LatencyProfile> durations = new EnumMap<>(TaskType.class);
+	/** Tasks built of each type */
+	private final Map<TaskType, Long> tasks = new EnumMap<>(TaskType.class);
+	/** Tasks of each type that waited on a task of the key type, once per task waited on */
+	private final Map<TaskType, Map<TaskType, Long>> dependents = new EnumMap<>(TaskType.class);
+	
+	public TaskPriorities() {
+		for(TaskType type : TaskType.values()) {
+			durations.put(type, new LatencyProfile());
+		}
+	}
+	
+	/**
+	 * @param type Type of the task being built
+	 * @return Priority to construct the ArcticTask with
+	 */
+	public synchronized int of(TaskType type) {
+		Map<TaskType, Long> chains = new EnumMap<>(TaskType.class);
+		List<TaskType> ranked = new ArrayList<>(List.of(TaskType.values()));
+		ranked.sort(Comparator.<TaskType>comparingLong(t -> chain(t, chains)).thenComparingDouble(this::fanOut).reversed());
+		return ranked.indexOf(type);
+	}
+	
+	/**
+	 * Records a task as it is built with the tasks it depends on
+	 * @param type Type of the task
+	 * @param dependsOn Type of each task it waits on, once per task
+	 */
+	public synchronized void built(TaskType type, List<TaskType> dependsOn) {
+		tasks.merge(type, 1L, Long::sum);
+		for(TaskType dependency : dependsOn) {
+			dependents.computeIfAbsent(dependency, k -> new EnumMap<>(TaskType.class)).merge(type, 1L, Long::sum);
+		}
+	}
+	
+	/**
+	 * @param type Type of the finished task
+	 * @param millis Time from the start of action() until waitMethod() returned
+	 */
+	public void observe(TaskType type, long millis) {
+		durations.get(type).observe(millis);
+	}
+	
+	/**
+	 * @return Expected duration of a task of this type in milliseconds
+	 */
+	public long getExpectedMillis(TaskType type) {
+		LatencyProfile profile = durations.get(type);
+		return profile.isTrained() ? profile.getExpectedMillis() : type.defaultMillis;
+	}
+	
+	/**
+	 * @return Tasks waiting on an average task of the type
+	 */
+	private double fanOut(TaskType type) {
+		long built = tasks.getOrDefault(type, 0L);
+		if(built == 0) return 0;
+		long waiting = 0;
+		for(long count : dependents.getOrDefault(type, Map.of()).values()) {
+			waiting += count;
+		}
+		return (double) waiting / built;
+	}
+	
+	private long chain(TaskType type, Map<TaskType, Long> chains) {
+		Long known = chains.get(type);
+		if(known != null) return known;
+		// Guards against a cycle, which no range should have
+		chains.put(type, getExpectedMillis(type));
+		
+		long longest = 0;
+		for(TaskType dependent : dependents.getOrDefault(type, Map.of()).keySet()) {
+			longest = Math.max(longest, chain(dependent, chains));
+		}
+		long total = getExpectedMillis(type) + longest;
+		chains.put(type, total);
+		return total;
+	}
+	
+}
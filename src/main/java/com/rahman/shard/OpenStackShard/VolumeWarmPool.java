@@ -0,0 +1,225 @@
+package com.rahman.shard.OpenStackShard;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.openstack4j.api.Builders;
+import org.openstack4j.model.common.ActionResponse;
+import org.openstack4j.model.storage.block.Volume;
+
+import com.rahman.arctic.shard.objects.ArcticVolumeSO;
+import com.rahman.shard.OpenStackShard.bulk.CinderBulkService;
+import com.rahman.shard.OpenStackShard.client.OpenStackClients;
+import com.rahman.shard.OpenStackShard.client.OpenStackService;
+import com.rahman.shard.OpenStackShard.teardown.RangeTeardown;
+
+/**
+ * Keeps a number of AVAILABLE bootable volumes ready per (image, size) so buildVolume can
+ * rename one rather than wait for Cinder to copy the image.
+ * <p>
+ * Configured with the {@code volumePool} property, a comma separated list of
+ * {@code imageId:sizeGb:count} entries, and refilled every {@code volumePool.refillSeconds}.
+ * Pooled volumes carry an {@code arctic-pool} metadata tag and an {@code arctic-pool-} name
+ * prefix. Every refill rediscovers the pool from those markers, so the pool survives plugin
+ * restarts. Claiming a volume renames it and swaps the pool tag for the range tag, which
+ * takes it out of the pool and hands it to the range's readiness and teardown. Only volumes
+ * Cinder still reports AVAILABLE are claimed, and a claim that fails half way restores the
+ * volume's name and tag, or deletes it if that fails too.
+ * <p>
+ * A volume is only handed out by whoever adds it to the claimed set first, a refill may
+ * publish a volume again that a claim took from the previous listing.
+ */
+public class VolumeWarmPool {
+
+	private static final String TAG = "arctic-pool";
+	private static final String PREFIX = "arctic-pool-";
+	
+	private final OpenStackClients clients;
+	private final CinderBulkService cinder = new CinderBulkService();
+	private final Map<String, Integer> targets = new LinkedHashMap<>();
+	private final ConcurrentMap<String, ConcurrentLinkedDeque<String>> available = new ConcurrentHashMap<>();
+	private final Set<String> claimed = ConcurrentHashMap.newKeySet();
+	private final ScheduledExecutorService refiller = Executors.newSingleThreadScheduledExecutor(r -> {
+		Thread t = new Thread(r, "openstack-volume-pool");
+		t.setDaemon(true);
+		return t;
+	});
+	
+	/**
+	 * @param clients Provider used to reach Cinder
+	 * @param spec Value of the volumePool property, may be null for an empty pool
+	 */
+	public VolumeWarmPool(OpenStackClients clients, String spec) {
+		this.clients = clients;
+		if(spec == null) return;
+		for(String entry : spec.split(",")) {
+			String[] parts = entry.trim().split(":");
+			if(parts.length != 3) {
+				System.out.println("Ignoring Invalid Volume Pool Entry `" + entry + "`, Expected imageId:size:count");
+				continue;
+			}
+			try {
+				targets.put(key(parts[0].trim(), Integer.parseInt(parts[1].trim())), Integer.parseInt(parts[2].trim()));
+			} catch(NumberFormatException e) {
+				System.out.println("Ignoring Invalid Volume Pool Entry `" + entry + "`, Expected imageId:size:count");
+			}
+		}
+	}
+	
+	/**
+	 * Starts filling the pool in the background
+	 * @param refillSeconds Time between refills
+	 */
+	public void start(long refillSeconds) {
+		if(targets.isEmpty()) return;
+		System.out.println("Starting Volume Pool For " + targets);
+		refiller.scheduleWithFixedDelay(() -> {
+			try {
+				refill();
+			} catch(RuntimeException e) {
+				System.out.println("Failed To Refill Volume Pool: " + e.getMessage());
+			}
+		}, 0, refillSeconds, TimeUnit.SECONDS);
+	}
+	
+	/**
+	 * Takes a volume out of the pool once Cinder confirms it is AVAILABLE, then tags it with the
+	 * caller's range and renames it
+	 * @param av Volume the caller wants to build
+	 * @return The claimed volume, or null if the pool has none for the image and size
+	 */
+	public Volume claim(ArcticVolumeSO av) {
+		if(av.getImageId() == null) return null;
+		ConcurrentLinkedDeque<String> ready = available.get(key(av.getImageId(), av.getSize()));
+		if(ready == null) return null;
+		
+		String id;
+		while((id = ready.poll()) != null) {
+			String volumeId = id;
+			// Another claim already has it, through a deque a refill replaced
+			if(!claimed.add(volumeId)) continue;
+			Volume v;
+			try {
+				v = clients.call(OpenStackService.BLOCK_STORAGE, "volumes.get", c -> c.blockStorage().volumes().get(volumeId));
+			} catch(RuntimeException e) {
+				System.out.println(String.format("Failed To Claim Pooled Volume [%s]: %s", volumeId, e.getMessage()));
+				claimed.remove(volumeId);
+				continue;
+			}
+			if(v == null) continue;
+			if(v.getStatus() != Volume.Status.AVAILABLE) {
+				// Still in the pool, the next refill sorts it again
+				claimed.remove(volumeId);
+				continue;
+			}
+			
+			try {
+				clients.call(OpenStackService.BLOCK_STORAGE, "volumes.updateMetadata", c -> cinder.replaceMetadata(volumeId, Map.of(RangeTeardown.RANGE_TAG, av.getRangeId())));
+				check(clients.call(OpenStackService.BLOCK_STORAGE, "volumes.update", c -> c.blockStorage().volumes().update(volumeId, av.getName(), av.getDescription())));
+				Volume claimedVolume = clients.call(OpenStackService.BLOCK_STORAGE, "volumes.get", c -> c.blockStorage().volumes().get(volumeId));
+				if(claimedVolume == null) throw new IllegalStateException("Volume Disappeared While Being Claimed");
+				System.out.println(String.format("Claimed Pooled Volume [%s] For %s", volumeId, av.getName()));
+				return claimedVolume;
+			} catch(RuntimeException e) {
+				System.out.println(String.format("Failed To Claim Pooled Volume [%s]: %s", volumeId, e.getMessage()));
+				giveBack(v);
+			}
+		}
+		return null;
+	}
+	
+	/**
+	 * Puts a volume whose claim failed half way back into the pool, or deletes it if it cannot
+	 * be, so it neither leaks out of the pool nor is found under the range's name
+	 */
+	private void giveBack(Volume v) {
+		try {
+			Map<String, String> metadata = v.getMetaData() == null ? Map.of() : v.getMetaData();
+			clients.call(OpenStackService.BLOCK_STORAGE, "volumes.updateMetadata", c -> cinder.replaceMetadata(v.getId(), metadata));
+			check(clients.call(OpenStackService.BLOCK_STORAGE, "volumes.update", c -> c.blockStorage().volumes().update(v.getId(), v.getName(), v.getDescription())));
+			claimed.remove(v.getId());
+		} catch(RuntimeException e) {
+			System.out.println(String.format("Could Not Return Volume [%s] To The Pool, Deleting It: %s", v.getId(), e.getMessage()));
+			try {
+				clients.call(OpenStackService.BLOCK_STORAGE, "volumes.delete", c -> c.blockStorage().volumes().delete(v.getId()));
+			} catch(RuntimeException deleteFailed) {
+				System.out.println(String.format("Could Not Delete Volume [%s]: %s", v.getId(), deleteFailed.getMessage()));
+			}
+		}
+	}
+	
+	private void refill() {
+		// Rediscover the pool from Cinder, the markers are the only state that matters
+		Map<String, ConcurrentLinkedDeque<String>> ready = new HashMap<>();
+		Map<String, Integer> pending = new HashMap<>();
+		Set<String> seen = new HashSet<>();
+		for(String key : targets.keySet()) {
+			Map<String, String> filter = new HashMap<>();
+			filter.put("metadata", String.format("{\"%s\": \"%s\"}", TAG, key));
+			for(Volume v : clients.call(OpenStackService.BLOCK_STORAGE, "volumes.list", c -> cinder.listVolumes(filter))) {
+				discover(key, v, ready, pending, seen);
+			}
+		}
+		// Claimed volumes drop out of the listing once their new tag is visible
+		claimed.retainAll(seen);
+		
+		for(Map.Entry<String, Integer> target : targets.entrySet()) {
+			String key = target.getKey();
+			available.put(key, ready.getOrDefault(key, new ConcurrentLinkedDeque<>()));
+			int missing = target.getValue() - available.get(key).size() - pending.getOrDefault(key, 0);
+			
+			String imageId = key.substring(0, key.lastIndexOf(':'));
+			int size = Integer.parseInt(key.substring(key.lastIndexOf(':') + 1));
+			for(int i = 0; i < missing; i++) {
+				Map<String, String> metadata = new HashMap<>();
+				metadata.put(TAG, key);
+				clients.call(OpenStackService.BLOCK_STORAGE, "volumes.create", c -> c.blockStorage().volumes().create(Builders.volume()
+						.name(PREFIX + UUID.randomUUID().toString().substring(0, 8))
+						.size(size)
+						.imageRef(imageId)
+						.bootable(true)
+						.metadata(metadata)
+						.build()));
+			}
+			if(missing > 0) {
+				System.out.println(String.format("Volume Pool %s Creating %d Volumes", key, missing));
+			}
+		}
+	}
+	
+	/**
+	 * Sorts one listed pool volume into ready, pending or deleted
+	 */
+	private void discover(String key, Volume v, Map<String, ConcurrentLinkedDeque<String>> ready, Map<String, Integer> pending, Set<String> seen) {
+		if(v.getName() == null || !v.getName().startsWith(PREFIX)) return;
+		seen.add(v.getId());
+		if(claimed.contains(v.getId())) return;
+		
+		if(v.getStatus() == Volume.Status.AVAILABLE) {
+			ready.computeIfAbsent(key, k -> new ConcurrentLinkedDeque<>()).add(v.getId());
+		} else if(v.getStatus() == Volume.Status.ERROR) {
+			clients.call(OpenStackService.BLOCK_STORAGE, "volumes.delete", c -> c.blockStorage().volumes().delete(v.getId()));
+		} else {
+			pending.merge(key, 1, Integer::sum);
+		}
+	}
+	
+	private static void check(ActionResponse response) {
+		if(!response.isSuccess()) throw new IllegalStateException(response.getCode() + " " + response.getFault());
+	}
+	
+	private static String key(String imageId, int size) {
+		return imageId + ":" + size;
+	}
+	
+}
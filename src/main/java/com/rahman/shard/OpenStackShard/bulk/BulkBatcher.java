@@ -0,0 +1,179 @@
+package com.rahman.shard.OpenStackShard.bulk;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Collects create requests that arrive close together for the same key and sends them as a
+ * single bulk request. Each submitter still gets a future for its own item.
+ * <p>
+ * A batch is sent once it holds {@code maxBatch} items or {@code lingerMillis} after its first
+ * item arrived. Bulk creates are atomic in OpenStack, so when one fails the batch is retried item
+ * by item to find out which items actually failed and report each failure to its own submitter.
+ * A bulk call that went through but could not produce some of its items returns null for them
+ * instead of throwing, those items fail without being created again one by one.
+ * <p>
+ * Batches are sent from a small pool shared by every batcher, a batcher whose calls block for
+ * long is given its own executor so it cannot hold up the others.
+ * @param <K> What items must share to be created together, e.g. a security group ID
+ * @param <I> Item to create
+ * @param <O> Created resource
+ */
+public class BulkBatcher<K, I, O> {
+
+	/**
+	 * @param <K> Batch key
+	 * @param <I> Item to create
+	 * @param <O> Created resource
+	 */
+	public interface BulkCall<K, I, O> {
+		/**
+		 * @return Created resources in the same order as {@code items}, null for an item that
+		 * was not created and must not be retried
+		 */
+		List<O> create(K key, List<I> items);
+	}
+	
+	/**
+	 * @param <K> Batch key
+	 * @param <I> Item to create
+	 * @param <O> Created resource
+	 */
+	public interface SingleCall<K, I, O> {
+		O create(K key, I item);
+	}
+	
+	private static final AtomicInteger THREADS = new AtomicInteger();
+	private static final ScheduledExecutorService FLUSHER = Executors.newScheduledThreadPool(4, r -> {
+		Thread t = new Thread(r, "openstack-bulk-" + THREADS.incrementAndGet());
+		t.setDaemon(true);
+		return t;
+	});
+	
+	private final String name;
+	private final int maxBatch;
+	private final long lingerMillis;
+	private final BulkCall<K, I, O> bulk;
+	private final SingleCall<K, I, O> single;
+	private final Executor senders;
+	private final Map<K, Batch> open = new HashMap<>();
+	
+	/**
+	 * @param name Name used in log output
+	 * @param maxBatch Most items sent in one bulk request
+	 * @param lingerMillis How long a batch waits for more items
+	 * @param bulk Creates a whole batch in one request
+	 * @param single Creates one item, used for batches of one and to isolate failures
+	 */
+	public BulkBatcher(String name, int maxBatch, long lingerMillis, BulkCall<K, I, O> bulk, SingleCall<K, I, O> single) {
+		this(name, maxBatch, lingerMillis, bulk, single, FLUSHER);
+	}
+	
+	/**
+	 * @param senders Sends the batches instead of the shared pool
+	 */
+	public BulkBatcher(String name, int maxBatch, long lingerMillis, BulkCall<K, I, O> bulk, SingleCall<K, I, O> single, Executor senders) {
+		this.name = name;
+		this.maxBatch = Math.max(1, maxBatch);
+		this.lingerMillis = lingerMillis;
+		this.bulk = bulk;
+		this.single = single;
+		this.senders = senders;
+	}
+	
+	/**
+	 * @param key Batch the item belongs to
+	 * @param item Item to create
+	 * @return Future completed with the created resource for this item
+	 */
+	public CompletableFuture<O> submit(K key, I item) {
+		CompletableFuture<O> future = new CompletableFuture<>();
+		synchronized(open) {
+			Batch batch = open.get(key);
+			if(batch == null) {
+				Batch created = new Batch(key);
+				open.put(key, created);
+				FLUSHER.schedule(() -> senders.execute(() -> close(created)), lingerMillis, TimeUnit.MILLISECONDS);
+				batch = created;
+			}
+			batch.items.add(item);
+			batch.futures.add(future);
+			if(batch.items.size() >= maxBatch) {
+				Batch full = batch;
+				open.remove(key, full);
+				senders.execute(() -> flush(full));
+			}
+		}
+		return future;
+	}
+	
+	/**
+	 * Blocks on a future returned by {@link #submit}, rethrowing the original failure
+	 * @return The created resource
+	 */
+	public static <O> O await(CompletableFuture<O> future) {
+		try {
+			return future.join();
+		} catch(CompletionException e) {
+			if(e.getCause() instanceof RuntimeException) throw (RuntimeException) e.getCause();
+			throw e;
+		}
+	}
+	
+	private void close(Batch batch) {
+		synchronized(open) {
+			// Already sent because it filled up
+			if(!open.remove(batch.key, batch)) return;
+		}
+		flush(batch);
+	}
+	
+	private void flush(Batch batch) {
+		if(batch.items.size() > 1) {
+			try {
+				List<O> created = bulk.create(batch.key, batch.items);
+				if(created.size() != batch.items.size()) {
+					throw new IllegalStateException("Bulk Create Returned " + created.size() + " Of " + batch.items.size());
+				}
+				for(int i = 0; i < created.size(); i++) {
+					if(created.get(i) != null) {
+						batch.futures.get(i).complete(created.get(i));
+					} else {
+						batch.futures.get(i).completeExceptionally(new IllegalStateException(String.format("Bulk %s Create Of %d Went Through Without Item %d", name, batch.items.size(), i)));
+					}
+				}
+				return;
+			} catch(RuntimeException e) {
+				System.out.println(String.format("Bulk %s Create Of %d Failed, Retrying Individually: %s", name, batch.items.size(), e.getMessage()));
+			}
+		}
+		
+		for(int i = 0; i < batch.items.size(); i++) {
+			try {
+				batch.futures.get(i).complete(single.create(batch.key, batch.items.get(i)));
+			} catch(RuntimeException e) {
+				batch.futures.get(i).completeExceptionally(e);
+			}
+		}
+	}
+	
+	private class Batch {
+		private final K key;
+		private final List<I> items = new ArrayList<>();
+		private final List<CompletableFuture<O>> futures = new ArrayList<>();
+		
+		private Batch(K key) {
+			this.key = key;
+		}
+	}
+	
+}
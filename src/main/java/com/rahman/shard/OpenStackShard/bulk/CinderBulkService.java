@@ -0,0 +1,41 @@
+package com.rahman.shard.OpenStackShard.bulk;
+
+import java.util.List;
+import java.util.Map;
+
+import org.openstack4j.model.storage.block.Volume;
+import org.openstack4j.openstack.storage.block.internal.BaseBlockStorageServices;
+
+/**
+ * Cinder listings paged past the page size limit, which openstack4j does not do, and the
+ * volume metadata replacement it does not expose. Like every
+ * openstack4j service it uses the session bound to the calling thread, so call it from within
+ * OpenStackClients.call.
+ */
+public class CinderBulkService extends BaseBlockStorageServices {
+
+	/**
+	 * Lists volumes with GET /volumes/detail, following every next link
+	 * @param filter Query parameters such as name or metadata, the latter as a JSON object
+	 * @return Every matching volume
+	 */
+	public List<Volume> listVolumes(Map<String, String> filter) {
+		return Page.collect(marker -> {
+			Invocation<Volumes> list = get(Volumes.class, uri("/volumes/detail"));
+			filter.forEach(list::param);
+			if(marker != null) list.param("marker", marker);
+			return Responses.execute(list, Volumes.class);
+		});
+	}
+	
+	/**
+	 * Replaces every metadata item of the volume with PUT /volumes/{id}/metadata
+	 * @param volumeId Volume to update
+	 * @param metadata The volume's new metadata
+	 * @return Metadata the volume now has
+	 */
+	public Map<String, String> replaceMetadata(String volumeId, Map<String, String> metadata) {
+		return Responses.execute(put(VolumeMetadata.class, uri("/volumes/%s/metadata", volumeId)).entity(new VolumeMetadata(metadata)), VolumeMetadata.class).getMetadata();
+	}
+	
+}
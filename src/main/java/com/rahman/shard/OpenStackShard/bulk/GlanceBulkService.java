@@ -0,0 +1,36 @@
+package com.rahman.shard.OpenStackShard.bulk;
+
+import java.util.List;
+import java.util.Map;
+import java.util.function.Predicate;
+
+import org.openstack4j.model.image.v2.Image;
+import org.openstack4j.openstack.image.v2.internal.BaseImageServices;
+
+/**
+ * Glance image listings paged by their next link, which openstack4j does not follow. Like
+ * every openstack4j service it uses the session bound to the calling thread, so call it from
+ * within OpenStackClients.call.
+ */
+public class GlanceBulkService extends BaseImageServices {
+
+	/**
+	 * Lists images with GET /v2/images, following every next link. Glance caps the page size
+	 * at its api_limit_max, so a page shorter than the requested limit may not be the last.
+	 * <p>
+	 * Filters Glance cannot apply, such as a name prefix, are applied page by page, so only
+	 * the images kept are held rather than the whole catalog.
+	 * @param filter Query parameters such as status, visibility or limit
+	 * @param keep Whether to keep an image Glance returned
+	 * @return Every matching image that was kept
+	 */
+	public List<Image> listImages(Map<String, String> filter, Predicate<? super Image> keep) {
+		return Page.<Image>collect(marker -> {
+			Invocation<Images> list = get(Images.class, uri("/images"));
+			filter.forEach(list::param);
+			if(marker != null) list.param("marker", marker);
+			return Responses.execute(list, Images.class);
+		}, keep);
+	}
+	
+}
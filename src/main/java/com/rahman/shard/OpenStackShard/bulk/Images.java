@@ -0,0 +1,36 @@
+package com.rahman.shard.OpenStackShard.bulk;
+
+import java.util.List;
+
+import org.openstack4j.model.ModelEntity;
+import org.openstack4j.openstack.image.v2.domain.GlanceImage;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+/**
+ * One page of GET /v2/images, Glance links the next page from a top level next field
+ */
+public class Images implements ModelEntity, Page<GlanceImage> {
+
+	private static final long serialVersionUID = 1L;
+	
+	@JsonProperty("images")
+	private List<GlanceImage> images;
+	
+	@JsonProperty("next")
+	private String next;
+	
+	@Override
+	@JsonIgnore
+	public List<GlanceImage> getItems() {
+		return images;
+	}
+	
+	@Override
+	@JsonIgnore
+	public String getNextMarker() {
+		return next == null ? null : PageLink.marker(next);
+	}
+	
+}
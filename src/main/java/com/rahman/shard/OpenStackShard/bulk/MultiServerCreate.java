@@ -0,0 +1,37 @@
+package com.rahman.shard.OpenStackShard.bulk;
+
+import org.openstack4j.model.ModelEntity;
+import org.openstack4j.openstack.compute.domain.NovaServerCreate;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.annotation.JsonRootName;
+import com.fasterxml.jackson.annotation.JsonUnwrapped;
+
+/**
+ * A regular server create with Nova's multi-create fields added, boots {@code count}
+ * identical servers and answers with their reservation ID
+ */
+@JsonRootName("server")
+public class MultiServerCreate implements ModelEntity {
+
+	private static final long serialVersionUID = 1L;
+	
+	@JsonUnwrapped
+	private NovaServerCreate server;
+	
+	@JsonProperty("min_count")
+	private int minCount;
+	
+	@JsonProperty("max_count")
+	private int maxCount;
+	
+	@JsonProperty("return_reservation_id")
+	private boolean returnReservationId = true;
+	
+	public MultiServerCreate(NovaServerCreate server, int count) {
+		this.server = server;
+		this.minCount = count;
+		this.maxCount = count;
+	}
+	
+}
@@ -0,0 +1,47 @@
+package com.rahman.shard.OpenStackShard.bulk;
+
+import java.util.List;
+
+import org.openstack4j.model.ModelEntity;
+import org.openstack4j.openstack.networking.domain.NeutronNetwork;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+/**
+ * Body of a Neutron bulk network create, used for both the request and the response, and
+ * one page of a network listing
+ */
+public class Networks implements ModelEntity, Page<NeutronNetwork> {
+
+	private static final long serialVersionUID = 1L;
+	
+	@JsonProperty("networks")
+	private List<NeutronNetwork> networks;
+	
+	@JsonProperty("networks_links")
+	private List<PageLink> links;
+	
+	public Networks() {}
+	
+	public Networks(List<NeutronNetwork> networks) {
+		this.networks = networks;
+	}
+	
+	public List<NeutronNetwork> getNetworks() {
+		return networks;
+	}
+	
+	@Override
+	@JsonIgnore
+	public List<NeutronNetwork> getItems() {
+		return networks;
+	}
+	
+	@Override
+	@JsonIgnore
+	public String getNextMarker() {
+		return PageLink.nextMarker(links);
+	}
+	
+}
@@ -0,0 +1,153 @@
+package com.rahman.shard.OpenStackShard.bulk;
+
+import java.io.UnsupportedEncodingException;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import org.openstack4j.model.common.ActionResponse;
+import org.openstack4j.model.network.Network;
+import org.openstack4j.model.network.Router;
+import org.openstack4j.model.network.SecurityGroup;
+import org.openstack4j.model.network.SecurityGroupRule;
+import org.openstack4j.model.network.Subnet;
+import org.openstack4j.openstack.networking.domain.NeutronNetwork;
+import org.openstack4j.openstack.networking.domain.NeutronSecurityGroupRule;
+import org.openstack4j.openstack.networking.domain.NeutronSubnet;
+import org.openstack4j.openstack.networking.internal.BaseNetworkingServices;
+
+/**
+ * Neutron bulk create calls openstack4j does not expose, and listings filtered on many values
+ * at once and paged past the page size limit. Like every openstack4j service it uses the
+ * session bound to the calling thread, so call it from within OpenStackClients.call.
+ */
+public class NeutronBulkService extends BaseNetworkingServices {
+
+	/** Values of a repeated filter sent in one listing, keeps the URL well under the usual 8KB limits */
+	private static final int FILTER_CHUNK = 50;
+
+	/**
+	 * Creates many rules in one POST /v2.0/security-group-rules
+	 * @param rules Rules built with Builders.securityGroupRule()
+	 * @return Created rules in request order
+	 */
+	public List<? extends SecurityGroupRule> createSecurityGroupRules(List<? extends SecurityGroupRule> rules) {
+		List<NeutronSecurityGroupRule> body = new ArrayList<>();
+		for(SecurityGroupRule rule : rules) {
+			body.add((NeutronSecurityGroupRule) rule);
+		}
+		return Responses.execute(post(SecurityGroupRules.class, uri("/security-group-rules")).entity(new SecurityGroupRules(body)), SecurityGroupRules.class).getRules();
+	}
+	
+	/**
+	 * Creates many networks in one POST /v2.0/networks
+	 * @param networks Networks built with Builders.network()
+	 * @return Created networks in request order
+	 */
+	public List<? extends Network> createNetworks(List<? extends Network> networks) {
+		List<NeutronNetwork> body = new ArrayList<>();
+		for(Network network : networks) {
+			body.add((NeutronNetwork) network);
+		}
+		return Responses.execute(post(Networks.class, uri("/networks")).entity(new Networks(body)), Networks.class).getNetworks();
+	}
+	
+	/**
+	 * Creates many subnets in one POST /v2.0/subnets
+	 * @param subnets Subnets built with Builders.subnet()
+	 * @return Created subnets in request order
+	 */
+	public List<? extends Subnet> createSubnets(List<? extends Subnet> subnets) {
+		List<NeutronSubnet> body = new ArrayList<>();
+		for(Subnet subnet : subnets) {
+			body.add((NeutronSubnet) subnet);
+		}
+		return Responses.execute(post(Subnets.class, uri("/subnets")).entity(new Subnets(body)), Subnets.class).getSubnets();
+	}
+	
+	/**
+	 * Lists the networks matching any of the values, e.g. GET /v2.0/networks?id=a&id=b
+	 * @param field Attribute to filter on, such as id or name
+	 * @param values Values to match, nothing is listed if empty
+	 * @return Every matching network
+	 */
+	public List<Network> listNetworks(String field, Collection<String> values) {
+		return listNetworks(field, values, null);
+	}
+	
+	/**
+	 * Lists the networks matching any of the values that carry the tag
+	 * @param tag Tag every network must have, null for any
+	 * @see #listNetworks(String, Collection)
+	 */
+	public List<Network> listNetworks(String field, Collection<String> values, String tag) {
+		return list(Networks.class, "/networks", field, values, tag);
+	}
+	
+	/**
+	 * Lists the subnets matching any of the values that carry the tag
+	 * @see #listNetworks(String, Collection, String)
+	 */
+	public List<Subnet> listSubnets(String field, Collection<String> values, String tag) {
+		return list(Subnets.class, "/subnets", field, values, tag);
+	}
+	
+	/**
+	 * Lists the routers matching any of the values that carry the tag
+	 * @see #listNetworks(String, Collection, String)
+	 */
+	public List<Router> listRouters(String field, Collection<String> values, String tag) {
+		return list(Routers.class, "/routers", field, values, tag);
+	}
+	
+	/**
+	 * Lists the security groups matching any of the values that carry the tag
+	 * @see #listNetworks(String, Collection, String)
+	 */
+	public List<SecurityGroup> listSecurityGroups(String field, Collection<String> values, String tag) {
+		return list(SecurityGroups.class, "/security-groups", field, values, tag);
+	}
+	
+	/**
+	 * Adds a tag to a network, subnet, router or security group with
+	 * PUT /v2.0/{collection}/{id}/tags/{tag}
+	 * @param collection Collection the resource is in, such as networks or security-groups
+	 * @return Whether Neutron added the tag
+	 */
+	public ActionResponse tag(String collection, String id, String tag) {
+		return Responses.action(put(Void.class, uri("/%s/%s/tags/%s", collection, id, encode(tag))));
+	}
+	
+	/**
+	 * Repeats the filter for each value, which Neutron matches as any of them, and follows
+	 * every next link
+	 */
+	private <R, P extends Page<? extends R>> List<R> list(Class<P> type, String path, String field, Collection<String> values, String tag) {
+		List<R> found = new ArrayList<>();
+		List<String> all = new ArrayList<>(values);
+		for(int i = 0; i < all.size(); i += FILTER_CHUNK) {
+			List<String> chunk = all.subList(i, Math.min(all.size(), i + FILTER_CHUNK));
+			found.addAll(Page.<R>collect(marker -> {
+				Invocation<P> list = get(type, uri(path));
+				for(String value : chunk) {
+					list.param(field, value);
+				}
+				if(tag != null) list.param("tags", tag);
+				if(marker != null) list.param("marker", marker);
+				return Responses.execute(list, type);
+			}));
+		}
+		return found;
+	}
+	
+	private static String encode(String value) {
+		try {
+			return URLEncoder.encode(value, StandardCharsets.UTF_8.name()).replace("+", "%20");
+		} catch(UnsupportedEncodingException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+	
+}
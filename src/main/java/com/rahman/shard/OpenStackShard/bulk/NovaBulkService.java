@@ -0,0 +1,42 @@
+package com.rahman.shard.OpenStackShard.bulk;
+
+import java.util.List;
+import java.util.Map;
+
+import org.openstack4j.model.compute.Server;
+import org.openstack4j.model.compute.ServerCreate;
+import org.openstack4j.openstack.compute.domain.NovaServerCreate;
+import org.openstack4j.openstack.compute.internal.BaseComputeServices;
+
+/**
+ * Nova multi-create and server listings paged past the page size limit, neither of which
+ * openstack4j does. Like every openstack4j service it uses the session bound to the calling
+ * thread, so call it from within OpenStackClients.call.
+ */
+public class NovaBulkService extends BaseComputeServices {
+
+	/**
+	 * Boots {@code count} servers from one create request
+	 * @param server Server built with Builders.server()
+	 * @param count Number of identical servers, all or none are booted
+	 * @return Reservation ID shared by the booted servers
+	 */
+	public String bootMany(ServerCreate server, int count) {
+		return Responses.execute(post(Reservation.class, uri("/servers")).entity(new MultiServerCreate((NovaServerCreate) server, count)), Reservation.class).getReservationId();
+	}
+	
+	/**
+	 * Lists servers with GET /servers/detail, following every next link
+	 * @param filter Query parameters such as changes-since or reservation_id
+	 * @return Every matching server
+	 */
+	public List<Server> listServers(Map<String, String> filter) {
+		return Page.collect(marker -> {
+			Invocation<Servers> list = get(Servers.class, uri("/servers/detail"));
+			filter.forEach(list::param);
+			if(marker != null) list.param("marker", marker);
+			return Responses.execute(list, Servers.class);
+		});
+	}
+	
+}
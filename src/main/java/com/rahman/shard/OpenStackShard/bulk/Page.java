@@ -0,0 +1,58 @@
+package com.rahman.shard.OpenStackShard.bulk;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+/**
+ * One page of an OpenStack listing. Nova, Cinder and Neutron stop a listing at their page size
+ * limit (osapi_max_limit, 1000 by default) and link to the next page, which openstack4j's own
+ * list calls ignore.
+ * @param <R> Listed resource
+ */
+public interface Page<R> {
+
+	/**
+	 * @return Resources of this page
+	 */
+	List<? extends R> getItems();
+	
+	/**
+	 * @return Marker to request the next page with, or null if this is the last page
+	 */
+	String getNextMarker();
+	
+	/**
+	 * Follows a listing's next links to its last page
+	 * @param fetch Requests the page after the given marker, null for the first page
+	 * @return Every resource of every page
+	 */
+	static <R> List<R> collect(Function<String, ? extends Page<? extends R>> fetch) {
+		return collect(fetch, r -> true);
+	}
+	
+	/**
+	 * Follows a listing's next links to its last page, keeping only what the filter accepts
+	 * as each page arrives, so a page is never held longer than it takes to filter it
+	 * @param fetch Requests the page after the given marker, null for the first page
+	 * @param keep Whether to keep a resource
+	 * @return Every kept resource of every page
+	 */
+	static <R> List<R> collect(Function<String, ? extends Page<? extends R>> fetch, Predicate<? super R> keep) {
+		List<R> all = new ArrayList<>();
+		String marker = null;
+		do {
+			Page<? extends R> page = fetch.apply(marker);
+			if(page == null || page.getItems() == null) break;
+			for(R item : page.getItems()) {
+				if(keep.test(item)) all.add(item);
+			}
+			String next = page.getNextMarker();
+			// A next link back to the same page would never end
+			marker = next == null || next.equals(marker) ? null : next;
+		} while(marker != null);
+		return all;
+	}
+	
+}
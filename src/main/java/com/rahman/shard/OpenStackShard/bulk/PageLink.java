@@ -0,0 +1,54 @@
+package com.rahman.shard.OpenStackShard.bulk;
+
+import java.io.Serializable;
+import java.io.UnsupportedEncodingException;
+import java.net.URLDecoder;
+import java.util.List;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+/**
+ * Entry of the {@code <resources>_links} list Nova, Cinder and Neutron add to a listing that
+ * continues on another page
+ */
+public class PageLink implements Serializable {
+
+	private static final long serialVersionUID = 1L;
+	
+	@JsonProperty("href")
+	private String href;
+	
+	@JsonProperty("rel")
+	private String rel;
+	
+	/**
+	 * @param links Links of a listing, may be null
+	 * @return Marker of the next page, or null if there is none
+	 */
+	public static String nextMarker(List<PageLink> links) {
+		if(links == null) return null;
+		for(PageLink link : links) {
+			if("next".equals(link.rel) && link.href != null) return marker(link.href);
+		}
+		return null;
+	}
+	
+	/**
+	 * @param href Link to a page, e.g. /v2.0/networks?limit=1000&marker=1234
+	 * @return Value of the link's marker parameter, or null if it has none
+	 */
+	public static String marker(String href) {
+		int query = href.indexOf('?');
+		if(query < 0) return null;
+		for(String pair : href.substring(query + 1).split("&")) {
+			if(!pair.startsWith("marker=")) continue;
+			try {
+				return URLDecoder.decode(pair.substring("marker=".length()), "UTF-8");
+			} catch(UnsupportedEncodingException e) {
+				throw new IllegalStateException(e);
+			}
+		}
+		return null;
+	}
+	
+}
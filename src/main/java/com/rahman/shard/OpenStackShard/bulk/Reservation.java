@@ -0,0 +1,21 @@
+package com.rahman.shard.OpenStackShard.bulk;
+
+import org.openstack4j.model.ModelEntity;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+/**
+ * Response of a multi-create boot
+ */
+public class Reservation implements ModelEntity {
+
+	private static final long serialVersionUID = 1L;
+	
+	@JsonProperty("reservation_id")
+	private String reservationId;
+	
+	public String getReservationId() {
+		return reservationId;
+	}
+	
+}
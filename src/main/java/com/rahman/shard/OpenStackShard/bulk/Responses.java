@@ -0,0 +1,51 @@
+package com.rahman.shard.OpenStackShard.bulk;
+
+import org.openstack4j.api.exceptions.ResponseException;
+import org.openstack4j.core.transport.HttpResponse;
+import org.openstack4j.model.common.ActionResponse;
+import org.openstack4j.openstack.compute.functions.ToActionResponseFunction;
+import org.openstack4j.openstack.internal.BaseOpenStackService.Invocation;
+
+import com.rahman.shard.OpenStackShard.client.RetryAfterException;
+
+/**
+ * Sends the bulk services' requests like Invocation.execute() does, but keeps the Retry-After
+ * header of an error answer, which openstack4j drops, as a RetryAfterException
+ */
+final class Responses {
+
+	private static final String RETRY_AFTER = "Retry-After";
+	
+	private Responses() {
+	}
+	
+	/**
+	 * @param type Type the answer is read as
+	 * @return The answer, or null for a 404
+	 */
+	static <R> R execute(Invocation<R> invocation, Class<R> type) {
+		HttpResponse response = invocation.executeWithResponse();
+		try {
+			return response.getEntity(type);
+		} catch(ResponseException e) {
+			String retryAfter = response.header(RETRY_AFTER);
+			if(retryAfter == null) throw e;
+			RetryAfterException throttled = new RetryAfterException(e.getMessage(), e.getStatus(), retryAfter);
+			throttled.initCause(e);
+			throw throttled;
+		}
+	}
+	
+	/**
+	 * Sends a request answered without a body
+	 * @return Whether it succeeded, an error answer with a Retry-After header is thrown instead
+	 */
+	static ActionResponse action(Invocation<Void> invocation) {
+		HttpResponse response = invocation.executeWithResponse();
+		ActionResponse result = ToActionResponseFunction.INSTANCE.apply(response);
+		String retryAfter = response.header(RETRY_AFTER);
+		if(!result.isSuccess() && retryAfter != null) throw new RetryAfterException(result.getFault(), result.getCode(), retryAfter);
+		return result;
+	}
+	
+}
@@ -0,0 +1,36 @@
+package com.rahman.shard.OpenStackShard.bulk;
+
+import java.util.List;
+
+import org.openstack4j.model.ModelEntity;
+import org.openstack4j.openstack.networking.domain.NeutronRouter;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+/**
+ * One page of GET /v2.0/routers
+ */
+public class Routers implements ModelEntity, Page<NeutronRouter> {
+
+	private static final long serialVersionUID = 1L;
+	
+	@JsonProperty("routers")
+	private List<NeutronRouter> routers;
+	
+	@JsonProperty("routers_links")
+	private List<PageLink> links;
+	
+	@Override
+	@JsonIgnore
+	public List<NeutronRouter> getItems() {
+		return routers;
+	}
+	
+	@Override
+	@JsonIgnore
+	public String getNextMarker() {
+		return PageLink.nextMarker(links);
+	}
+	
+}
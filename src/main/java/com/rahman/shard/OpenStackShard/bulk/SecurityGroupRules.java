@@ -0,0 +1,30 @@
+package com.rahman.shard.OpenStackShard.bulk;
+
+import java.util.List;
+
+import org.openstack4j.model.ModelEntity;
+import org.openstack4j.openstack.networking.domain.NeutronSecurityGroupRule;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+/**
+ * Body of a Neutron bulk security group rule create, used for both the request and the response
+ */
+public class SecurityGroupRules implements ModelEntity {
+
+	private static final long serialVersionUID = 1L;
+	
+	@JsonProperty("security_group_rules")
+	private List<NeutronSecurityGroupRule> rules;
+	
+	public SecurityGroupRules() {}
+	
+	public SecurityGroupRules(List<NeutronSecurityGroupRule> rules) {
+		this.rules = rules;
+	}
+	
+	public List<NeutronSecurityGroupRule> getRules() {
+		return rules;
+	}
+	
+}
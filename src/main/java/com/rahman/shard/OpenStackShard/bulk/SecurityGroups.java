@@ -0,0 +1,36 @@
+package com.rahman.shard.OpenStackShard.bulk;
+
+import java.util.List;
+
+import org.openstack4j.model.ModelEntity;
+import org.openstack4j.openstack.networking.domain.NeutronSecurityGroup;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+/**
+ * One page of GET /v2.0/security-groups
+ */
+public class SecurityGroups implements ModelEntity, Page<NeutronSecurityGroup> {
+
+	private static final long serialVersionUID = 1L;
+	
+	@JsonProperty("security_groups")
+	private List<NeutronSecurityGroup> groups;
+	
+	@JsonProperty("security_groups_links")
+	private List<PageLink> links;
+	
+	@Override
+	@JsonIgnore
+	public List<NeutronSecurityGroup> getItems() {
+		return groups;
+	}
+	
+	@Override
+	@JsonIgnore
+	public String getNextMarker() {
+		return PageLink.nextMarker(links);
+	}
+	
+}
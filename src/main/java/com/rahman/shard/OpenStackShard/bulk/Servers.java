@@ -0,0 +1,36 @@
+package com.rahman.shard.OpenStackShard.bulk;
+
+import java.util.List;
+
+import org.openstack4j.model.ModelEntity;
+import org.openstack4j.openstack.compute.domain.NovaServer;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+/**
+ * One page of GET /servers/detail
+ */
+public class Servers implements ModelEntity, Page<NovaServer> {
+
+	private static final long serialVersionUID = 1L;
+	
+	@JsonProperty("servers")
+	private List<NovaServer> servers;
+	
+	@JsonProperty("servers_links")
+	private List<PageLink> links;
+	
+	@Override
+	@JsonIgnore
+	public List<NovaServer> getItems() {
+		return servers;
+	}
+	
+	@Override
+	@JsonIgnore
+	public String getNextMarker() {
+		return PageLink.nextMarker(links);
+	}
+	
+}
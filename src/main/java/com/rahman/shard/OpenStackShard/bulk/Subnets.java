@@ -0,0 +1,47 @@
+package com.rahman.shard.OpenStackShard.bulk;
+
+import java.util.List;
+
+import org.openstack4j.model.ModelEntity;
+import org.openstack4j.openstack.networking.domain.NeutronSubnet;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+/**
+ * Body of a Neutron bulk subnet create, used for both the request and the response, and
+ * one page of a subnet listing
+ */
+public class Subnets implements ModelEntity, Page<NeutronSubnet> {
+
+	private static final long serialVersionUID = 1L;
+	
+	@JsonProperty("subnets")
+	private List<NeutronSubnet> subnets;
+	
+	@JsonProperty("subnets_links")
+	private List<PageLink> links;
+	
+	public Subnets() {}
+	
+	public Subnets(List<NeutronSubnet> subnets) {
+		this.subnets = subnets;
+	}
+	
+	public List<NeutronSubnet> getSubnets() {
+		return subnets;
+	}
+	
+	@Override
+	@JsonIgnore
+	public List<NeutronSubnet> getItems() {
+		return subnets;
+	}
+	
+	@Override
+	@JsonIgnore
+	public String getNextMarker() {
+		return PageLink.nextMarker(links);
+	}
+	
+}
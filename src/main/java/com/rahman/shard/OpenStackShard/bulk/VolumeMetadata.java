@@ -0,0 +1,29 @@
+package com.rahman.shard.OpenStackShard.bulk;
+
+import java.util.Map;
+
+import org.openstack4j.model.ModelEntity;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+/**
+ * Body and answer of PUT /volumes/{id}/metadata
+ */
+public class VolumeMetadata implements ModelEntity {
+
+	private static final long serialVersionUID = 1L;
+	
+	@JsonProperty("metadata")
+	private Map<String, String> metadata;
+	
+	public VolumeMetadata() {}
+	
+	public VolumeMetadata(Map<String, String> metadata) {
+		this.metadata = metadata;
+	}
+	
+	public Map<String, String> getMetadata() {
+		return metadata;
+	}
+	
+}
@@ -0,0 +1,36 @@
+package com.rahman.shard.OpenStackShard.bulk;
+
+import java.util.List;
+
+import org.openstack4j.model.ModelEntity;
+import org.openstack4j.openstack.storage.block.domain.CinderVolume;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+/**
+ * One page of GET /volumes/detail
+ */
+public class Volumes implements ModelEntity, Page<CinderVolume> {
+
+	private static final long serialVersionUID = 1L;
+	
+	@JsonProperty("volumes")
+	private List<CinderVolume> volumes;
+	
+	@JsonProperty("volumes_links")
+	private List<PageLink> links;
+	
+	@Override
+	@JsonIgnore
+	public List<CinderVolume> getItems() {
+		return volumes;
+	}
+	
+	@Override
+	@JsonIgnore
+	public String getNextMarker() {
+		return PageLink.nextMarker(links);
+	}
+	
+}
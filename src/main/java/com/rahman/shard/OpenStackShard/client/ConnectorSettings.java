@@ -0,0 +1,76 @@
+package com.rahman.shard.OpenStackShard.client;
+
+import java.util.ServiceLoader;
+import java.util.function.Function;
+
+import org.openstack4j.core.transport.Config;
+import org.openstack4j.core.transport.HttpExecutorService;
+
+/**
+ * Reads the HTTP connector timeouts from the shard properties so every client uses them
+ * instead of openstack4j's defaults.
+ * <p>
+ * Recognised properties:
+ * <ul>
+ * <li>http.connectTimeout - Connect timeout in milliseconds (default 10000)</li>
+ * <li>http.readTimeout - Read timeout in milliseconds (default 60000)</li>
+ * <li>http.connector - Expected connector implementation, e.g. jersey2, only checked</li>
+ * </ul>
+ * The timeouts are carried on the openstack4j Config, nothing is set JVM wide since other
+ * shards share the process. The shard ships the jersey2 connector, which is built on
+ * HttpURLConnection and reuses connections through the JDK keep-alive cache, so connection
+ * reuse is the host JVM's to size with -Dhttp.maxConnections.
+ */
+public class ConnectorSettings {
+
+	private final int connectTimeout;
+	private final int readTimeout;
+	private final String connector;
+	
+	public ConnectorSettings(Function<String, String> properties) {
+		this.connectTimeout = intValue(properties.apply("http.connectTimeout"), 10000);
+		this.readTimeout = intValue(properties.apply("http.readTimeout"), 60000);
+		this.connector = properties.apply("http.connector");
+	}
+	
+	/**
+	 * @return Config carrying the timeouts
+	 */
+	public Config toConfig() {
+		return Config.newConfig()
+				.withConnectionTimeout(connectTimeout)
+				.withReadTimeout(readTimeout);
+	}
+	
+	/**
+	 * openstack4j uses the first HttpExecutorService on the classpath, so the connector can
+	 * only be chosen by packaging. This reports which one is active and warns on a mismatch.
+	 */
+	public void printSummary() {
+		String active = "unknown";
+		for(HttpExecutorService service : ServiceLoader.load(HttpExecutorService.class)) {
+			active = service.getExecutorName();
+			break;
+		}
+		
+		System.out.println("HTTP Connector Options:");
+		System.out.println("\tConnector: " + active);
+		System.out.println("\tConnect Timeout: " + connectTimeout + "ms");
+		System.out.println("\tRead Timeout: " + readTimeout + "ms");
+		
+		if(connector != null && !active.toLowerCase().contains(connector.toLowerCase())) {
+			System.out.println("Requested HTTP Connector `" + connector + "` Is Not Active, Package Only That Connector To Use It");
+		}
+	}
+	
+	private static int intValue(String value, int def) {
+		if(value == null) return def;
+		try {
+			return Integer.parseInt(value.trim());
+		} catch(NumberFormatException e) {
+			System.out.println("Invalid Number `" + value + "`, Using Default " + def);
+			return def;
+		}
+	}
+	
+}
@@ -0,0 +1,197 @@
+package com.rahman.shard.OpenStackShard.client;
+
+import java.util.Date;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+import org.openstack4j.api.OSClient.OSClientV3;
+import org.openstack4j.api.exceptions.AuthenticationException;
+import org.openstack4j.api.exceptions.ResponseException;
+import org.openstack4j.api.types.Facing;
+import org.openstack4j.core.transport.Config;
+import org.openstack4j.model.common.ActionResponse;
+import org.openstack4j.model.common.Identifier;
+import org.openstack4j.model.identity.v3.Token;
+import org.openstack4j.openstack.OSFactory;
+import org.openstack4j.openstack.internal.OSClientSession;
+
+import com.rahman.shard.OpenStackShard.metrics.Metrics;
+
+/**
+ * Hands out OSClientV3 instances for the current thread from one shared Keystone token.
+ * <p>
+ * openstack4j binds a client session to the thread that created it, so each thread keeps its
+ * own client which is only rebuilt when the token changes or another session replaced it on
+ * that thread. The token is re-issued in the background before it expires, and calls made
+ * through {@link #call(OpenStackService, String, Function)} go through the ServiceGovernor and
+ * re-authenticate once when Keystone answers with a 401.
+ */
+public class OpenStackClients {
+
+	/** How long before expiry the token is refreshed */
+	private static final long REFRESH_AHEAD_MILLIS = 5 * 60 * 1000L;
+	/** Delay before retrying a failed background refresh */
+	private static final long RETRY_MILLIS = 30 * 1000L;
+	/** Weight of the newest call in the latency average */
+	private static final double LATENCY_ALPHA = 0.1;
+	
+	private static final ScheduledExecutorService REFRESHER = Executors.newSingleThreadScheduledExecutor(r -> {
+		Thread t = new Thread(r, "openstack-token-refresh");
+		t.setDaemon(true);
+		return t;
+	});
+	
+	private final ThreadLocal<OSClientV3> bound = new ThreadLocal<>();
+	
+	private volatile Token token;
+	private Supplier<OSClientV3> authenticator;
+	private Config config;
+	private String region;
+	private volatile ServiceGovernor governor = ServiceGovernor.defaults();
+	private double latencyMillis;
+	private boolean latencyMeasured;
+	
+	/**
+	 * Wraps an already issued token, the token is used as is and never refreshed
+	 * @param token Keystone token to share
+	 * @return Provider handing out clients for the token
+	 */
+	public static OpenStackClients ofToken(Token token) {
+		OpenStackClients clients = new OpenStackClients();
+		clients.token = token;
+		return clients;
+	}
+	
+	/**
+	 * Authenticates against Keystone and starts refreshing the token in the background
+	 * @param region Region every client uses, may be null for Keystone's default
+	 * @param config Connector configuration shared by every client, may be null for the defaults
+	 * @return Client bound to the calling thread
+	 */
+	public OSClientV3 connect(String endpoint, String username, String password, String domain, String projectId, String region, Config config) {
+		this.config = config;
+		this.region = region;
+		authenticator = () -> OSFactory.builderV3()
+				.withConfig(config == null ? Config.DEFAULT : config)
+				.endpoint(endpoint)
+				.credentials(username, password, Identifier.byName(domain))
+				.scopeToProject(Identifier.byId(projectId))
+				.authenticate();
+		
+		OSClientV3 client = authenticator.get();
+		if(region != null) client.useRegion(region);
+		token = client.getToken();
+		bound.set(client);
+		scheduleRefresh();
+		return client;
+	}
+	
+	/**
+	 * @return Client bound to the calling thread using the current token
+	 */
+	public OSClientV3 get() {
+		Token current = token;
+		if(current == null) {
+			throw new IllegalStateException("OpenStack Client Has Not Been Connected");
+		}
+		
+		OSClientV3 client = bound.get();
+		if(client == null || client.getToken() != current || OSClientSession.getCurrent() != client) {
+			client = config == null ? OSFactory.clientFromToken(current) : OSFactory.clientFromToken(current, Facing.PUBLIC, config);
+			if(region != null) client.useRegion(region);
+			bound.set(client);
+		}
+		return client;
+	}
+	
+	/**
+	 * Runs an API call with a client bound to the calling thread once the service has capacity
+	 * for it, re-authenticating and retrying once if the token was rejected
+	 * @param service Service the call goes to, used for rate limiting
+	 * @param operation Name the call is measured under, such as servers.boot
+	 * @param call Work to perform against OpenStack
+	 * @return Result of the call
+	 */
+	public <R> R call(OpenStackService service, String operation, Function<OSClientV3, R> call) {
+		Token used = token;
+		try {
+			return governor.execute(service, operation, () -> timed(service, operation, call));
+		} catch(AuthenticationException e) {
+			if(authenticator == null) throw e;
+			reauthenticate(used);
+			return governor.execute(service, operation, () -> timed(service, operation, call));
+		}
+	}
+	
+	/**
+	 * @return Average time an API call takes once it is let through, in milliseconds, 0 until
+	 * the first call
+	 */
+	public synchronized double getLatencyMillis() {
+		return latencyMillis;
+	}
+		
+	private <R> R timed(OpenStackService service, String operation, Function<OSClientV3, R> call) {
+		long start = System.currentTimeMillis();
+		int status = -1;
+		try {
+			R result = call.apply(get());
+			// Deletes report a failure in their ActionResponse instead of throwing
+			status = result instanceof ActionResponse && !((ActionResponse) result).isSuccess() ? ((ActionResponse) result).getCode() : 0;
+			return result;
+		} catch(ResponseException e) {
+			status = e.getStatus();
+			throw e;
+		} finally {
+			long took = System.currentTimeMillis() - start;
+			synchronized(this) {
+				latencyMillis = latencyMeasured ? latencyMillis + LATENCY_ALPHA * (took - latencyMillis) : took;
+				latencyMeasured = true;
+			}
+			Metrics.shared().apiCall(service.getKey(), operation, took, status);
+		}
+	}
+	
+	/**
+	 * @param governor Limits applied to every call made through this provider
+	 */
+	public void setGovernor(ServiceGovernor governor) {
+		this.governor = governor;
+	}
+	
+	/**
+	 * @return The Keystone token currently shared by every client
+	 */
+	public Token getToken() {
+		return token;
+	}
+	
+	/**
+	 * Issues a new token unless another thread already replaced the stale one
+	 * @param stale Token that was rejected or is about to expire
+	 */
+	public synchronized void reauthenticate(Token stale) {
+		if(token != stale || authenticator == null) return;
+		System.out.println("Re-Authenticating OpenStack Client...");
+		token = authenticator.get().getToken();
+	}
+	
+	private void scheduleRefresh() {
+		Date expires = token.getExpires();
+		if(expires == null) return;
+		long delay = expires.getTime() - System.currentTimeMillis() - REFRESH_AHEAD_MILLIS;
+		REFRESHER.schedule(() -> {
+			try {
+				reauthenticate(token);
+				scheduleRefresh();
+			} catch(RuntimeException e) {
+				System.out.println("Failed To Refresh OpenStack Token: " + e.getMessage());
+				REFRESHER.schedule(this::scheduleRefresh, RETRY_MILLIS, TimeUnit.MILLISECONDS);
+			}
+		}, Math.max(delay, RETRY_MILLIS), TimeUnit.MILLISECONDS);
+	}
+	
+}
@@ -0,0 +1,26 @@
+package com.rahman.shard.OpenStackShard.client;
+
+/**
+ * OpenStack services the shard calls, each is throttled separately
+ */
+public enum OpenStackService {
+
+	COMPUTE("compute"),
+	NETWORK("network"),
+	BLOCK_STORAGE("blockStorage"),
+	IMAGE("image");
+	
+	private final String key;
+	
+	OpenStackService(String key) {
+		this.key = key;
+	}
+	
+	/**
+	 * @return Name used for the service in shard properties, e.g. limits.compute.rate
+	 */
+	public String getKey() {
+		return key;
+	}
+	
+}
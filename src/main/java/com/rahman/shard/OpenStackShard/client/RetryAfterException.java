@@ -0,0 +1,55 @@
+package com.rahman.shard.OpenStackShard.client;
+
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+
+import org.openstack4j.api.exceptions.ResponseException;
+
+/**
+ * A throttled answer that came with a Retry-After header. openstack4j drops the response
+ * headers when it maps an error to a ResponseException, so the shard's own raw requests throw
+ * this instead and the ServiceGovernor waits as long as the service asked.
+ */
+public class RetryAfterException extends ResponseException {
+
+	private static final long serialVersionUID = 1L;
+	
+	private final long retryAfterMillis;
+	
+	/**
+	 * @param retryAfter Value of the Retry-After header, seconds or an HTTP date
+	 */
+	public RetryAfterException(String message, int status, String retryAfter) {
+		super(message, status);
+		this.retryAfterMillis = parse(retryAfter, System.currentTimeMillis());
+	}
+	
+	/**
+	 * @return How long the service asked to wait, or -1 if the header could not be read
+	 */
+	public long getRetryAfterMillis() {
+		return retryAfterMillis;
+	}
+	
+	/**
+	 * @param retryAfter Value of the Retry-After header
+	 * @param now Current time in milliseconds, for a header holding a date
+	 * @return Milliseconds to wait, or -1 if the value is neither seconds nor an HTTP date
+	 */
+	static long parse(String retryAfter, long now) {
+		if(retryAfter == null) return -1;
+		String value = retryAfter.trim();
+		try {
+			return Math.max(0, (long)(Double.parseDouble(value) * 1000));
+		} catch(NumberFormatException e) {
+			// Not seconds, so it should be a date
+		}
+		try {
+			return Math.max(0, ZonedDateTime.parse(value, DateTimeFormatter.RFC_1123_DATE_TIME).toInstant().toEpochMilli() - now);
+		} catch(DateTimeParseException e) {
+			return -1;
+		}
+	}
+	
+}
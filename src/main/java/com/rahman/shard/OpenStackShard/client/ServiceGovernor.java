@@ -0,0 +1,130 @@
+package com.rahman.shard.OpenStackShard.client;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.Semaphore;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+import org.openstack4j.api.exceptions.ResponseException;
+import org.openstack4j.model.common.ActionResponse;
+
+/**
+ * Keeps the request rate and the number of requests in flight to each OpenStack service under
+ * the configured limits, and backs off when a service answers 429 or 503 anyway.
+ * <p>
+ * Recognised properties, per service key (compute, network, blockStorage, image):
+ * <ul>
+ * <li>limits.&lt;service&gt;.rate - Sustained requests per second (default 20, 0 for unlimited)</li>
+ * <li>limits.&lt;service&gt;.burst - Requests allowed at once after an idle period (default 2x rate)</li>
+ * <li>limits.&lt;service&gt;.concurrency - Requests in flight at once (default 16)</li>
+ * <li>limits.maxRetries - Retries of a throttled request before it fails (default 5)</li>
+ * <li>limits.retryAfterSeconds - First back off after a 429/503 without a Retry-After, doubled per retry (default 2)</li>
+ * </ul>
+ * A service is given the time its Retry-After header asks for. openstack4j drops response
+ * headers when it maps an error to an exception, so only the shard's own raw requests, which
+ * throw a {@link RetryAfterException}, carry it. Calls through openstack4j's services, and
+ * a header that cannot be read, back off by limits.retryAfterSeconds instead. While a
+ * service backs off, the whole service is paused, not only the request that got throttled.
+ * <p>
+ * A 429 is always safe to retry, the request was refused before it did anything. A 503 may
+ * come from a proxy after the backend accepted the request, so calls that create something
+ * (creates, boots, interface attachments) are only retried on a 429 or they could create it
+ * twice. Deletes answer with an ActionResponse instead of throwing, its code is checked the
+ * same way.
+ */
+public class ServiceGovernor {
+
+	private final Map<OpenStackService, TokenBucket> buckets = new EnumMap<>(OpenStackService.class);
+	private final Map<OpenStackService, Semaphore> inFlight = new EnumMap<>(OpenStackService.class);
+	private final int maxRetries;
+	private final long retryAfterMillis;
+	
+	public ServiceGovernor(Function<String, String> properties) {
+		for(OpenStackService service : OpenStackService.values()) {
+			String prefix = "limits." + service.getKey() + ".";
+			double rate = doubleValue(properties.apply(prefix + "rate"), 20);
+			int burst = (int) doubleValue(properties.apply(prefix + "burst"), Math.max(1, rate * 2));
+			int concurrency = (int) doubleValue(properties.apply(prefix + "concurrency"), 16);
+			buckets.put(service, new TokenBucket(rate, burst));
+			inFlight.put(service, new Semaphore(Math.max(1, concurrency), true));
+		}
+		this.maxRetries = (int) doubleValue(properties.apply("limits.maxRetries"), 5);
+		this.retryAfterMillis = (long)(doubleValue(properties.apply("limits.retryAfterSeconds"), 2) * 1000);
+	}
+	
+	/**
+	 * @return Governor with the default limits
+	 */
+	public static ServiceGovernor defaults() {
+		return new ServiceGovernor(key -> null);
+	}
+	
+	/**
+	 * Runs one API call once the service has capacity for it
+	 * @param service Service the call goes to
+	 * @param operation Name of the call, such as servers.boot, which decides whether a 503 is retried
+	 * @param call API call
+	 * @return Result of the call
+	 */
+	public <R> R execute(OpenStackService service, String operation, Supplier<R> call) {
+		TokenBucket bucket = buckets.get(service);
+		Semaphore permits = inFlight.get(service);
+		boolean idempotent = isIdempotent(operation);
+		long backoff = retryAfterMillis;
+		
+		for(int attempt = 0; ; attempt++) {
+			try {
+				bucket.acquire();
+				permits.acquire();
+			} catch(InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new IllegalStateException("Interrupted While Waiting For " + service.getKey() + " Capacity", e);
+			}
+			
+			int status;
+			long wait = backoff;
+			try {
+				R result = call.get();
+				if(!(result instanceof ActionResponse) || ((ActionResponse) result).isSuccess()) return result;
+				status = ((ActionResponse) result).getCode();
+				if(!isRetryable(status, idempotent) || attempt >= maxRetries) return result;
+			} catch(ResponseException e) {
+				status = e.getStatus();
+				if(!isRetryable(status, idempotent) || attempt >= maxRetries) throw e;
+				if(e instanceof RetryAfterException && ((RetryAfterException) e).getRetryAfterMillis() >= 0) {
+					wait = ((RetryAfterException) e).getRetryAfterMillis();
+				}
+			} finally {
+				permits.release();
+			}
+			System.out.println(String.format("OpenStack %s Answered %d To %s, Backing Off %dms", service.getKey(), status, operation, wait));
+			bucket.pause(wait);
+			backoff *= 2;
+		}
+	}
+	
+	private static boolean isRetryable(int status, boolean idempotent) {
+		return status == 429 || (status == 503 && idempotent);
+	}
+	
+	/**
+	 * @param operation Name of the call, such as servers.boot or networks.bulkCreate
+	 * @return False for calls that create something, which must not be sent twice
+	 */
+	static boolean isIdempotent(String operation) {
+		String verb = operation.substring(operation.lastIndexOf('.') + 1).toLowerCase();
+		return !verb.endsWith("create") && !verb.equals("boot") && !verb.equals("attachinterface");
+	}
+	
+	private static double doubleValue(String value, double def) {
+		if(value == null) return def;
+		try {
+			return Double.parseDouble(value.trim());
+		} catch(NumberFormatException e) {
+			System.out.println("Invalid Number `" + value + "`, Using Default " + def);
+			return def;
+		}
+	}
+	
+}
@@ -0,0 +1,68 @@
+package com.rahman.shard.OpenStackShard.client;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.openstack4j.model.compute.AbsoluteLimit;
+
+/**
+ * One endpoint, project and region ranges can be placed on, with the compute quota it had
+ * left the last time it was asked
+ */
+public class Target {
+
+	/** Stands in for quotas Nova reports as unlimited */
+	private static final int UNLIMITED = 100000;
+	
+	private final String name;
+	private final OpenStackClients clients;
+	private final AtomicInteger planned = new AtomicInteger();
+	
+	private volatile int freeInstances = UNLIMITED;
+	private volatile long quotaCheckedAt;
+	
+	public Target(String name, OpenStackClients clients) {
+		this.name = name;
+		this.clients = clients;
+	}
+	
+	public String getName() {
+		return name;
+	}
+	
+	public OpenStackClients getClients() {
+		return clients;
+	}
+	
+	/**
+	 * Asks Nova for the quota left unless it was asked recently
+	 * @param maxAgeMillis How old the last answer may be
+	 */
+	public void refreshQuota(long maxAgeMillis) {
+		if(System.currentTimeMillis() - quotaCheckedAt < maxAgeMillis) return;
+		AbsoluteLimit limits = clients.call(OpenStackService.COMPUTE, "quotaSets.limits", c -> c.compute().quotaSets().limits().getAbsolute());
+		freeInstances = limits.getMaxTotalInstances() < 0 ? UNLIMITED : limits.getMaxTotalInstances() - limits.getTotalInstancesUsed();
+		quotaCheckedAt = System.currentTimeMillis();
+	}
+	
+	/**
+	 * @return Instances that can still be booted, less those planned but not booted yet
+	 */
+	public int getFreeInstances() {
+		return freeInstances - planned.get();
+	}
+	
+	/**
+	 * Counts a host that is being booted here, until Nova counts it too
+	 */
+	public void plan() {
+		planned.incrementAndGet();
+	}
+	
+	/**
+	 * Stops counting a planned host, once it is booted Nova counts it instead
+	 */
+	public void booted() {
+		planned.decrementAndGet();
+	}
+	
+}
@@ -0,0 +1,130 @@
+package com.rahman.shard.OpenStackShard.client;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.BiConsumer;
+
+/**
+ * Decides which Target each range is built on. A range is placed the first time any of its
+ * resources is built and stays there, so everything it depends on is on the same cloud.
+ * <p>
+ * New ranges go to the target with the best score, its free instance quota scaled down by
+ * the average API latency seen by its clients, which the quota call itself seeds. Quota is
+ * asked for at most once per {@code quotaTtlMillis} and hosts being booted are counted
+ * against it until their boot returns.
+ * <p>
+ * Only targets that have every image and flavor the range forms offer are handed to the
+ * placer, the forms list the primary target's catalog.
+ */
+public class TargetPlacer {
+
+	private final List<Target> targets;
+	private final ConcurrentMap<String, Target> placements = new ConcurrentHashMap<>();
+	private final long quotaTtlMillis;
+	private final double latencyWeightMillis;
+	private final BiConsumer<String, String> placed;
+	
+	/**
+	 * @param targets Targets to place ranges on, the first one is the primary
+	 * @param quotaTtlMillis How long a quota answer is used for
+	 * @param latencyWeightMillis Latency that halves a target's score
+	 * @param placed Called with the range and target name of every new placement
+	 */
+	public TargetPlacer(List<Target> targets, long quotaTtlMillis, double latencyWeightMillis, BiConsumer<String, String> placed) {
+		this.targets = new ArrayList<>(targets);
+		this.quotaTtlMillis = quotaTtlMillis;
+		this.latencyWeightMillis = latencyWeightMillis;
+		this.placed = placed;
+	}
+	
+	/**
+	 * @return Target the range is built on, placing it if it is new
+	 */
+	public Target place(String rangeId) {
+		Target target = placements.get(rangeId);
+		if(target != null) return target;
+		
+		synchronized(this) {
+			target = placements.get(rangeId);
+			if(target != null) return target;
+			
+			target = best();
+			placements.put(rangeId, target);
+			System.out.println(String.format("Placing Range %s On Target %s (%d Instances Free)", rangeId, target.getName(), target.getFreeInstances()));
+			placed.accept(rangeId, target.getName());
+			return target;
+		}
+	}
+	
+	/**
+	 * @return Clients of the target the range is built on
+	 */
+	public OpenStackClients clientsFor(String rangeId) {
+		return place(rangeId).getClients();
+	}
+	
+	/**
+	 * Puts back placements recorded before a restart
+	 * @param restored Target name by range
+	 */
+	public void restore(Map<String, String> restored) {
+		restored.forEach((rangeId, name) -> {
+			Target target = get(name);
+			if(target == null) {
+				System.out.println(String.format("Range %s Was Placed On Unknown Target %s", rangeId, name));
+				return;
+			}
+			placements.put(rangeId, target);
+		});
+	}
+	
+	/**
+	 * Forgets the placement of a range that has been torn down
+	 */
+	public void release(String rangeId) {
+		placements.remove(rangeId);
+	}
+	
+	public Target getPrimary() {
+		return targets.get(0);
+	}
+	
+	public List<Target> getTargets() {
+		return new ArrayList<>(targets);
+	}
+	
+	public Target get(String name) {
+		for(Target t : targets) {
+			if(t.getName().equals(name)) return t;
+		}
+		return null;
+	}
+	
+	private Target best() {
+		if(targets.size() == 1) return targets.get(0);
+		
+		Target best = null;
+		double bestScore = 0;
+		for(Target t : targets) {
+			try {
+				t.refreshQuota(quotaTtlMillis);
+			} catch(RuntimeException e) {
+				// A target that cannot answer is not a good place for a new range
+				System.out.println(String.format("Could Not Read Quota Of Target %s: %s", t.getName(), e.getMessage()));
+				continue;
+			}
+			// The quota call goes through the target's clients, so even a target no range uses
+			// yet has its latency measured by now
+			double score = Math.max(0, t.getFreeInstances()) / (1 + t.getClients().getLatencyMillis() / latencyWeightMillis);
+			if(best == null || score > bestScore) {
+				best = t;
+				bestScore = score;
+			}
+		}
+		return best == null ? targets.get(0) : best;
+	}
+	
+}
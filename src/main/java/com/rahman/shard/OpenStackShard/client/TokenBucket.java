@@ -0,0 +1,56 @@
+package com.rahman.shard.OpenStackShard.client;
+
+/**
+ * Token bucket rate limiter. Requests reserve a token and sleep for however long the bucket
+ * needs to refill it, so bursts are smoothed into a steady rate with a bounded burst.
+ */
+class TokenBucket {
+
+	private final double perMilli;
+	private final double capacity;
+	
+	private double tokens;
+	private long last = System.currentTimeMillis();
+	private long pausedUntil;
+	
+	/**
+	 * @param perSecond Sustained requests per second, zero or less disables the limit
+	 * @param burst Requests that may go out at once after an idle period
+	 */
+	TokenBucket(double perSecond, int burst) {
+		this.perMilli = perSecond / 1000.0;
+		this.capacity = Math.max(1, burst);
+		this.tokens = capacity;
+	}
+	
+	/**
+	 * Blocks until the caller may send one request
+	 */
+	void acquire() throws InterruptedException {
+		long wait = reserve();
+		if(wait > 0) {
+			Thread.sleep(wait);
+		}
+	}
+	
+	/**
+	 * Holds every request back for a while, used when the service signals it is overloaded
+	 * @param millis Time to hold requests back
+	 */
+	synchronized void pause(long millis) {
+		pausedUntil = Math.max(pausedUntil, System.currentTimeMillis() + millis);
+	}
+	
+	private synchronized long reserve() {
+		long now = System.currentTimeMillis();
+		long paused = Math.max(0, pausedUntil - now);
+		if(perMilli <= 0) return paused;
+		
+		tokens = Math.min(capacity, tokens + (now - last) * perMilli);
+		last = now;
+		tokens -= 1;
+		long refill = tokens >= 0 ? 0 : (long) Math.ceil(-tokens / perMilli);
+		return Math.max(refill, paused);
+	}
+	
+}
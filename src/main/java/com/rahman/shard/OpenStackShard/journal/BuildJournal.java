@@ -0,0 +1,317 @@
+package com.rahman.shard.OpenStackShard.journal;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import com.rahman.shard.OpenStackShard.teardown.RangeInventory.Type;
+
+/**
+ * Append-only log of what the build tasks were about to create and what they created, so a
+ * range interrupted by the plugin dying can be picked up again instead of rebuilt.
+ * <p>
+ * Every create writes an INTENT line before the request is sent and a CREATED line with the
+ * OpenStack ID once it returns. Lines are written by a single thread which syncs the file
+ * once per batch, so concurrent tasks share one fsync. A task only waits for its INTENT to be
+ * on disk; a lost CREATED line still leaves the INTENT, and the resource is then found by name.
+ */
+public class BuildJournal {
+
+	private static final String INTENT = "INTENT";
+	private static final String CREATED = "CREATED";
+	private static final String RANGE_DELETED = "RANGE_DELETED";
+	private static final String PLACED = "PLACED";
+	
+	private final Path path;
+	private final long lingerMillis;
+	private final ConcurrentMap<String, Entry> entries = new ConcurrentHashMap<>();
+	private final ConcurrentMap<String, String> placements = new ConcurrentHashMap<>();
+	private final LinkedBlockingQueue<Line> queue = new LinkedBlockingQueue<>();
+	private FileChannel channel;
+	
+	/**
+	 * A resource of a range, with its ID once it has been created
+	 */
+	public static class Entry {
+		private final String rangeId;
+		private final Type type;
+		private final String name;
+		private volatile String id;
+		
+		private Entry(String rangeId, Type type, String name) {
+			this.rangeId = rangeId;
+			this.type = type;
+			this.name = name;
+		}
+		
+		public String getRangeId() {
+			return rangeId;
+		}
+		
+		public Type getType() {
+			return type;
+		}
+		
+		public String getName() {
+			return name;
+		}
+		
+		/**
+		 * @return OpenStack ID, or null if the create may not have happened
+		 */
+		public String getId() {
+			return id;
+		}
+	}
+	
+	private static class Line {
+		private final String text;
+		private final CompletableFuture<Void> written = new CompletableFuture<>();
+		
+		private Line(String text) {
+			this.text = text;
+		}
+	}
+	
+	/**
+	 * @param path Journal file, null to keep the journal in memory only
+	 * @param lingerMillis Time the writer waits for more lines before syncing a batch
+	 */
+	public BuildJournal(Path path, long lingerMillis) {
+		this.path = path;
+		this.lingerMillis = lingerMillis;
+	}
+	
+	/**
+	 * Replays the existing journal and starts writing to it
+	 */
+	public synchronized void open() throws IOException {
+		if(path == null) return;
+		byte[] existing = Files.exists(path) ? Files.readAllBytes(path) : new byte[0];
+		// Without its line break the last line was cut short by the process dying while writing
+		// it, and may still parse, with half an ID
+		int complete = existing.length;
+		while(complete > 0 && existing[complete - 1] != '\n') complete--;
+		for(String line : new String(existing, 0, complete, StandardCharsets.UTF_8).split("\n")) {
+			if(!line.isEmpty()) replay(line);
+		}
+		if(complete < existing.length) {
+			System.out.println("Skipping Incomplete Journal Line: " + new String(existing, complete, existing.length - complete, StandardCharsets.UTF_8));
+		}
+		channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+		// Cut the torn line off, the next line would be appended to it otherwise
+		channel.truncate(complete);
+		
+		Thread writer = new Thread(this::write, "openstack-journal");
+		writer.setDaemon(true);
+		writer.start();
+	}
+	
+	/**
+	 * Records that a resource is about to be created
+	 * @return Future completed once the line is on disk
+	 */
+	public CompletableFuture<Void> intent(String rangeId, Type type, String name) {
+		entries.putIfAbsent(key(rangeId, type, name), new Entry(rangeId, type, name));
+		return append(String.join("\t", INTENT, clean(rangeId), type.name(), clean(name)));
+	}
+	
+	/**
+	 * Records the ID of a created resource
+	 * @return Future completed once the line is on disk
+	 */
+	public CompletableFuture<Void> created(String rangeId, Type type, String name, String id) {
+		entries.computeIfAbsent(key(rangeId, type, name), k -> new Entry(rangeId, type, name)).id = id;
+		return append(String.join("\t", CREATED, clean(rangeId), type.name(), clean(name), id));
+	}
+	
+	/**
+	 * Records the target a range was placed on
+	 */
+	public CompletableFuture<Void> placed(String rangeId, String target) {
+		placements.put(rangeId, target);
+		return append(String.join("\t", PLACED, clean(rangeId), clean(target)));
+	}
+	
+	/**
+	 * @return Target name by range, for ranges not yet deleted
+	 */
+	public Map<String, String> getPlacements() {
+		return new HashMap<>(placements);
+	}
+	
+	/**
+	 * Records that nothing is left of a range
+	 */
+	public CompletableFuture<Void> rangeDeleted(String rangeId) {
+		entries.values().removeIf(e -> e.rangeId.equals(rangeId));
+		placements.remove(rangeId);
+		return append(String.join("\t", RANGE_DELETED, clean(rangeId)));
+	}
+	
+	/**
+	 * @return Entry of the resource, or null if the journal knows nothing about it
+	 */
+	public Entry get(String rangeId, Type type, String name) {
+		return entries.get(key(rangeId, type, name));
+	}
+	
+	public Collection<Entry> getEntries() {
+		return new ArrayList<>(entries.values());
+	}
+	
+	/**
+	 * Forgets a resource that no longer exists, takes effect on disk with the next compaction
+	 */
+	public void drop(Entry entry) {
+		entries.remove(key(entry.rangeId, entry.type, entry.name), entry);
+	}
+	
+	/**
+	 * Rewrites the journal with only the resources still known, replacing the old file atomically.
+	 * Safe to call while ranges are being built.
+	 */
+	public synchronized void compact() throws IOException {
+		if(path == null || channel == null) return;
+		// Holds off the writer, every line it wrote so far is reflected in the snapshot and the
+		// lines still queued are written to the new file, at worst a second time
+		synchronized(queue) {
+			List<String> lines = new ArrayList<>();
+			placements.forEach((rangeId, target) -> lines.add(String.join("\t", PLACED, clean(rangeId), clean(target))));
+			for(Entry e : entries.values()) {
+				lines.add(String.join("\t", INTENT, clean(e.rangeId), e.type.name(), clean(e.name)));
+				if(e.id != null) {
+					lines.add(String.join("\t", CREATED, clean(e.rangeId), e.type.name(), clean(e.name), e.id));
+				}
+			}
+			
+			Path tmp = path.resolveSibling(path.getFileName() + ".tmp");
+			try(FileChannel out = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+				ByteBuffer buffer = ByteBuffer.wrap(join(lines).getBytes(StandardCharsets.UTF_8));
+				while(buffer.hasRemaining()) {
+					out.write(buffer);
+				}
+				out.force(true);
+			}
+			
+			channel.close();
+			Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+			channel = FileChannel.open(path, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+		}
+	}
+	
+	/**
+	 * Waits for a line to be written, a journal that cannot be written is reported but does not stop the build
+	 */
+	public static void await(CompletableFuture<Void> written) {
+		try {
+			written.join();
+		} catch(RuntimeException e) {
+			System.out.println("Could Not Write Build Journal: " + e.getMessage());
+		}
+	}
+	
+	private CompletableFuture<Void> append(String text) {
+		Line line = new Line(text);
+		if(channel == null) {
+			line.written.complete(null);
+		} else {
+			queue.add(line);
+		}
+		return line.written;
+	}
+	
+	private void write() {
+		List<Line> batch = new ArrayList<>();
+		while(true) {
+			try {
+				batch.add(queue.take());
+				if(lingerMillis > 0) {
+					Line more = queue.poll(lingerMillis, TimeUnit.MILLISECONDS);
+					if(more != null) batch.add(more);
+				}
+				queue.drainTo(batch);
+			} catch (InterruptedException e) {
+				return;
+			}
+			
+			List<String> lines = new ArrayList<>();
+			for(Line l : batch) {
+				lines.add(l.text);
+			}
+			try {
+				synchronized(queue) {
+					ByteBuffer buffer = ByteBuffer.wrap(join(lines).getBytes(StandardCharsets.UTF_8));
+					while(buffer.hasRemaining()) {
+						channel.write(buffer);
+					}
+					channel.force(false);
+				}
+				batch.forEach(l -> l.written.complete(null));
+			} catch (IOException e) {
+				batch.forEach(l -> l.written.completeExceptionally(e));
+			}
+			batch.clear();
+		}
+	}
+	
+	private void replay(String line) {
+		String[] parts = line.split("\t");
+		try {
+			switch(parts[0]) {
+			case INTENT:
+				entries.putIfAbsent(key(parts[1], Type.valueOf(parts[2]), parts[3]), new Entry(parts[1], Type.valueOf(parts[2]), parts[3]));
+				break;
+			case CREATED:
+				entries.computeIfAbsent(key(parts[1], Type.valueOf(parts[2]), parts[3]), k -> new Entry(parts[1], Type.valueOf(parts[2]), parts[3])).id = parts[4];
+				break;
+			case PLACED:
+				placements.put(parts[1], parts[2]);
+				break;
+			case RANGE_DELETED:
+				entries.values().removeIf(e -> e.rangeId.equals(parts[1]));
+				placements.remove(parts[1]);
+				break;
+			default:
+				System.out.println("Skipping Unknown Journal Line: " + line);
+			}
+		} catch(ArrayIndexOutOfBoundsException | IllegalArgumentException e) {
+			System.out.println("Skipping Incomplete Journal Line: " + line);
+		}
+	}
+	
+	private static String join(List<String> lines) {
+		StringBuilder sb = new StringBuilder();
+		for(String l : lines) {
+			sb.append(l).append('\n');
+		}
+		return sb.toString();
+	}
+	
+	private static String key(String rangeId, Type type, String name) {
+		return clean(rangeId) + "\t" + type + "\t" + clean(name);
+	}
+	
+	/**
+	 * Tabs and line breaks would break the line format
+	 */
+	private static String clean(String value) {
+		return String.valueOf(value).replace('\t', ' ').replace('\n', ' ').replace('\r', ' ');
+	}
+	
+}
@@ -0,0 +1,281 @@
+package com.rahman.shard.OpenStackShard.journal;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.regex.Pattern;
+
+import org.openstack4j.model.compute.Server;
+import org.openstack4j.model.network.Network;
+import org.openstack4j.model.network.Router;
+import org.openstack4j.model.network.SecurityGroup;
+import org.openstack4j.model.network.Subnet;
+import org.openstack4j.model.storage.block.Volume;
+
+import com.rahman.shard.OpenStackShard.bulk.CinderBulkService;
+import com.rahman.shard.OpenStackShard.bulk.NeutronBulkService;
+import com.rahman.shard.OpenStackShard.bulk.NovaBulkService;
+import com.rahman.shard.OpenStackShard.client.OpenStackClients;
+import com.rahman.shard.OpenStackShard.client.OpenStackService;
+import com.rahman.shard.OpenStackShard.journal.BuildJournal.Entry;
+import com.rahman.shard.OpenStackShard.teardown.RangeInventory;
+import com.rahman.shard.OpenStackShard.teardown.RangeInventory.Type;
+import com.rahman.shard.OpenStackShard.teardown.RangeTeardown;
+
+/**
+ * Checks a replayed BuildJournal against the cloud after a restart. Resources that still
+ * exist are kept, so the build tasks adopt them instead of creating them again, and are put
+ * in the RangeInventory so the range can be torn down. Resources whose create was recorded
+ * without an ID are looked up by name, everything else is forgotten.
+ * <p>
+ * A resource is only matched by name when it carries its range, the range metadata of
+ * servers and volumes or the range tag of Neutron resources, so a resource of the same
+ * name in another range, or outside ARCTIC, is never adopted.
+ * <p>
+ * Nova and Cinder cannot filter on many IDs at once, so their listings are paged through.
+ * Neutron is only asked for the IDs in the journal and, range by range, for the names
+ * carrying the range's tag. The build tasks use
+ * {@link #findByName(Entry)} for entries that lose their ID while the plugin is running.
+ */
+public class JournalRecovery {
+
+	private static final NovaBulkService NOVA = new NovaBulkService();
+	private static final CinderBulkService CINDER = new CinderBulkService();
+	private static final NeutronBulkService NEUTRON = new NeutronBulkService();
+	
+	private final Function<String, OpenStackClients> ranges;
+	private final BuildJournal journal;
+	private final RangeInventory inventory;
+	
+	/** Each type is listed once per target, however many entries it has */
+	private final Map<OpenStackClients, Map<Type, List<Found>>> listed = new HashMap<>();
+	
+	private static class Found {
+		private final String id;
+		private final String name;
+		private final String rangeId;
+		
+		private Found(String id, String name, String rangeId) {
+			this.id = id;
+			this.name = name;
+			this.rangeId = rangeId;
+		}
+	}
+	
+	/**
+	 * @param ranges Clients of the target each range was built on
+	 */
+	public JournalRecovery(Function<String, OpenStackClients> ranges, BuildJournal journal, RangeInventory inventory) {
+		this.ranges = ranges;
+		this.journal = journal;
+		this.inventory = inventory;
+	}
+	
+	/**
+	 * Reconciles every entry, then compacts the journal down to what was kept
+	 */
+	public void reconcile() throws IOException {
+		List<Entry> entries = new ArrayList<>(journal.getEntries());
+		if(entries.isEmpty()) return;
+		System.out.println(String.format("Reconciling %d Build Journal Entries...", entries.size()));
+		
+		Set<String> claimed = claimed();
+		int adopted = 0;
+		for(Entry e : entries) {
+			String id = e.getId() != null ? existing(e) : unique(e, list(ranges.apply(e.getRangeId()), e.getType()), claimed);
+			if(e.getId() == null && e.getType() == Type.SERVER) {
+				deleteLeftovers(e, entries, claimed);
+			}
+			if(id == null) {
+				journal.drop(e);
+				continue;
+			}
+			if(e.getId() == null) {
+				claimed.add(id);
+				journal.created(e.getRangeId(), e.getType(), e.getName(), id);
+			}
+			inventory.record(e.getRangeId(), e.getType(), id);
+			adopted++;
+		}
+		
+		journal.compact();
+		System.out.println(String.format("Build Journal Kept %d Of %d Resources", adopted, entries.size()));
+	}
+	
+	/**
+	 * Looks up a resource whose create was recorded without an ID, such as one whose create
+	 * request timed out after OpenStack had accepted it
+	 * @return ID of the only unclaimed resource with the entry's name, or null
+	 */
+	public String findByName(Entry e) {
+		if(e.getType() == Type.ROUTER_INTERFACE) return null;
+		return unique(e, named(ranges.apply(e.getRangeId()), e.getType(), e.getName(), e.getRangeId()), claimed());
+	}
+	
+	private String existing(Entry e) {
+		OpenStackClients clients = ranges.apply(e.getRangeId());
+		if(e.getType() == Type.ROUTER_INTERFACE) {
+			// Kept while both ends exist, detaching a missing interface is harmless
+			String[] parts = e.getId().split("/", 2);
+			return contains(clients, Type.ROUTER, parts[0]) && contains(clients, Type.SUBNET, parts[1]) ? e.getId() : null;
+		}
+		return contains(clients, e.getType(), e.getId()) ? e.getId() : null;
+	}
+	
+	/**
+	 * @return ID of the only unclaimed resource with the entry's name and range
+	 */
+	private static String unique(Entry e, List<Found> found, Set<String> claimed) {
+		if(e.getType() == Type.ROUTER_INTERFACE) return null;
+		String match = null;
+		for(Found f : found) {
+			if(claimed.contains(f.id) || !e.getName().equals(f.name) || !e.getRangeId().equals(f.rangeId)) continue;
+			if(match != null && !match.equals(f.id)) return null;
+			match = f.id;
+		}
+		return match;
+	}
+	
+	/**
+	 * Deletes servers of the range that a multi-create booted before the plugin died and
+	 * before they were renamed. They are named after the first host of their batch with a -N
+	 * suffix, so they never match a host by name, and which hosts shared the batch is lost.
+	 * @param first Server entry without an ID, possibly the first host of a batch
+	 */
+	private void deleteLeftovers(Entry first, List<Entry> entries, Set<String> claimed) {
+		Set<String> hosts = new HashSet<>();
+		for(Entry e : entries) {
+			if(e.getType() == Type.SERVER && e.getRangeId().equals(first.getRangeId())) hosts.add(e.getName());
+		}
+		OpenStackClients clients = ranges.apply(first.getRangeId());
+		for(Found f : list(clients, Type.SERVER)) {
+			if(claimed.contains(f.id) || hosts.contains(f.name) || !first.getRangeId().equals(f.rangeId)) continue;
+			if(f.name == null || !f.name.matches(Pattern.quote(first.getName()) + "-\\d+")) continue;
+			
+			claimed.add(f.id);
+			System.out.println(String.format("Deleting Unnamed Multi-Create Server %s [%s]", f.name, f.id));
+			try {
+				clients.call(OpenStackService.COMPUTE, "servers.delete", c -> c.compute().servers().delete(f.id));
+			} catch(RuntimeException ex) {
+				// Still tagged with the range, so the range's teardown sweeps it up
+				System.out.println(String.format("Could Not Delete Server [%s]: %s", f.id, ex.getMessage()));
+			}
+		}
+	}
+	
+	/**
+	 * @return IDs the journal already holds, which no other entry may be matched to
+	 */
+	private Set<String> claimed() {
+		Set<String> claimed = new HashSet<>();
+		for(Entry e : journal.getEntries()) {
+			if(e.getId() != null) claimed.add(e.getId());
+		}
+		return claimed;
+	}
+	
+	private boolean contains(OpenStackClients clients, Type type, String id) {
+		for(Found f : list(clients, type)) {
+			if(f.id.equals(id)) return true;
+		}
+		return false;
+	}
+	
+	private List<Found> list(OpenStackClients clients, Type type) {
+		return listed.computeIfAbsent(clients, k -> new EnumMap<>(Type.class)).computeIfAbsent(type, t -> {
+			if(t == Type.SERVER || t == Type.VOLUME) return named(clients, t, null, null);
+			
+			Set<String> ids = new HashSet<>();
+			Map<String, Set<String>> names = new HashMap<>();
+			for(Entry e : journal.getEntries()) {
+				if(ranges.apply(e.getRangeId()) != clients) continue;
+				if(e.getType() == t) {
+					if(e.getId() != null) ids.add(e.getId());
+					else names.computeIfAbsent(e.getRangeId(), r -> new HashSet<>()).add(e.getName());
+				} else if(e.getType() == Type.ROUTER_INTERFACE && e.getId() != null) {
+					String[] parts = e.getId().split("/", 2);
+					if(t == Type.ROUTER) ids.add(parts[0]);
+					if(t == Type.SUBNET && parts.length > 1) ids.add(parts[1]);
+				}
+			}
+			// Found by ID and by name, each resource once
+			Map<String, Found> found = new LinkedHashMap<>();
+			neutron(clients, t, "id", ids, null).forEach(f -> found.put(f.id, f));
+			for(Map.Entry<String, Set<String>> range : names.entrySet()) {
+				neutron(clients, t, "name", range.getValue(), range.getKey()).forEach(f -> found.put(f.id, f));
+			}
+			return new ArrayList<>(found.values());
+		});
+	}
+	
+	/**
+	 * @param name Name to look for, null to list every server or volume
+	 * @param rangeId Range whose tag a Neutron resource must carry
+	 */
+	private List<Found> named(OpenStackClients clients, Type type, String name, String rangeId) {
+		List<Found> found = new ArrayList<>();
+		switch(type) {
+		case SERVER:
+			// Nova matches names as a regular expression
+			Map<String, String> servers = name == null ? Map.of() : Map.of("name", "^" + name.replaceAll("[\\\\^$.|?*+()\\[\\]{}]", "\\\\$0") + "$");
+			for(Server s : clients.call(OpenStackService.COMPUTE, "servers.list", c -> NOVA.listServers(servers))) {
+				found.add(new Found(s.getId(), s.getName(), s.getMetadata() == null ? null : s.getMetadata().get(RangeTeardown.RANGE_TAG)));
+			}
+			break;
+		case VOLUME:
+			Map<String, String> volumes = name == null ? Map.of() : Map.of("name", name);
+			for(Volume v : clients.call(OpenStackService.BLOCK_STORAGE, "volumes.list", c -> CINDER.listVolumes(volumes))) {
+				found.add(new Found(v.getId(), v.getName(), v.getMetaData() == null ? null : v.getMetaData().get(RangeTeardown.RANGE_TAG)));
+			}
+			break;
+		default:
+			found.addAll(neutron(clients, type, "name", List.of(name), rangeId));
+			break;
+		}
+		return found;
+	}
+	
+	/**
+	 * Lists the Neutron resources of the type matching any of the values
+	 * @param rangeId Range whose tag the resources must carry, null for any resource
+	 */
+	private static List<Found> neutron(OpenStackClients clients, Type type, String field, Collection<String> values, String rangeId) {
+		List<Found> found = new ArrayList<>();
+		if(values.isEmpty()) return found;
+		String tag = rangeId == null ? null : RangeTeardown.neutronTag(rangeId);
+		switch(type) {
+		case NETWORK:
+			for(Network n : clients.call(OpenStackService.NETWORK, "networks.list", c -> NEUTRON.listNetworks(field, values, tag))) {
+				found.add(new Found(n.getId(), n.getName(), rangeId));
+			}
+			break;
+		case SUBNET:
+			for(Subnet s : clients.call(OpenStackService.NETWORK, "subnets.list", c -> NEUTRON.listSubnets(field, values, tag))) {
+				found.add(new Found(s.getId(), s.getName(), rangeId));
+			}
+			break;
+		case ROUTER:
+			for(Router r : clients.call(OpenStackService.NETWORK, "routers.list", c -> NEUTRON.listRouters(field, values, tag))) {
+				found.add(new Found(r.getId(), r.getName(), rangeId));
+			}
+			break;
+		case SECURITY_GROUP:
+			for(SecurityGroup g : clients.call(OpenStackService.NETWORK, "securityGroups.list", c -> NEUTRON.listSecurityGroups(field, values, tag))) {
+				found.add(new Found(g.getId(), g.getName(), rangeId));
+			}
+			break;
+		default:
+			break;
+		}
+		return found;
+	}
+	
+}
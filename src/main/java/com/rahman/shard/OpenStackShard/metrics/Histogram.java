@@ -0,0 +1,80 @@
+package com.rahman.shard.OpenStackShard.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counts observations into fixed buckets, cheap enough to update on every API call
+ */
+public class Histogram {
+
+	/** Upper bounds in milliseconds for latencies */
+	public static final long[] LATENCY_BOUNDS = { 5, 10, 25, 50, 100, 250, 500, 1000, 2500, 5000, 10000, 30000, 60000, 300000 };
+	/** Upper bounds for counts such as polls per resource */
+	public static final long[] COUNT_BOUNDS = { 1, 2, 3, 5, 8, 13, 21, 34, 55, 89 };
+	
+	private final long[] bounds;
+	/** One more than the bounds, the last one counts everything above the highest bound */
+	private final LongAdder[] buckets;
+	private final LongAdder sum = new LongAdder();
+	private final LongAdder count = new LongAdder();
+	
+	public Histogram(long[] bounds) {
+		this.bounds = bounds;
+		this.buckets = new LongAdder[bounds.length + 1];
+		for(int i = 0; i < buckets.length; i++) {
+			buckets[i] = new LongAdder();
+		}
+	}
+	
+	public void observe(long value) {
+		int i = 0;
+		while(i < bounds.length && value > bounds[i]) i++;
+		buckets[i].increment();
+		sum.add(value);
+		count.increment();
+	}
+	
+	public long[] getBounds() {
+		return bounds;
+	}
+	
+	/**
+	 * @return Observations per bucket, not cumulative
+	 */
+	public long[] getBuckets() {
+		long[] counts = new long[buckets.length];
+		for(int i = 0; i < counts.length; i++) {
+			counts[i] = buckets[i].sum();
+		}
+		return counts;
+	}
+	
+	public long getSum() {
+		return sum.sum();
+	}
+	
+	public long getCount() {
+		return count.sum();
+	}
+	
+	/**
+	 * @param q Quantile between 0 and 1
+	 * @return Upper bound of the bucket holding the quantile, the highest bound if it is above all of them
+	 */
+	public long quantile(double q) {
+		long[] counts = getBuckets();
+		long total = 0;
+		for(long c : counts) total += c;
+		if(total == 0) return 0;
+		
+		// At least the first observation, so q=0 does not land in an empty bucket
+		long rank = Math.max(1, (long) Math.ceil(q * total));
+		long seen = 0;
+		for(int i = 0; i < counts.length; i++) {
+			seen += counts[i];
+			if(seen >= rank) return i < bounds.length ? bounds[i] : bounds[bounds.length - 1];
+		}
+		return bounds[bounds.length - 1];
+	}
+	
+}
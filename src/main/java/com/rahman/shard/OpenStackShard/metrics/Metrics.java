@@ -0,0 +1,235 @@
+package com.rahman.shard.OpenStackShard.metrics;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Measurements of where range build time goes: latency of every OpenStack call by service and
+ * operation, failed and throttled calls, readiness polls, the time each task spends in
+ * action() and waitMethod(), and the chain of tasks that decided how long each range took.
+ * <p>
+ * Read it with {@link #snapshot()} or as Prometheus text with {@link #toPrometheus()}.
+ */
+public class Metrics {
+
+	private static final Metrics SHARED = new Metrics();
+	/** Ranges whose task timings are kept for critical paths */
+	private static final int MAX_RANGES = 50;
+	
+	private final ConcurrentMap<String, Histogram> apiLatency = new ConcurrentHashMap<>();
+	private final ConcurrentMap<String, LongAdder> apiErrors = new ConcurrentHashMap<>();
+	private final ConcurrentMap<String, LongAdder> throttled = new ConcurrentHashMap<>();
+	private final ConcurrentMap<String, LongAdder> polls = new ConcurrentHashMap<>();
+	private final ConcurrentMap<String, Histogram> pollsPerResource = new ConcurrentHashMap<>();
+	private final ConcurrentMap<String, Histogram> taskPhases = new ConcurrentHashMap<>();
+	private final Map<String, Map<String, Span>> ranges = Collections.synchronizedMap(new LinkedHashMap<String, Map<String, Span>>() {
+		private static final long serialVersionUID = 1L;
+		
+		protected boolean removeEldestEntry(Map.Entry<String, Map<String, Span>> eldest) {
+			return size() > MAX_RANGES;
+		}
+	});
+	
+	/**
+	 * One task of a range, from the start of action() to the end of waitMethod()
+	 */
+	private static class Span {
+		private final long start;
+		private final long waitStart;
+		private final long end;
+		private final List<String> depends;
+		
+		private Span(long start, long waitStart, long end, List<String> depends) {
+			this.start = start;
+			this.waitStart = waitStart;
+			this.end = end;
+			this.depends = depends;
+		}
+	}
+	
+	public static Metrics shared() {
+		return SHARED;
+	}
+	
+	/**
+	 * @param service Service the call went to
+	 * @param operation What the call did, such as servers.boot
+	 * @param millis Time the call took
+	 * @param status 0 for success, otherwise the HTTP status or -1 if there was none
+	 */
+	public void apiCall(String service, String operation, long millis, int status) {
+		String key = service + "\t" + operation;
+		apiLatency.computeIfAbsent(key, k -> new Histogram(Histogram.LATENCY_BOUNDS)).observe(millis);
+		if(status != 0) {
+			apiErrors.computeIfAbsent(key, k -> new LongAdder()).increment();
+		}
+		if(status == 429) {
+			throttled.computeIfAbsent(service, k -> new LongAdder()).increment();
+		}
+	}
+	
+	/**
+	 * Counts one GET or list sent to refresh resources of the kind
+	 */
+	public void poll(String kind) {
+		polls.computeIfAbsent(kind, k -> new LongAdder()).increment();
+	}
+	
+	/**
+	 * @param attempts Polls a resource needed before it was done
+	 */
+	public void resourceDone(String kind, int attempts) {
+		pollsPerResource.computeIfAbsent(kind, k -> new Histogram(Histogram.COUNT_BOUNDS)).observe(attempts);
+	}
+	
+	/**
+	 * Records a finished task
+	 * @param rangeId Range the task belongs to
+	 * @param type Type of the task
+	 * @param task Name of the task within the range, such as "Host web-1"
+	 * @param start Start of action()
+	 * @param waitStart Start of waitMethod()
+	 * @param end End of waitMethod()
+	 * @param depends Names of the tasks it waited on
+	 */
+	public void task(String rangeId, String type, String task, long start, long waitStart, long end, List<String> depends) {
+		taskPhases.computeIfAbsent(type + "\taction", k -> new Histogram(Histogram.LATENCY_BOUNDS)).observe(waitStart - start);
+		taskPhases.computeIfAbsent(type + "\twait", k -> new Histogram(Histogram.LATENCY_BOUNDS)).observe(end - waitStart);
+		Map<String, Span> spans;
+		synchronized(ranges) {
+			spans = ranges.computeIfAbsent(rangeId, k -> new ConcurrentHashMap<>());
+		}
+		spans.put(task, new Span(start, waitStart, end, depends));
+	}
+	
+	/**
+	 * Follows the range back from the task that finished last, through whichever dependency
+	 * finished last, to a task that did not wait on anything
+	 * @return Steps from the first task to the last, empty if the range is unknown
+	 */
+	public List<MetricsSnapshot.Step> criticalPath(String rangeId) {
+		Map<String, Span> spans = ranges.get(rangeId);
+		List<MetricsSnapshot.Step> path = new ArrayList<>();
+		if(spans == null || spans.isEmpty()) return path;
+		
+		String current = null;
+		for(Map.Entry<String, Span> e : spans.entrySet()) {
+			if(current == null || e.getValue().end > spans.get(current).end) current = e.getKey();
+		}
+		
+		while(current != null) {
+			Span span = spans.get(current);
+			String previous = null;
+			for(String dep : span.depends) {
+				Span d = spans.get(dep);
+				if(d != null && (previous == null || d.end > spans.get(previous).end)) previous = dep;
+			}
+			long blocked = previous == null ? 0 : Math.max(0, span.start - spans.get(previous).end);
+			path.add(0, new MetricsSnapshot.Step(current, blocked, span.waitStart - span.start, span.end - span.waitStart));
+			current = previous;
+		}
+		return path;
+	}
+	
+	public MetricsSnapshot snapshot() {
+		Map<String, List<MetricsSnapshot.Step>> paths = new LinkedHashMap<>();
+		List<String> rangeIds;
+		synchronized(ranges) {
+			rangeIds = new ArrayList<>(ranges.keySet());
+		}
+		for(String rangeId : rangeIds) {
+			paths.put(rangeId, criticalPath(rangeId));
+		}
+		return new MetricsSnapshot(summaries(apiLatency), counts(apiErrors), counts(throttled), counts(polls),
+				summaries(pollsPerResource), summaries(taskPhases), paths);
+	}
+	
+	/**
+	 * @return Every metric in the Prometheus text exposition format
+	 */
+	public String toPrometheus() {
+		StringBuilder sb = new StringBuilder();
+		histograms(sb, "openstack_api_latency_seconds", "Latency of OpenStack API calls", apiLatency, 1000.0, "service", "operation");
+		counters(sb, "openstack_api_errors_total", "OpenStack API calls that failed", apiErrors, "service", "operation");
+		counters(sb, "openstack_api_throttled_total", "OpenStack API calls answered with 429", throttled, "service");
+		counters(sb, "openstack_readiness_polls_total", "Requests sent to poll resources for readiness", polls, "kind");
+		histograms(sb, "openstack_readiness_polls_per_resource", "Polls a resource needed before it was done", pollsPerResource, 1.0, "kind");
+		histograms(sb, "openstack_task_phase_seconds", "Time tasks spend in action and waitMethod", taskPhases, 1000.0, "type", "phase");
+		
+		sb.append("# HELP openstack_range_critical_path_seconds Time spent by each task on the critical path of a range\n");
+		sb.append("# TYPE openstack_range_critical_path_seconds gauge\n");
+		snapshot().getCriticalPaths().forEach((rangeId, steps) -> {
+			for(MetricsSnapshot.Step step : steps) {
+				String labels = "range=\"" + escape(rangeId) + "\",task=\"" + escape(step.getTask()) + "\"";
+				sb.append(String.format("openstack_range_critical_path_seconds{%s,phase=\"blocked\"} %s\n", labels, seconds(step.getBlockedMillis(), 1000.0)));
+				sb.append(String.format("openstack_range_critical_path_seconds{%s,phase=\"action\"} %s\n", labels, seconds(step.getActionMillis(), 1000.0)));
+				sb.append(String.format("openstack_range_critical_path_seconds{%s,phase=\"wait\"} %s\n", labels, seconds(step.getWaitMillis(), 1000.0)));
+			}
+		});
+		return sb.toString();
+	}
+	
+	private static void histograms(StringBuilder sb, String name, String help, Map<String, Histogram> histograms, double scale, String... labelNames) {
+		sb.append("# HELP ").append(name).append(' ').append(help).append('\n');
+		sb.append("# TYPE ").append(name).append(" histogram\n");
+		new TreeMap<>(histograms).forEach((key, h) -> {
+			String labels = labels(key, labelNames);
+			long[] bounds = h.getBounds();
+			long[] buckets = h.getBuckets();
+			long cumulative = 0;
+			for(int i = 0; i < buckets.length; i++) {
+				cumulative += buckets[i];
+				String le = i < bounds.length ? seconds(bounds[i], scale) : "+Inf";
+				sb.append(String.format("%s_bucket{%s,le=\"%s\"} %d\n", name, labels, le, cumulative));
+			}
+			sb.append(String.format("%s_sum{%s} %s\n", name, labels, seconds(h.getSum(), scale)));
+			sb.append(String.format("%s_count{%s} %d\n", name, labels, h.getCount()));
+		});
+	}
+	
+	private static void counters(StringBuilder sb, String name, String help, Map<String, LongAdder> counters, String... labelNames) {
+		sb.append("# HELP ").append(name).append(' ').append(help).append('\n');
+		sb.append("# TYPE ").append(name).append(" counter\n");
+		new TreeMap<>(counters).forEach((key, c) -> sb.append(String.format("%s{%s} %d\n", name, labels(key, labelNames), c.sum())));
+	}
+	
+	private static String labels(String key, String... labelNames) {
+		String[] values = key.split("\t", labelNames.length);
+		StringBuilder sb = new StringBuilder();
+		for(int i = 0; i < labelNames.length; i++) {
+			if(i > 0) sb.append(',');
+			sb.append(labelNames[i]).append("=\"").append(escape(i < values.length ? values[i] : "")).append('"');
+		}
+		return sb.toString();
+	}
+	
+	private static String seconds(long value, double scale) {
+		return String.valueOf(value / scale);
+	}
+	
+	private static String escape(String value) {
+		return value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+	}
+	
+	private static Map<String, MetricsSnapshot.Summary> summaries(Map<String, Histogram> histograms) {
+		Map<String, MetricsSnapshot.Summary> out = new TreeMap<>();
+		histograms.forEach((key, h) -> out.put(key.replace('\t', ' '), new MetricsSnapshot.Summary(h.getCount(), h.getSum(), h.quantile(0.5), h.quantile(0.95), h.quantile(0.99))));
+		return out;
+	}
+	
+	private static Map<String, Long> counts(Map<String, LongAdder> counters) {
+		Map<String, Long> out = new TreeMap<>();
+		counters.forEach((key, c) -> out.put(key.replace('\t', ' '), c.sum()));
+		return out;
+	}
+	
+	private Metrics() {}
+	
+}
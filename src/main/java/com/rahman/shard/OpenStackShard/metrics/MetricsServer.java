@@ -0,0 +1,41 @@
+package com.rahman.shard.OpenStackShard.metrics;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Serves {@link Metrics#toPrometheus()} on /metrics with the JDK's built-in HTTP server
+ */
+public class MetricsServer {
+
+	private final HttpServer server;
+	
+	/**
+	 * @param port Port to listen on
+	 */
+	public MetricsServer(int port) throws IOException {
+		server = HttpServer.create(new InetSocketAddress(port), 0);
+		server.createContext("/metrics", exchange -> {
+			byte[] body = Metrics.shared().toPrometheus().getBytes(StandardCharsets.UTF_8);
+			exchange.getResponseHeaders().set("Content-Type", "text/plain; version=0.0.4; charset=utf-8");
+			exchange.sendResponseHeaders(200, body.length);
+			try(OutputStream out = exchange.getResponseBody()) {
+				out.write(body);
+			}
+		});
+	}
+	
+	public void start() {
+		server.start();
+		System.out.println("Serving Metrics On Port " + server.getAddress().getPort());
+	}
+	
+	public void stop() {
+		server.stop(0);
+	}
+	
+}
@@ -0,0 +1,159 @@
+package com.rahman.shard.OpenStackShard.metrics;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Point in time copy of the Metrics. Keys are the labels joined by spaces, such as
+ * "compute servers.boot" or "HOST wait".
+ */
+public class MetricsSnapshot {
+
+	/**
+	 * Count, total and approximate quantiles of a histogram. Quantiles are bucket bounds.
+	 */
+	public static class Summary {
+		private final long count;
+		private final long sum;
+		private final long p50;
+		private final long p95;
+		private final long p99;
+		
+		Summary(long count, long sum, long p50, long p95, long p99) {
+			this.count = count;
+			this.sum = sum;
+			this.p50 = p50;
+			this.p95 = p95;
+			this.p99 = p99;
+		}
+		
+		public long getCount() {
+			return count;
+		}
+		
+		public long getSum() {
+			return sum;
+		}
+		
+		public double getMean() {
+			return count == 0 ? 0 : (double) sum / count;
+		}
+		
+		public long getP50() {
+			return p50;
+		}
+		
+		public long getP95() {
+			return p95;
+		}
+		
+		public long getP99() {
+			return p99;
+		}
+	}
+	
+	/**
+	 * A task on the critical path of a range
+	 */
+	public static class Step {
+		private final String task;
+		private final long blockedMillis;
+		private final long actionMillis;
+		private final long waitMillis;
+		
+		Step(String task, long blockedMillis, long actionMillis, long waitMillis) {
+			this.task = task;
+			this.blockedMillis = blockedMillis;
+			this.actionMillis = actionMillis;
+			this.waitMillis = waitMillis;
+		}
+		
+		public String getTask() {
+			return task;
+		}
+		
+		/**
+		 * @return Time between the previous step finishing and this task starting
+		 */
+		public long getBlockedMillis() {
+			return blockedMillis;
+		}
+		
+		public long getActionMillis() {
+			return actionMillis;
+		}
+		
+		public long getWaitMillis() {
+			return waitMillis;
+		}
+	}
+	
+	private final Map<String, Summary> apiLatency;
+	private final Map<String, Long> apiErrors;
+	private final Map<String, Long> throttled;
+	private final Map<String, Long> polls;
+	private final Map<String, Summary> pollsPerResource;
+	private final Map<String, Summary> taskPhases;
+	private final Map<String, List<Step>> criticalPaths;
+	
+	MetricsSnapshot(Map<String, Summary> apiLatency, Map<String, Long> apiErrors, Map<String, Long> throttled, Map<String, Long> polls,
+			Map<String, Summary> pollsPerResource, Map<String, Summary> taskPhases, Map<String, List<Step>> criticalPaths) {
+		this.apiLatency = apiLatency;
+		this.apiErrors = apiErrors;
+		this.throttled = throttled;
+		this.polls = polls;
+		this.pollsPerResource = pollsPerResource;
+		this.taskPhases = taskPhases;
+		this.criticalPaths = criticalPaths;
+	}
+	
+	/**
+	 * @return Latency in milliseconds by service and operation
+	 */
+	public Map<String, Summary> getApiLatency() {
+		return apiLatency;
+	}
+	
+	/**
+	 * @return Failed calls by service and operation
+	 */
+	public Map<String, Long> getApiErrors() {
+		return apiErrors;
+	}
+	
+	/**
+	 * @return Calls answered with 429 by service
+	 */
+	public Map<String, Long> getThrottled() {
+		return throttled;
+	}
+	
+	/**
+	 * @return Poll requests by resource kind
+	 */
+	public Map<String, Long> getPolls() {
+		return polls;
+	}
+	
+	/**
+	 * @return Polls each resource needed, by resource kind
+	 */
+	public Map<String, Summary> getPollsPerResource() {
+		return pollsPerResource;
+	}
+	
+	/**
+	 * @return Milliseconds in action() and waitMethod() by task type and phase
+	 */
+	public Map<String, Summary> getTaskPhases() {
+		return taskPhases;
+	}
+	
+	/**
+	 * @return Critical path of each recent range
+	 */
+	public Map<String, List<Step>> getCriticalPaths() {
+		return criticalPaths;
+	}
+	
+}
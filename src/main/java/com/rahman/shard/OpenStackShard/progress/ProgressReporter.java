@@ -0,0 +1,192 @@
+package com.rahman.shard.OpenStackShard.progress;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+import com.rahman.arctic.shard.messaging.ConsoleMessage;
+import com.rahman.arctic.shard.messaging.IcebergViewer;
+
+/**
+ * Collects the progress of every resource a range is waiting on and sends it to the console
+ * as one summary per interval, such as "42/100 Instances Ready, 58 Waiting (58 BUILD)",
+ * instead of one line per resource per poll.
+ * <p>
+ * Resources starting, changing status, becoming ready or failing are still sent straight
+ * away. Messages are passed as suppliers and only formatted when they are actually sent.
+ */
+public class ProgressReporter {
+
+	private static final ProgressReporter SHARED = new ProgressReporter();
+	/** How often ranges are checked for a summary that is due */
+	private static final long CHECK_MILLIS = 1000;
+	
+	private final ConcurrentMap<String, RangeProgress> ranges = new ConcurrentHashMap<>();
+	/** Sends a message to the console of a range */
+	private final BiConsumer<String, String> console;
+	private volatile long intervalMillis = 5000;
+	
+	private static class RangeProgress {
+		/** Status of each resource still being waited on, by kind and ID */
+		private final Map<String, Map<String, String>> waiting = new LinkedHashMap<>();
+		private final Map<String, Integer> ready = new LinkedHashMap<>();
+		private final Map<String, Integer> failed = new LinkedHashMap<>();
+		private boolean changed;
+		private long lastSummary = System.currentTimeMillis();
+	}
+	
+	public static ProgressReporter shared() {
+		return SHARED;
+	}
+	
+	private ProgressReporter() {
+		this((rangeId, message) -> IcebergViewer.sendConsoleBuildUpdate(rangeId, new ConsoleMessage(message)));
+		ScheduledExecutorService flusher = Executors.newSingleThreadScheduledExecutor(r -> {
+			Thread t = new Thread(r, "openstack-progress");
+			t.setDaemon(true);
+			return t;
+		});
+		flusher.scheduleWithFixedDelay(() -> flush(System.currentTimeMillis()), CHECK_MILLIS, CHECK_MILLIS, TimeUnit.MILLISECONDS);
+	}
+	
+	/**
+	 * Reporter that is only flushed when told to
+	 * @param console Receives each message with the range it belongs to
+	 */
+	ProgressReporter(BiConsumer<String, String> console) {
+		this.console = console;
+	}
+	
+	/**
+	 * @param intervalMillis Shortest time between two summaries of a range
+	 */
+	public void setIntervalMillis(long intervalMillis) {
+		this.intervalMillis = intervalMillis;
+	}
+	
+	/**
+	 * A resource started being waited on, sent straight away
+	 */
+	public void started(String rangeId, String kind, String id, Supplier<String> message) {
+		update(rangeId, range -> range.waiting.computeIfAbsent(kind, k -> new LinkedHashMap<>()).put(id, ""));
+		send(rangeId, message);
+	}
+	
+	/**
+	 * A resource is still not ready. Only sent straight away if its status changed, otherwise
+	 * it is left to the next summary.
+	 * @param status Current status of the resource
+	 */
+	public void waiting(String rangeId, String kind, String id, String status, Supplier<String> message) {
+		String previous = update(rangeId, range -> range.waiting.computeIfAbsent(kind, k -> new LinkedHashMap<>()).put(id, status));
+		if(previous != null && !previous.isEmpty() && !previous.equals(status)) {
+			send(rangeId, message);
+		}
+	}
+	
+	/**
+	 * A resource is ready, sent straight away
+	 */
+	public void ready(String rangeId, String kind, String id, Supplier<String> message) {
+		finish(rangeId, kind, id, true);
+		send(rangeId, message);
+	}
+	
+	/**
+	 * A resource failed or timed out, sent straight away
+	 */
+	public void failed(String rangeId, String kind, String id, Supplier<String> message) {
+		finish(rangeId, kind, id, false);
+		send(rangeId, message);
+	}
+	
+	private void finish(String rangeId, String kind, String id, boolean succeeded) {
+		update(rangeId, range -> {
+			Map<String, String> ofKind = range.waiting.get(kind);
+			if(ofKind != null) ofKind.remove(id);
+			return (succeeded ? range.ready : range.failed).merge(kind, 1, Integer::sum);
+		});
+	}
+	
+	/**
+	 * Sends the summary of every range that changed and has not had one within the interval
+	 */
+	void flush(long now) {
+		ranges.forEach((rangeId, range) -> {
+			String summary;
+			synchronized(range) {
+				if(!range.changed || now - range.lastSummary < intervalMillis) return;
+				summary = summarize(range);
+				range.changed = false;
+				range.lastSummary = now;
+			}
+			// Nothing left to report on, the range starts over if anything else is built for it.
+			// Checked again within the map, an update may have come in since the summary
+			ranges.computeIfPresent(rangeId, (k, r) -> r == range && !r.changed && r.waiting.values().stream().allMatch(Map::isEmpty) ? null : r);
+			console.accept(rangeId, summary);
+		});
+	}
+	
+	private static String summarize(RangeProgress range) {
+		Map<String, Boolean> kinds = new LinkedHashMap<>();
+		range.waiting.keySet().forEach(k -> kinds.put(k, true));
+		range.ready.keySet().forEach(k -> kinds.put(k, true));
+		range.failed.keySet().forEach(k -> kinds.put(k, true));
+		
+		StringBuilder sb = new StringBuilder("Progress:");
+		String separator = " ";
+		for(String kind : kinds.keySet()) {
+			Map<String, String> waiting = range.waiting.getOrDefault(kind, Map.of());
+			int ready = range.ready.getOrDefault(kind, 0);
+			int failed = range.failed.getOrDefault(kind, 0);
+			int total = ready + failed + waiting.size();
+			
+			sb.append(separator).append(String.format("%d/%d %ss Ready", ready, total, kind));
+			if(!waiting.isEmpty()) {
+				Map<String, Integer> byStatus = new TreeMap<>();
+				for(String status : waiting.values()) {
+					byStatus.merge(status.isEmpty() ? "STARTING" : status, 1, Integer::sum);
+				}
+				sb.append(String.format(", %d Waiting %s", waiting.size(), byStatus));
+			}
+			if(failed > 0) {
+				sb.append(String.format(", %d Failed", failed));
+			}
+			separator = "; ";
+		}
+		return sb.toString();
+	}
+	
+	private void send(String rangeId, Supplier<String> message) {
+		console.accept(rangeId, message.get());
+	}
+	
+	/**
+	 * Changes the range's progress within the map, so flush cannot drop the range while it is
+	 * being changed
+	 * @return What the change returned
+	 */
+	private <T> T update(String rangeId, Function<RangeProgress, T> change) {
+		List<T> result = new ArrayList<>(1);
+		ranges.compute(rangeId, (k, range) -> {
+			RangeProgress r = range == null ? new RangeProgress() : range;
+			synchronized(r) {
+				result.add(change.apply(r));
+				r.changed = true;
+			}
+			return r;
+		});
+		return result.get(0);
+	}
+	
+}
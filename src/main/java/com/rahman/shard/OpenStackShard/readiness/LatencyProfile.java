@@ -0,0 +1,51 @@
+package com.rahman.shard.OpenStackShard.readiness;
+
+/**
+ * Running estimate of how long one kind of resource takes to become ready, learned from
+ * recent builds with exponentially weighted averages so old builds fade out.
+ */
+public class LatencyProfile {
+
+	/** Weight of the newest observation */
+	private static final double ALPHA = 0.2;
+	/** Observations needed before the estimate is trusted */
+	private static final int MIN_SAMPLES = 3;
+	
+	private double mean;
+	private double deviation;
+	private int samples;
+	
+	/**
+	 * @param readyMillis Time from registration until the resource was ready
+	 */
+	public synchronized void observe(long readyMillis) {
+		if(samples == 0) {
+			mean = readyMillis;
+			deviation = readyMillis / 4.0;
+		} else {
+			double error = readyMillis - mean;
+			mean += ALPHA * error;
+			deviation += ALPHA * (Math.abs(error) - deviation);
+		}
+		samples++;
+	}
+	
+	public synchronized boolean isTrained() {
+		return samples >= MIN_SAMPLES;
+	}
+	
+	/**
+	 * @return Expected time until ready in milliseconds
+	 */
+	public synchronized long getExpectedMillis() {
+		return (long) mean;
+	}
+	
+	/**
+	 * @return Typical distance of a build from the expected time in milliseconds
+	 */
+	public synchronized long getDeviationMillis() {
+		return (long) deviation;
+	}
+	
+}
@@ -0,0 +1,141 @@
+package com.rahman.shard.OpenStackShard.readiness;
+
+import java.util.concurrent.CompletableFuture;
+
+import com.rahman.shard.OpenStackShard.client.OpenStackClients;
+
+/**
+ * A resource registered with the ReadinessEngine that has not yet reached its ready state.
+ * Subclasses decide what ready and failed mean and may hook the lifecycle to report progress.
+ * @param <R> OpenStack model being polled
+ */
+public abstract class PendingResource<R> {
+
+	private final ResourceKind<R> kind;
+	private final OpenStackClients clients;
+	private final String rangeId;
+	private final String id;
+	private final long timeoutMillis;
+	private final long pollMillis;
+	private final long start = System.currentTimeMillis();
+	private final CompletableFuture<R> future = new CompletableFuture<>();
+	
+	private volatile R resource;
+	private volatile long nextPollAt;
+	private int attempts;
+	
+	/**
+	 * @param kind Type of the resource, used to refresh it
+	 * @param clients Supplies a client bound to whichever pool thread performs the poll
+	 * @param rangeId Range the resource is being built for
+	 * @param resource Resource as returned by the create call
+	 * @param timeInSeconds Time before the wait fails with a ResourceTimeoutException
+	 * @param pollingTimeInSeconds Longest time between polls, the engine polls sooner while the resource is likely to become ready
+	 */
+	public PendingResource(ResourceKind<R> kind, OpenStackClients clients, String rangeId, R resource, int timeInSeconds, int pollingTimeInSeconds) {
+		this.kind = kind;
+		this.clients = clients;
+		this.rangeId = rangeId;
+		this.id = kind.getId(resource);
+		this.resource = resource;
+		this.timeoutMillis = timeInSeconds * 1000L;
+		this.pollMillis = pollingTimeInSeconds * 1000L;
+	}
+	
+	/**
+	 * @param resource Latest state of the resource
+	 * @return True once the resource can be handed back to the caller
+	 */
+	protected abstract boolean isReady(R resource);
+	
+	/**
+	 * @param resource Latest state of the resource
+	 * @return Error message if the resource entered a failed state, otherwise null
+	 */
+	protected abstract String getError(R resource);
+	
+	/**
+	 * @param resource Latest state of the resource
+	 * @return Message used for the ResourceTimeoutException
+	 */
+	protected abstract String getTimeoutMessage(R resource);
+	
+	/**
+	 * @return True if the resource disappearing is what is being waited on, as when deleting it
+	 */
+	protected boolean isReadyWhenGone() {
+		return false;
+	}
+	
+	protected void onStart(R resource) {}
+	
+	protected void onWaiting(R resource, int elapsedSeconds) {}
+	
+	protected void onReady(R resource, int elapsedSeconds) {}
+	
+	protected void onTimeout(R resource, String message) {}
+	
+	protected void onError(R resource, String message) {}
+	
+	public ResourceKind<R> getKind() {
+		return kind;
+	}
+	
+	public OpenStackClients getClients() {
+		return clients;
+	}
+	
+	public String getRangeId() {
+		return rangeId;
+	}
+	
+	public String getId() {
+		return id;
+	}
+	
+	public R getResource() {
+		return resource;
+	}
+	
+	void setResource(R resource) {
+		this.resource = resource;
+	}
+	
+	public CompletableFuture<R> getFuture() {
+		return future;
+	}
+	
+	long getPollMillis() {
+		return pollMillis;
+	}
+	
+	long getNextPollAt() {
+		return nextPollAt;
+	}
+	
+	boolean isDue(long now) {
+		return now >= nextPollAt;
+	}
+	
+	/**
+	 * Books the next poll and counts this one
+	 * @param delayMillis Delay chosen by the PollPolicy
+	 */
+	void scheduleNextPoll(long delayMillis) {
+		nextPollAt = System.currentTimeMillis() + delayMillis;
+		attempts++;
+	}
+	
+	int getAttempts() {
+		return attempts;
+	}
+	
+	long getElapsedMillis() {
+		return System.currentTimeMillis() - start;
+	}
+	
+	boolean isTimedOut() {
+		return getElapsedMillis() > timeoutMillis;
+	}
+	
+}
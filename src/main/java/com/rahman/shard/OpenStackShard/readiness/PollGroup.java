@@ -0,0 +1,104 @@
+package com.rahman.shard.OpenStackShard.readiness;
+
+import java.util.Date;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Every pending resource of one kind within one range. A group is refreshed with a
+ * single list call per tick rather than one GET per member.
+ * @param <R> OpenStack model being polled
+ */
+class PollGroup<R> {
+
+	/** How far behind the local clock the first changes-since cursor starts, covers clock drift against the API */
+	private static final long CURSOR_SKEW_MILLIS = 10 * 60 * 1000L;
+	
+	private final String key;
+	private final ResourceKind<R> kind;
+	private final Map<String, PendingResource<R>> members = new ConcurrentHashMap<>();
+	private final ReentrantLock polling = new ReentrantLock();
+	
+	private Date cursor;
+	private ScheduledFuture<?> tick;
+	private long tickAt = Long.MAX_VALUE;
+	
+	PollGroup(String key, ResourceKind<R> kind) {
+		this.key = key;
+		this.kind = kind;
+	}
+	
+	String getKey() {
+		return key;
+	}
+	
+	ResourceKind<R> getKind() {
+		return kind;
+	}
+	
+	Map<String, PendingResource<R>> getMembers() {
+		return members;
+	}
+	
+	/**
+	 * Held while a tick polls the group so a rescheduled tick never overlaps a running one
+	 */
+	ReentrantLock getPollingLock() {
+		return polling;
+	}
+	
+	synchronized void add(PendingResource<R> pending) {
+		members.put(pending.getId(), pending);
+		
+		// Rewind the cursor so a newcomer's changes are never skipped
+		Date floor = new Date(System.currentTimeMillis() - CURSOR_SKEW_MILLIS);
+		if(cursor == null || floor.before(cursor)) {
+			cursor = floor;
+		}
+	}
+	
+	synchronized Date getCursor() {
+		return cursor;
+	}
+	
+	synchronized void advanceCursor(Date updated) {
+		if(updated != null && (cursor == null || updated.after(cursor))) {
+			cursor = updated;
+		}
+	}
+	
+	/**
+	 * @return The earliest time any member wants to be polled
+	 */
+	long getNextPollAt() {
+		long next = Long.MAX_VALUE;
+		for(PendingResource<R> p : members.values()) {
+			next = Math.min(next, p.getNextPollAt());
+		}
+		return next;
+	}
+	
+	/**
+	 * @param at Time the caller wants the next tick
+	 * @return True if no tick is queued for that time or earlier
+	 */
+	synchronized boolean needsTick(long at) {
+		return tick == null || at < tickAt;
+	}
+	
+	synchronized void setTick(ScheduledFuture<?> next, long at) {
+		if(tick != null) {
+			tick.cancel(false);
+		}
+		tick = next;
+		tickAt = at;
+	}
+	
+	synchronized void clearTick() {
+		tick = null;
+		tickAt = Long.MAX_VALUE;
+	}
+	
+}
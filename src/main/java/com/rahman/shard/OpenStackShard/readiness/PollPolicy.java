@@ -0,0 +1,65 @@
+package com.rahman.shard.OpenStackShard.readiness;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Decides when a pending resource is polled next.
+ * <p>
+ * Polling starts with a short delay and backs off exponentially up to the interval the caller
+ * asked for. Once a kind has a trained LatencyProfile, polling skips ahead to just before the
+ * usual ready time and polls at the short delay until the window has passed. Every delay gets
+ * a random jitter so resources created together do not poll in lock step.
+ */
+public class PollPolicy {
+
+	private final long initialMillis;
+	private final double multiplier;
+	private final double jitter;
+	
+	/**
+	 * @param initialMillis First delay and the delay used inside the expected ready window
+	 * @param multiplier Growth of the delay per poll outside the window
+	 * @param jitter Fraction of each delay that is randomised, 0.2 means +/- 20%
+	 */
+	public PollPolicy(long initialMillis, double multiplier, double jitter) {
+		this.initialMillis = initialMillis;
+		this.multiplier = multiplier;
+		this.jitter = jitter;
+	}
+	
+	public static PollPolicy defaults() {
+		return new PollPolicy(1000, 2.0, 0.2);
+	}
+	
+	/**
+	 * @param attempt Number of polls already made for the resource
+	 * @param elapsedMillis Time since the resource was registered
+	 * @param capMillis Longest delay allowed between polls
+	 * @param profile Learned latency for the resource kind
+	 * @return Delay until the next poll in milliseconds
+	 */
+	public long nextDelay(int attempt, long elapsedMillis, long capMillis, LatencyProfile profile) {
+		long backoff = (long) Math.min(capMillis, initialMillis * Math.pow(multiplier, Math.min(attempt, 30)));
+		long delay = backoff;
+		
+		if(profile.isTrained()) {
+			long expected = profile.getExpectedMillis();
+			long deviation = profile.getDeviationMillis();
+			long windowStart = expected - deviation;
+			long windowEnd = expected + 2 * deviation;
+			
+			if(elapsedMillis < windowStart) {
+				// Skip ahead to the start of the window instead of polling a resource that is never ready this early
+				delay = Math.max(initialMillis, Math.min(capMillis, windowStart - elapsedMillis));
+			} else if(elapsedMillis <= windowEnd) {
+				delay = initialMillis;
+			}
+		}
+		
+		delay = Math.max(Math.min(delay, capMillis), 1);
+		double spread = delay * jitter;
+		// Jitter spreads the polls out but never past the cap
+		return Math.max(1, Math.min(Math.max(capMillis, 1), (long)(delay - spread + ThreadLocalRandom.current().nextDouble() * 2 * spread)));
+	}
+	
+}
@@ -0,0 +1,250 @@
+package com.rahman.shard.OpenStackShard.readiness;
+
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.rahman.arctic.shard.exceptions.ResourceErrorException;
+import com.rahman.arctic.shard.exceptions.ResourceTimeoutException;
+import com.rahman.shard.OpenStackShard.client.OpenStackClients;
+import com.rahman.shard.OpenStackShard.metrics.Metrics;
+
+/**
+ * Polls every pending OpenStack resource from a small shared scheduled pool instead of
+ * parking one sleeping thread per resource. Callers register a PendingResource and get back
+ * a CompletableFuture that completes once the resource is ready, or fails with a
+ * ResourceErrorException / ResourceTimeoutException.
+ * <p>
+ * Pending resources are grouped per kind and per range, and each group is refreshed with
+ * one list call per tick, so a tick costs the same number of API calls for 1 or 200 servers.
+ * Lists are filtered server side to the range's resources and paged to their end, and a
+ * resource missing from one is only given up on once a GET of it answers 404.
+ * When each member is next due is decided by the PollPolicy using the LatencyProfile the
+ * engine learns per kind from the resources it has seen become ready.
+ */
+public class ReadinessEngine {
+
+	private static final int DEFAULT_POOL_SIZE = 2;
+	/** Ticks of one group are never closer together than this */
+	private static final long MIN_TICK_MILLIS = 250;
+	private static final ReadinessEngine SHARED = new ReadinessEngine(DEFAULT_POOL_SIZE);
+	
+	private final ScheduledExecutorService scheduler;
+	private final ConcurrentMap<String, PollGroup<?>> groups = new ConcurrentHashMap<>();
+	private final ConcurrentMap<String, LatencyProfile> profiles = new ConcurrentHashMap<>();
+	
+	private volatile PollPolicy policy = PollPolicy.defaults();
+	
+	public ReadinessEngine(int poolSize) {
+		AtomicInteger count = new AtomicInteger();
+		this.scheduler = Executors.newScheduledThreadPool(poolSize, r -> {
+			Thread t = new Thread(r, "openstack-readiness-" + count.incrementAndGet());
+			t.setDaemon(true);
+			return t;
+		});
+	}
+	
+	/**
+	 * @return The engine shared by every waiter in this shard
+	 */
+	public static ReadinessEngine shared() {
+		return SHARED;
+	}
+	
+	/**
+	 * @param policy Policy used for every poll scheduled from now on
+	 */
+	public void setPolicy(PollPolicy policy) {
+		this.policy = policy;
+	}
+	
+	/**
+	 * @param kind Resource kind
+	 * @return What the engine has learned about how long the kind takes to become ready
+	 */
+	public LatencyProfile getProfile(ResourceKind<?> kind) {
+		return profiles.computeIfAbsent(kind.getName(), k -> new LatencyProfile());
+	}
+	
+	/**
+	 * Starts tracking a resource. The first check happens immediately against the resource
+	 * the caller already holds, so nothing is polled for resources that are ready on creation.
+	 * @param pending Resource to track
+	 * @return Future completed with the ready resource
+	 */
+	public <R> CompletableFuture<R> register(PendingResource<R> pending) {
+		pending.onStart(pending.getResource());
+		scheduler.execute(() -> {
+			if(evaluate(pending)) {
+				pending.onWaiting(pending.getResource(), 0);
+				planNextPoll(pending);
+				join(pending);
+			}
+		});
+		return pending.getFuture();
+	}
+	
+	@SuppressWarnings("unchecked")
+	private <R> void join(PendingResource<R> pending) {
+		String key = pending.getKind().getName() + "/" + pending.getRangeId();
+		while(true) {
+			PollGroup<R> group = (PollGroup<R>) groups.computeIfAbsent(key, k -> new PollGroup<>(k, pending.getKind()));
+			synchronized(group) {
+				// The group may have just been retired by its last tick, retry with a fresh one
+				if(groups.get(key) != group) continue;
+				group.add(pending);
+			}
+			schedule(group, pending.getNextPollAt());
+			return;
+		}
+	}
+	
+	private <R> void schedule(PollGroup<R> group, long at) {
+		synchronized(group) {
+			if(!group.needsTick(at)) return;
+			long delay = Math.max(MIN_TICK_MILLIS, at - System.currentTimeMillis());
+			group.setTick(scheduler.schedule(() -> tick(group), delay, TimeUnit.MILLISECONDS), System.currentTimeMillis() + delay);
+		}
+	}
+	
+	private <R> void planNextPoll(PendingResource<R> pending) {
+		long delay = policy.nextDelay(pending.getAttempts(), pending.getElapsedMillis(), pending.getPollMillis(), getProfile(pending.getKind()));
+		pending.scheduleNextPoll(delay);
+	}
+	
+	private <R> void tick(PollGroup<R> group) {
+		group.clearTick();
+		// Another tick is still polling this group, it reschedules once it is done
+		if(!group.getPollingLock().tryLock()) return;
+		try {
+			poll(group);
+		} finally {
+			group.getPollingLock().unlock();
+		}
+		
+		Map<String, PendingResource<R>> members = group.getMembers();
+		synchronized(group) {
+			if(members.isEmpty()) {
+				groups.remove(group.getKey(), group);
+				return;
+			}
+		}
+		schedule(group, group.getNextPollAt());
+	}
+	
+	private <R> void poll(PollGroup<R> group) {
+		Map<String, PendingResource<R>> members = group.getMembers();
+		
+		// Drop anything the caller cancelled
+		members.values().removeIf(p -> p.getFuture().isDone());
+		if(members.isEmpty()) return;
+		
+		ResourceKind<R> kind = group.getKind();
+		Set<String> ids = new HashSet<>(members.keySet());
+		OpenStackClients clients = members.values().iterator().next().getClients();
+		
+		Map<String, R> found = null;
+		boolean complete = true;
+		Metrics.shared().poll(kind.getName());
+		try {
+			if(ids.size() == 1) {
+				// A single GET is cheaper than listing the whole project
+				String id = ids.iterator().next();
+				found = new HashMap<>();
+				R latest = clients.call(kind.getService(), kind.getName() + ".get", c -> kind.refresh(c, id));
+				if(latest != null) found.put(id, latest);
+			} else {
+				Date since = kind.isIncremental() ? group.getCursor() : null;
+				String rangeId = members.values().iterator().next().getRangeId();
+				found = clients.call(kind.getService(), kind.getName() + ".list", c -> kind.list(c, rangeId, ids, since));
+				complete = since == null;
+				for(R r : found.values()) {
+					group.advanceCursor(kind.getUpdated(r));
+				}
+				if(complete) {
+					// Missing from the list is not proof of being gone, e.g. an untagged volume,
+					// only a GET answering 404 is
+					for(String id : ids) {
+						if(found.containsKey(id)) continue;
+						R latest = clients.call(kind.getService(), kind.getName() + ".get", c -> kind.refresh(c, id));
+						if(latest != null) found.put(id, latest);
+					}
+				}
+			}
+		} catch(RuntimeException e) {
+			// Transient API failures are retried on the next tick, the timeouts still apply
+			System.out.println(String.format("Failed To Poll %s Group %s: %s", kind.getName(), group.getKey(), e.getMessage()));
+		}
+		
+		// The list refreshed every member, so all of them are checked for readiness,
+		// but only those that were due count as a poll and move their schedule on
+		long now = System.currentTimeMillis();
+		for(PendingResource<R> pending : members.values()) {
+			if(found != null) {
+				R latest = found.get(pending.getId());
+				if(latest != null) {
+					pending.setResource(latest);
+				} else if(complete && pending.isReadyWhenGone()) {
+					pending.onReady(pending.getResource(), (int)(pending.getElapsedMillis() / 1000));
+					pending.getFuture().complete(pending.getResource());
+				} else if(complete) {
+					String msg = String.format("%s [%s] No Longer Exists", kind.getName(), pending.getId());
+					pending.onError(pending.getResource(), msg);
+					pending.getFuture().completeExceptionally(new ResourceErrorException(msg));
+				}
+			}
+			if(pending.getFuture().isDone() || !evaluate(pending)) {
+				members.remove(pending.getId());
+				Metrics.shared().resourceDone(kind.getName(), pending.getAttempts() + 1);
+			} else if(pending.isDue(now)) {
+				pending.onWaiting(pending.getResource(), (int)(pending.getElapsedMillis() / 1000));
+				planNextPoll(pending);
+			}
+		}
+	}
+	
+	/**
+	 * @return True if the resource is still pending and needs another poll
+	 */
+	private <R> boolean evaluate(PendingResource<R> pending) {
+		R resource = pending.getResource();
+		try {
+			if(pending.isReady(resource)) {
+				long elapsed = pending.getElapsedMillis();
+				// Resources that were ready before the first poll say nothing about build times
+				if(pending.getAttempts() > 0) {
+					getProfile(pending.getKind()).observe(elapsed);
+				}
+				pending.onReady(resource, (int)(elapsed / 1000));
+				pending.getFuture().complete(resource);
+				return false;
+			}
+			if(pending.isTimedOut()) {
+				String msg = pending.getTimeoutMessage(resource);
+				pending.onTimeout(resource, msg);
+				pending.getFuture().completeExceptionally(new ResourceTimeoutException(msg));
+				return false;
+			}
+			String error = pending.getError(resource);
+			if(error != null) {
+				pending.onError(resource, error);
+				pending.getFuture().completeExceptionally(new ResourceErrorException(error));
+				return false;
+			}
+			return true;
+		} catch(RuntimeException e) {
+			pending.getFuture().completeExceptionally(e);
+			return false;
+		}
+	}
+	
+}
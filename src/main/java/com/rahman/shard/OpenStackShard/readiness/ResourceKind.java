@@ -0,0 +1,64 @@
+package com.rahman.shard.OpenStackShard.readiness;
+
+import java.util.Date;
+import java.util.Map;
+import java.util.Set;
+
+import org.openstack4j.api.OSClient.OSClientV3;
+
+import com.rahman.shard.OpenStackShard.client.OpenStackService;
+
+/**
+ * Describes how the ReadinessEngine refreshes one type of OpenStack resource
+ * @param <R> OpenStack model being polled
+ */
+public interface ResourceKind<R> {
+
+	/**
+	 * @return Human readable name of the resource type (Instance, Volume, Network)
+	 */
+	String getName();
+	
+	/**
+	 * @return Service polled for this kind, used for rate limiting
+	 */
+	OpenStackService getService();
+	
+	/**
+	 * @param resource Resource to identify
+	 * @return OpenStack ID of the resource
+	 */
+	String getId(R resource);
+	
+	/**
+	 * Fetches the latest state of a single resource
+	 * @param client Client bound to the polling thread
+	 * @param id OpenStack ID of the resource
+	 * @return The refreshed resource, or null if it no longer exists
+	 */
+	R refresh(OSClientV3 client, String id);
+	
+	/**
+	 * Refreshes every pending resource of this kind in a range with a list filtered server
+	 * side, paged through to its end
+	 * @param client Client bound to the polling thread
+	 * @param rangeId Range the resources belong to
+	 * @param ids IDs of the resources still pending
+	 * @param since Only resources changed after this time are needed, ignored unless {@link #isIncremental()}
+	 * @return The pending resources returned by the list, keyed by ID
+	 */
+	Map<String, R> list(OSClientV3 client, String rangeId, Set<String> ids, Date since);
+	
+	/**
+	 * @return True if {@link #list} honours {@code since}, meaning an ID missing from the
+	 * result is unchanged rather than possibly deleted
+	 */
+	boolean isIncremental();
+	
+	/**
+	 * @param resource Resource returned by {@link #list}
+	 * @return Server side time the resource last changed, or null if the API does not report it
+	 */
+	Date getUpdated(R resource);
+	
+}
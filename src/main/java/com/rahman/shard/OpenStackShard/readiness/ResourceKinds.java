@@ -0,0 +1,144 @@
+package com.rahman.shard.OpenStackShard.readiness;
+
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.ChronoUnit;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+
+import org.openstack4j.api.OSClient.OSClientV3;
+import org.openstack4j.model.compute.Server;
+import org.openstack4j.model.network.Network;
+import org.openstack4j.model.storage.block.Volume;
+
+import com.rahman.shard.OpenStackShard.bulk.CinderBulkService;
+import com.rahman.shard.OpenStackShard.bulk.NeutronBulkService;
+import com.rahman.shard.OpenStackShard.bulk.NovaBulkService;
+import com.rahman.shard.OpenStackShard.client.OpenStackService;
+import com.rahman.shard.OpenStackShard.teardown.RangeTeardown;
+
+/**
+ * The resource types this shard waits on
+ */
+public final class ResourceKinds {
+
+	private static final NovaBulkService NOVA = new NovaBulkService();
+	private static final CinderBulkService CINDER = new CinderBulkService();
+	private static final NeutronBulkService NEUTRON = new NeutronBulkService();
+
+	public static final ResourceKind<Server> SERVER = new ResourceKind<Server>() {
+		public String getName() {
+			return "Instance";
+		}
+		
+		public OpenStackService getService() {
+			return OpenStackService.COMPUTE;
+		}
+		
+		public String getId(Server resource) {
+			return resource.getId();
+		}
+		
+		public Server refresh(OSClientV3 client, String id) {
+			return client.compute().servers().get(id);
+		}
+		
+		public Map<String, Server> list(OSClientV3 client, String rangeId, Set<String> ids, Date since) {
+			// Nova only returns servers touched after changes-since, which keeps the
+			// response small no matter how many servers the project already holds
+			Map<String, String> filter = new HashMap<>();
+			if(since != null) {
+				filter.put("changes-since", DateTimeFormatter.ISO_INSTANT.format(since.toInstant().truncatedTo(ChronoUnit.SECONDS)));
+			}
+			return index(NOVA.listServers(filter), ids, Server::getId);
+		}
+		
+		public boolean isIncremental() {
+			return true;
+		}
+		
+		public Date getUpdated(Server resource) {
+			return resource.getUpdated();
+		}
+	};
+	
+	public static final ResourceKind<Volume> VOLUME = new ResourceKind<Volume>() {
+		public String getName() {
+			return "Volume";
+		}
+		
+		public OpenStackService getService() {
+			return OpenStackService.BLOCK_STORAGE;
+		}
+		
+		public String getId(Volume resource) {
+			return resource.getId();
+		}
+		
+		public Volume refresh(OSClientV3 client, String id) {
+			return client.blockStorage().volumes().get(id);
+		}
+		
+		public Map<String, Volume> list(OSClientV3 client, String rangeId, Set<String> ids, Date since) {
+			// Every volume the shard builds is tagged with its range
+			Map<String, String> filter = new HashMap<>();
+			filter.put("metadata", String.format("{\"%s\": \"%s\"}", RangeTeardown.RANGE_TAG, rangeId.replace("\"", "\\\"")));
+			return index(CINDER.listVolumes(filter), ids, Volume::getId);
+		}
+		
+		public boolean isIncremental() {
+			return false;
+		}
+		
+		public Date getUpdated(Volume resource) {
+			return null;
+		}
+	};
+	
+	public static final ResourceKind<Network> NETWORK = new ResourceKind<Network>() {
+		public String getName() {
+			return "Network";
+		}
+		
+		public OpenStackService getService() {
+			return OpenStackService.NETWORK;
+		}
+		
+		public String getId(Network resource) {
+			return resource.getId();
+		}
+		
+		public Network refresh(OSClientV3 client, String id) {
+			return client.networking().network().get(id);
+		}
+		
+		public Map<String, Network> list(OSClientV3 client, String rangeId, Set<String> ids, Date since) {
+			return index(NEUTRON.listNetworks("id", ids), ids, Network::getId);
+		}
+		
+		public boolean isIncremental() {
+			return false;
+		}
+		
+		public Date getUpdated(Network resource) {
+			return null;
+		}
+	};
+	
+	private static <R> Map<String, R> index(List<? extends R> resources, Set<String> ids, Function<R, String> id) {
+		Map<String, R> found = new HashMap<>();
+		for(R r : resources) {
+			String key = id.apply(r);
+			if(ids.contains(key)) {
+				found.put(key, r);
+			}
+		}
+		return found;
+	}
+	
+	private ResourceKinds() {}
+	
+}
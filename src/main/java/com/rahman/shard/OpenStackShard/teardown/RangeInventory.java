@@ -0,0 +1,88 @@
+package com.rahman.shard.OpenStackShard.teardown;
+
+import java.util.EnumMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Every OpenStack resource the build tasks created, by range, so the range can be torn down
+ * without looking the resources up by name
+ */
+public class RangeInventory {
+
+	/**
+	 * Resource types in the order they have to be deleted in
+	 */
+	public enum Type {
+		SERVER,
+		ROUTER_INTERFACE,
+		ROUTER,
+		SUBNET,
+		NETWORK,
+		SECURITY_GROUP,
+		VOLUME
+	}
+	
+	private final ConcurrentMap<String, Map<Type, Set<String>>> ranges = new ConcurrentHashMap<>();
+	
+	/**
+	 * @param rangeId Range the resource was built for
+	 * @param type Type of the resource
+	 * @param id OpenStack ID, or {@link #interfaceId(String, String)} for router interfaces
+	 */
+	public void record(String rangeId, Type type, String id) {
+		if(id == null) return;
+		range(rangeId).get(type).add(id);
+	}
+	
+	public void forget(String rangeId, Type type, String id) {
+		Map<Type, Set<String>> range = ranges.get(rangeId);
+		if(range != null) range.get(type).remove(id);
+	}
+	
+	/**
+	 * @return Copy of the IDs recorded for the type
+	 */
+	public Set<String> get(String rangeId, Type type) {
+		Map<Type, Set<String>> range = ranges.get(rangeId);
+		return range == null ? new HashSet<>() : new HashSet<>(range.get(type));
+	}
+	
+	/**
+	 * @return Number of resources still recorded for the range
+	 */
+	public int count(String rangeId) {
+		Map<Type, Set<String>> range = ranges.get(rangeId);
+		if(range == null) return 0;
+		int count = 0;
+		for(Set<String> ids : range.values()) {
+			count += ids.size();
+		}
+		return count;
+	}
+	
+	/**
+	 * Drops the range once nothing is left of it
+	 */
+	public void clear(String rangeId) {
+		ranges.remove(rangeId);
+	}
+	
+	public static String interfaceId(String routerId, String subnetId) {
+		return routerId + "/" + subnetId;
+	}
+	
+	private Map<Type, Set<String>> range(String rangeId) {
+		return ranges.computeIfAbsent(rangeId, k -> {
+			Map<Type, Set<String>> types = new EnumMap<>(Type.class);
+			for(Type type : Type.values()) {
+				types.put(type, ConcurrentHashMap.newKeySet());
+			}
+			return types;
+		});
+	}
+	
+}
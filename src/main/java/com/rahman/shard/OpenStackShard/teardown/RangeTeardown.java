@@ -0,0 +1,229 @@
+package com.rahman.shard.OpenStackShard.teardown;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+import org.openstack4j.model.common.ActionResponse;
+import org.openstack4j.model.compute.Server;
+import org.openstack4j.model.storage.block.Volume;
+
+import com.rahman.arctic.shard.messaging.ConsoleMessage;
+import com.rahman.arctic.shard.messaging.IcebergViewer;
+import com.rahman.shard.OpenStackShard.OpenStackWaiter;
+import com.rahman.shard.OpenStackShard.bulk.CinderBulkService;
+import com.rahman.shard.OpenStackShard.bulk.NovaBulkService;
+import com.rahman.shard.OpenStackShard.client.OpenStackClients;
+import com.rahman.shard.OpenStackShard.client.OpenStackService;
+import com.rahman.shard.OpenStackShard.teardown.RangeInventory.Type;
+
+/**
+ * Deletes everything built for a range, in reverse dependency order but with every
+ * resource of a stage deleted in parallel and each stage started as soon as the stages it
+ * really depends on are done:
+ * <ul>
+ * <li>servers and router interfaces start straight away</li>
+ * <li>routers follow their interfaces</li>
+ * <li>subnets follow the servers and interfaces, networks follow their subnets</li>
+ * <li>security groups and volumes follow the servers</li>
+ * </ul>
+ * Servers and volumes are deleted asynchronously by OpenStack, so those stages wait for the
+ * resources to be gone through the ReadinessEngine. Neutron has no bulk delete, so Neutron
+ * resources are deleted one request each.
+ */
+public class RangeTeardown {
+
+	/** Metadata key holding the range ID on servers and volumes */
+	public static final String RANGE_TAG = "arctic-range";
+	
+	/** Attempts at a delete that is refused with a 409 while something still uses the resource */
+	private static final int IN_USE_ATTEMPTS = 10;
+	private static final long IN_USE_DELAY_MILLIS = 2000;
+	
+	private static final NovaBulkService NOVA = new NovaBulkService();
+	private static final CinderBulkService CINDER = new CinderBulkService();
+	
+	private final Function<String, OpenStackClients> ranges;
+	private final RangeInventory inventory;
+	private final ExecutorService workers;
+	
+	/**
+	 * @param ranges Clients of the target each range was built on
+	 * @param threads Most delete requests in flight at once
+	 */
+	public RangeTeardown(Function<String, OpenStackClients> ranges, RangeInventory inventory, int threads) {
+		this.ranges = ranges;
+		this.inventory = inventory;
+		AtomicInteger count = new AtomicInteger();
+		this.workers = Executors.newFixedThreadPool(threads, r -> {
+			Thread t = new Thread(r, "openstack-teardown-" + count.incrementAndGet());
+			t.setDaemon(true);
+			return t;
+		});
+	}
+	
+	/**
+	 * Deletes the range. Failures are reported and leave the resource in the inventory so a
+	 * later teardown can try again.
+	 * @param rangeId Range to delete
+	 * @return Future completed once every stage has finished
+	 */
+	public CompletableFuture<Void> teardown(String rangeId) {
+		long start = System.currentTimeMillis();
+		OpenStackClients clients = ranges.apply(rangeId);
+		IcebergViewer.sendConsoleBuildUpdate(rangeId, new ConsoleMessage("Tearing Down Range..."));
+		
+		CompletableFuture<Void> servers = CompletableFuture.supplyAsync(() -> sweepServers(rangeId), workers)
+				.thenCompose(v -> stage(rangeId, Type.SERVER, id -> deleteServer(rangeId, id)));
+		CompletableFuture<Void> interfaces = stage(rangeId, Type.ROUTER_INTERFACE, id -> {
+			String[] parts = id.split("/", 2);
+			clients.call(OpenStackService.NETWORK, "routers.detachInterface", c -> c.networking().router().detachInterface(parts[0], parts[1], null));
+			return CompletableFuture.completedFuture(null);
+		});
+		
+		CompletableFuture<Void> routers = interfaces.thenCompose(v -> stage(rangeId, Type.ROUTER,
+				id -> neutronDelete(() -> clients.call(OpenStackService.NETWORK, "routers.delete", c -> c.networking().router().delete(id)))));
+		CompletableFuture<Void> networks = CompletableFuture.allOf(servers, interfaces)
+				.thenCompose(v -> stage(rangeId, Type.SUBNET,
+						id -> neutronDelete(() -> clients.call(OpenStackService.NETWORK, "subnets.delete", c -> c.networking().subnet().delete(id)))))
+				.thenCompose(v -> stage(rangeId, Type.NETWORK,
+						id -> neutronDelete(() -> clients.call(OpenStackService.NETWORK, "networks.delete", c -> c.networking().network().delete(id)))));
+		CompletableFuture<Void> groups = servers.thenCompose(v -> stage(rangeId, Type.SECURITY_GROUP,
+				id -> neutronDelete(() -> clients.call(OpenStackService.NETWORK, "securityGroups.delete", c -> c.networking().securitygroup().delete(id)))));
+		CompletableFuture<Void> volumes = servers
+				.thenCompose(v -> CompletableFuture.supplyAsync(() -> sweepVolumes(rangeId), workers))
+				.thenCompose(v -> stage(rangeId, Type.VOLUME, id -> deleteVolume(rangeId, id)));
+		
+		return CompletableFuture.allOf(routers, networks, groups, volumes).thenRun(() -> {
+			int left = inventory.count(rangeId);
+			long seconds = (System.currentTimeMillis() - start) / 1000;
+			if(left == 0) {
+				inventory.clear(rangeId);
+				IcebergViewer.sendConsoleBuildUpdate(rangeId, new ConsoleMessage(String.format("Range Torn Down After (%d) Seconds", seconds)));
+			} else {
+				IcebergViewer.sendConsoleBuildUpdate(rangeId, new ConsoleMessage(String.format("Range Teardown Finished After (%d) Seconds With %d Resources Left", seconds, left)));
+			}
+		});
+	}
+	
+	/**
+	 * Deletes every recorded resource of the type in parallel, the returned future never fails
+	 */
+	private CompletableFuture<Void> stage(String rangeId, Type type, Deleter deleter) {
+		Set<String> ids = inventory.get(rangeId, type);
+		List<CompletableFuture<?>> deletes = new ArrayList<>();
+		for(String id : ids) {
+			deletes.add(CompletableFuture.supplyAsync(() -> deleter.delete(id), workers)
+					.thenCompose(f -> f)
+					.thenRun(() -> inventory.forget(rangeId, type, id))
+					.exceptionally(e -> {
+						Throwable cause = e.getCause() != null ? e.getCause() : e;
+						IcebergViewer.sendConsoleBuildUpdate(rangeId, new ConsoleMessage(String.format("Could Not Delete %s [%s]: %s", type, id, cause.getMessage())));
+						return null;
+					}));
+		}
+		return CompletableFuture.allOf(deletes.toArray(new CompletableFuture[0]));
+	}
+	
+	/**
+	 * @return Tag marking networks, subnets, routers and security groups with the range,
+	 * Neutron tags are plain strings rather than key and value
+	 */
+	public static String neutronTag(String rangeId) {
+		return RANGE_TAG + ":" + rangeId;
+	}
+	
+	private CompletableFuture<?> deleteServer(String rangeId, String id) {
+		OpenStackClients clients = ranges.apply(rangeId);
+		Server server = clients.call(OpenStackService.COMPUTE, "servers.get", c -> c.compute().servers().get(id));
+		if(server == null) return CompletableFuture.completedFuture(null);
+		check(clients.call(OpenStackService.COMPUTE, "servers.delete", c -> c.compute().servers().delete(id)));
+		return OpenStackWaiter.instanceDeleted(clients, rangeId, server, 600, 10);
+	}
+	
+	private CompletableFuture<?> deleteVolume(String rangeId, String id) {
+		OpenStackClients clients = ranges.apply(rangeId);
+		Volume volume = clients.call(OpenStackService.BLOCK_STORAGE, "volumes.get", c -> c.blockStorage().volumes().get(id));
+		if(volume == null) return CompletableFuture.completedFuture(null);
+		// Nova detaches the volume after the server is gone, which can trail the server a little
+		retryInUse(() -> clients.call(OpenStackService.BLOCK_STORAGE, "volumes.delete", c -> c.blockStorage().volumes().delete(id)));
+		return OpenStackWaiter.volumeDeleted(clients, rangeId, volume, 600, 10);
+	}
+	
+	private CompletableFuture<?> neutronDelete(Supplier<ActionResponse> delete) {
+		// Ports of deleted servers are cleaned up by Neutron shortly after the servers go
+		retryInUse(delete);
+		return CompletableFuture.completedFuture(null);
+	}
+	
+	private void retryInUse(Supplier<ActionResponse> delete) {
+		ActionResponse response = delete.get();
+		for(int attempt = 1; attempt < IN_USE_ATTEMPTS && isInUse(response); attempt++) {
+			try {
+				Thread.sleep(IN_USE_DELAY_MILLIS);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				break;
+			}
+			response = delete.get();
+		}
+		check(response);
+	}
+	
+	private static boolean isInUse(ActionResponse response) {
+		return !response.isSuccess() && response.getCode() == 409;
+	}
+	
+	/**
+	 * A resource that is already gone counts as deleted
+	 */
+	private static void check(ActionResponse response) {
+		if(response.isSuccess() || response.getCode() == 404) return;
+		throw new IllegalStateException(response.getCode() + " " + response.getFault());
+	}
+	
+	/**
+	 * Picks up servers tagged with the range that were never recorded, such as those built
+	 * before the plugin restarted. Nova cannot filter on metadata, so every page of servers
+	 * is checked.
+	 */
+	private Void sweepServers(String rangeId) {
+		OpenStackClients clients = ranges.apply(rangeId);
+		try {
+			for(Server server : clients.call(OpenStackService.COMPUTE, "servers.list", c -> NOVA.listServers(Map.of()))) {
+				Map<String, String> metadata = server.getMetadata();
+				if(metadata != null && rangeId.equals(metadata.get(RANGE_TAG))) {
+					inventory.record(rangeId, Type.SERVER, server.getId());
+				}
+			}
+		} catch(RuntimeException e) {
+			System.out.println("Could Not Look Up Tagged Servers Of Range " + rangeId + ": " + e.getMessage());
+		}
+		return null;
+	}
+	
+	private Void sweepVolumes(String rangeId) {
+		OpenStackClients clients = ranges.apply(rangeId);
+		try {
+			Map<String, String> filter = Map.of("metadata", String.format("{\"%s\": \"%s\"}", RANGE_TAG, rangeId.replace("\"", "\\\"")));
+			for(Volume volume : clients.call(OpenStackService.BLOCK_STORAGE, "volumes.list", c -> CINDER.listVolumes(filter))) {
+				inventory.record(rangeId, Type.VOLUME, volume.getId());
+			}
+		} catch(RuntimeException e) {
+			System.out.println("Could Not Look Up Tagged Volumes Of Range " + rangeId + ": " + e.getMessage());
+		}
+		return null;
+	}
+	
+	private interface Deleter {
+		CompletableFuture<?> delete(String id);
+	}
+	
+}
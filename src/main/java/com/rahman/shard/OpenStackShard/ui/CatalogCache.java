@@ -0,0 +1,103 @@
+package com.rahman.shard.OpenStackShard.ui;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+
+/**
+ * In-process snapshot of a provider catalog (images, flavors) with a time to live.
+ * <p>
+ * Once a snapshot exists it is always served immediately. When it is older than the TTL a
+ * single background refresh is started and the stale snapshot is returned until it finishes.
+ * Only the very first load, or the first load after {@link #invalidate()}, makes the caller wait.
+ * @param <T> Catalog entry type
+ */
+public class CatalogCache<T> {
+
+	private final String name;
+	private final long ttlMillis;
+	private final Supplier<List<T>> loader;
+	private final AtomicReference<CompletableFuture<List<T>>> refreshing = new AtomicReference<>();
+	private final AtomicInteger generation = new AtomicInteger();
+	
+	private volatile List<T> snapshot;
+	private volatile long loadedAt;
+	
+	/**
+	 * @param name Name used in log output
+	 * @param ttlMillis Age after which the snapshot is refreshed in the background
+	 * @param loader Performs the full catalog call against the cloud
+	 */
+	public CatalogCache(String name, long ttlMillis, Supplier<List<T>> loader) {
+		this.name = name;
+		this.ttlMillis = ttlMillis;
+		this.loader = loader;
+	}
+	
+	/**
+	 * @return The current snapshot, loading it first only if none exists
+	 */
+	public CompletableFuture<List<T>> get() {
+		List<T> current = snapshot;
+		if(current == null) {
+			return refresh();
+		}
+		if(System.currentTimeMillis() - loadedAt > ttlMillis) {
+			refresh();
+		}
+		return CompletableFuture.completedFuture(current);
+	}
+	
+	/**
+	 * Starts loading the catalog ahead of the first request
+	 */
+	public void warm() {
+		refresh();
+	}
+	
+	/**
+	 * Drops the snapshot so the next request reloads from the cloud instead of serving stale data
+	 */
+	public void invalidate() {
+		generation.incrementAndGet();
+		snapshot = null;
+		refreshing.set(null);
+	}
+	
+	/**
+	 * Loads the catalog, joining a refresh that is already in flight
+	 * @return Future completed with the new snapshot
+	 */
+	public CompletableFuture<List<T>> refresh() {
+		CompletableFuture<List<T>> created = new CompletableFuture<>();
+		CompletableFuture<List<T>> inFlight = refreshing.compareAndExchange(null, created);
+		if(inFlight != null) {
+			return inFlight;
+		}
+		
+		int gen = generation.get();
+		long start = System.currentTimeMillis();
+		CompletableFuture.supplyAsync(loader).whenComplete((list, err) -> {
+			refreshing.compareAndSet(created, null);
+			if(err != null) {
+				System.out.println("Failed To Load " + name + " Catalog: " + err.getMessage());
+				created.completeExceptionally(err);
+				return;
+			}
+			
+			List<T> loaded = Collections.unmodifiableList(list);
+			// Results of a load started before an invalidation are handed back but not kept
+			if(gen == generation.get()) {
+				snapshot = loaded;
+				loadedAt = System.currentTimeMillis();
+			}
+			System.out.println(String.format("Loaded %d %s Entries In %dms", loaded.size(), name, System.currentTimeMillis() - start));
+			created.complete(loaded);
+		});
+		return created;
+	}
+	
+}
@@ -0,0 +1,105 @@
+package com.rahman.shard.OpenStackShard.ui;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+import org.openstack4j.model.image.v2.Image;
+
+/**
+ * Filters pushed down to Glance when listing the image catalog.
+ * <p>
+ * Recognised properties:
+ * <ul>
+ * <li>image.status - Only images in this status (default active)</li>
+ * <li>image.visibility - public, private, shared or community (default all)</li>
+ * <li>image.namePrefix - Only images whose name starts with this prefix</li>
+ * <li>image.tags - Comma separated tags an image must carry</li>
+ * <li>image.properties - Comma separated key=value image properties to match</li>
+ * <li>image.pageSize - Images requested per page (default 100)</li>
+ * </ul>
+ */
+public class ImageQuery {
+
+	private final String status;
+	private final String visibility;
+	private final String namePrefix;
+	private final List<String> tags;
+	private final Map<String, String> properties;
+	private final int pageSize;
+	
+	public ImageQuery(Function<String, String> props) {
+		String s = props.apply("image.status");
+		this.status = s == null ? "active" : s;
+		this.visibility = props.apply("image.visibility");
+		this.namePrefix = props.apply("image.namePrefix");
+		this.tags = split(props.apply("image.tags"));
+		this.properties = new LinkedHashMap<>();
+		for(String pair : split(props.apply("image.properties"))) {
+			int eq = pair.indexOf('=');
+			if(eq > 0) {
+				properties.put(pair.substring(0, eq).trim(), pair.substring(eq + 1).trim());
+			}
+		}
+		this.pageSize = intValue(props.apply("image.pageSize"), 100);
+	}
+	
+	public int getPageSize() {
+		return pageSize;
+	}
+	
+	/**
+	 * @return Query parameters of GET /v2/images, the marker of each page is added while paging
+	 */
+	public Map<String, String> toParams() {
+		Map<String, String> params = new HashMap<>(properties);
+		if(status != null && !status.isEmpty()) params.put("status", status);
+		if(visibility != null) params.put("visibility", visibility);
+		// Glance accepts repeated tag parameters but a map only carries one, the rest are matched locally
+		if(!tags.isEmpty()) params.put("tag", tags.get(0));
+		params.put("limit", String.valueOf(pageSize));
+		return params;
+	}
+	
+	/**
+	 * Applies the filters Glance cannot evaluate server side
+	 * @param image Image returned by Glance
+	 * @return True if the image should be shown
+	 */
+	public boolean matches(Image image) {
+		if(namePrefix != null && (image.getName() == null || !image.getName().startsWith(namePrefix))) {
+			return false;
+		}
+		if(tags.size() > 1) {
+			List<String> imageTags = image.getTags() == null ? Collections.emptyList() : image.getTags();
+			return imageTags.containsAll(tags);
+		}
+		return true;
+	}
+	
+	private static int intValue(String value, int def) {
+		if(value == null) return def;
+		try {
+			int parsed = Integer.parseInt(value.trim());
+			if(parsed > 0) return parsed;
+		} catch(NumberFormatException e) {
+			// Reported below like any other unusable value
+		}
+		System.out.println("Invalid Number For `image.pageSize`, Using Default " + def);
+		return def;
+	}
+	
+	private static List<String> split(String value) {
+		List<String> parts = new ArrayList<>();
+		if(value == null) return parts;
+		for(String part : value.split(",")) {
+			if(!part.trim().isEmpty()) parts.add(part.trim());
+		}
+		return parts;
+	}
+	
+}
@@ -4,26 +4,44 @@ import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.CompletableFuture;
 
-import org.openstack4j.api.OSClient.OSClientV3;
 import org.openstack4j.model.compute.Flavor;
-import org.openstack4j.openstack.OSFactory;
 
 import com.rahman.arctic.shard.ShardProviderUICreation;
 import com.rahman.arctic.shard.objects.providers.ProviderFlavor;
 import com.rahman.arctic.shard.shards.UIField;
+import com.rahman.shard.OpenStackShard.client.OpenStackClients;
+import com.rahman.shard.OpenStackShard.client.OpenStackService;
 
 public class ObtainFlavors extends ShardProviderUICreation<ProviderFlavor> {
 
+	private final OpenStackClients clients;
+	private final CatalogCache<ProviderFlavor> cache;
+	
+	/**
+	 * @param clients Provider used to reach the cloud
+	 * @param ttlMillis How long a loaded catalog is served before it is refreshed in the background
+	 */
+	public ObtainFlavors(OpenStackClients clients, long ttlMillis) {
+		this.clients = clients;
+		this.cache = new CatalogCache<>("Flavor", ttlMillis, this::loadFlavors);
+	}
+
 	@UIField(key = "flavorId", label = "Openstack Flavor")
 	public CompletableFuture<List<ProviderFlavor>> returnResult() {
-		return CompletableFuture.supplyAsync(() -> {
-            List<ProviderFlavor> images = new ArrayList<>();
-            List<? extends Flavor> osImages = OSFactory.clientFromToken(getClient(OSClientV3.class).getToken()).compute().flavors().list();
-            osImages.forEach(e -> {
-                images.add(new ProviderFlavor(e.getId(), e.getName()));
-            });
-            return images;
-        });
+		return cache.get();
 	}
 	
+	public CatalogCache<ProviderFlavor> getCache() {
+		return cache;
+	}
+	
+	private List<ProviderFlavor> loadFlavors() {
+		List<ProviderFlavor> flavors = new ArrayList<>();
+		List<? extends Flavor> osFlavors = clients.call(OpenStackService.COMPUTE, "flavors.list", c -> c.compute().flavors().list());
+		osFlavors.forEach(e -> {
+			flavors.add(new ProviderFlavor(e.getId(), e.getName()));
+		});
+		return flavors;
+	}
+
 }
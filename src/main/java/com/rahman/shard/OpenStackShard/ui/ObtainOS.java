@@ -2,28 +2,52 @@ package com.rahman.shard.OpenStackShard.ui;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.CompletableFuture;
 
-import org.openstack4j.api.OSClient.OSClientV3;
 import org.openstack4j.model.image.v2.Image;
-import org.openstack4j.openstack.OSFactory;
 
 import com.rahman.arctic.shard.ShardProviderUICreation;
 import com.rahman.arctic.shard.objects.providers.ProviderImage;
 import com.rahman.arctic.shard.shards.UIField;
+import com.rahman.shard.OpenStackShard.bulk.GlanceBulkService;
+import com.rahman.shard.OpenStackShard.client.OpenStackClients;
+import com.rahman.shard.OpenStackShard.client.OpenStackService;
 
 public class ObtainOS extends ShardProviderUICreation<ProviderImage> {
 
+	private final OpenStackClients clients;
+	private final ImageQuery query;
+	private final GlanceBulkService glance = new GlanceBulkService();
+	private final CatalogCache<ProviderImage> cache;
+	
+	/**
+	 * @param clients Provider used to reach the cloud
+	 * @param ttlMillis How long a loaded catalog is served before it is refreshed in the background
+	 * @param query Filters pushed down to Glance
+	 */
+	public ObtainOS(OpenStackClients clients, long ttlMillis, ImageQuery query) {
+		this.clients = clients;
+		this.query = query;
+		this.cache = new CatalogCache<>("Image", ttlMillis, this::loadImages);
+	}
+
 	@UIField(key = "osId", label = "Openstack Image")
 	public CompletableFuture<List<ProviderImage>> returnResult() {
-		return CompletableFuture.supplyAsync(() -> {
-            List<ProviderImage> images = new ArrayList<>();
-            List<? extends Image> osImages = OSFactory.clientFromToken(getClient(OSClientV3.class).getToken()).imagesV2().list();
-            osImages.forEach(e -> {
-                images.add(new ProviderImage(e.getId(), e.getName()));
-            });
-            return images;
-        });
+		return cache.get();
+	}
+	
+	public CatalogCache<ProviderImage> getCache() {
+		return cache;
+	}
+	
+	private List<ProviderImage> loadImages() {
+		Map<String, String> params = query.toParams();
+		List<ProviderImage> images = new ArrayList<>();
+		for(Image e : clients.call(OpenStackService.IMAGE, "images.list", c -> glance.listImages(params, query::matches))) {
+			images.add(new ProviderImage(e.getId(), e.getName()));
+		}
+		return images;
 	}
 
 }
\ No newline at end of file
@@ -0,0 +1,41 @@
+package com.rahman.shard.OpenStackShard;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.concurrent.CompletableFuture;
+
+import org.junit.jupiter.api.Test;
+import org.openstack4j.model.network.Network;
+
+public class NetworkPipelineTest {
+
+	private final NetworkPipeline pipeline = new NetworkPipeline(rangeId -> null, null, 10, 10);
+	
+	@Test
+	public void forgetFailsWaitingFutures() {
+		CompletableFuture<Network> waiting = pipeline.whenReady("range", "Net");
+		pipeline.forget("range");
+		assertTrue(waiting.isCompletedExceptionally());
+	}
+	
+	@Test
+	public void waitingAfterForgetFailsStraightAway() {
+		pipeline.forget("range");
+		assertTrue(pipeline.whenReady("range", "Net").isCompletedExceptionally());
+	}
+	
+	@Test
+	public void otherRangesAreNotForgotten() {
+		pipeline.forget("range");
+		assertFalse(pipeline.whenReady("range-2", "Net").isDone());
+	}
+	
+	@Test
+	public void rebuildStartsWithFreshFutures() {
+		pipeline.forget("range");
+		pipeline.started("range");
+		assertFalse(pipeline.whenReady("range", "Net").isDone());
+	}
+	
+}
@@ -0,0 +1,168 @@
+package com.rahman.shard.OpenStackShard;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.openstack4j.api.OSClient.OSClientV3;
+
+import com.rahman.arctic.shard.objects.ArcticNetworkSO;
+import com.rahman.arctic.shard.objects.ArcticRouterSO;
+import com.rahman.arctic.shard.objects.ArcticSecurityGroupSO;
+import com.rahman.arctic.shard.objects.ArcticTask;
+import com.rahman.arctic.shard.objects.ArcticVolumeSO;
+import com.rahman.shard.OpenStackShard.bulk.CinderBulkService;
+import com.rahman.shard.OpenStackShard.bulk.NeutronBulkService;
+import com.rahman.shard.OpenStackShard.client.OpenStackClients;
+import com.rahman.shard.OpenStackShard.client.OpenStackService;
+import com.rahman.shard.OpenStackShard.sim.OpenStackSimulator;
+import com.rahman.shard.OpenStackShard.sim.SimSettings;
+import com.rahman.shard.OpenStackShard.teardown.RangeTeardown;
+
+/**
+ * Builds and tears down a small range through OpenStackShard's own tasks against an
+ * OpenStackSimulator. Hosts and security group rules find the tasks they depend on through
+ * the task maps the ARCTIC runtime fills, so they are left to the range load benchmark.
+ */
+public class OpenStackShardTest {
+
+	private static final String RANGE = "shard-test";
+	
+	private final NeutronBulkService neutron = new NeutronBulkService();
+	private final CinderBulkService cinder = new CinderBulkService();
+	private OpenStackSimulator simulator;
+	private OpenStackClients clients;
+	private Path journal;
+	private SimShard shard;
+	
+	/**
+	 * OpenStackShard reading its properties from a map instead of the ARCTIC configuration
+	 */
+	private static class SimShard extends OpenStackShard {
+		private final Map<String, String> properties;
+		
+		private SimShard(Map<String, String> properties) {
+			this.properties = properties;
+		}
+		
+		@Override
+		protected String property(String key) {
+			return properties.get(key);
+		}
+	}
+	
+	@BeforeEach
+	public void setUp() throws Exception {
+		Map<String, String> settings = Map.of("sim.timeScale", "0.01");
+		simulator = new OpenStackSimulator(new SimSettings(settings::get));
+		simulator.start(0);
+		clients = new OpenStackClients();
+		clients.connect(simulator.getEndpoint(), "test", "test", "Default", simulator.getProjectId(), null, null);
+		journal = Files.createTempFile("openstack-shard", ".journal");
+		
+		Map<String, String> properties = new HashMap<>();
+		properties.put("endpoint", simulator.getEndpoint());
+		properties.put("username", "test");
+		properties.put("password", "test");
+		properties.put("projectId", simulator.getProjectId());
+		properties.put("journal.path", journal.toString());
+		properties.put("poll.initialMillis", "50");
+		properties.put("poll.jitter", "0");
+		properties.put("router.attachTimeoutSeconds", "30");
+		properties.put("teardown.threads", "2");
+		shard = new SimShard(properties);
+		shard.createClient();
+	}
+	
+	@AfterEach
+	public void tearDown() throws Exception {
+		simulator.stop();
+		Files.deleteIfExists(journal);
+	}
+	
+	@Test
+	public void buildsAndTearsDownARange() throws Exception {
+		// Every task is built before any runs, as ARCTIC does
+		List<ArcticTask<OSClientV3, ?>> tasks = List.of(
+				shard.buildNetwork(network("Net")),
+				shard.buildRouter(router("Router", "Net")),
+				shard.buildSecurityGroup(securityGroup("Group")),
+				shard.buildVolume(volume("Data", 1)));
+		for(ArcticTask<OSClientV3, ?> task : tasks) {
+			run(task);
+		}
+		
+		String tag = RangeTeardown.neutronTag(RANGE);
+		assertEquals(1, call(OpenStackService.NETWORK, c -> neutron.listNetworks("name", List.of("Net"), tag)).size());
+		assertEquals(1, call(OpenStackService.NETWORK, c -> neutron.listSubnets("name", List.of("Net-Subnet"), tag)).size());
+		assertEquals(1, call(OpenStackService.NETWORK, c -> neutron.listRouters("name", List.of("Router"), tag)).size());
+		assertEquals(1, call(OpenStackService.NETWORK, c -> neutron.listSecurityGroups("name", List.of("Group"), tag)).size());
+		assertEquals(1, call(OpenStackService.BLOCK_STORAGE, c -> cinder.listVolumes(Map.of("name", "Data"))).size());
+		
+		shard.teardownRange(RANGE).get(60, TimeUnit.SECONDS);
+		
+		assertTrue(call(OpenStackService.NETWORK, c -> neutron.listNetworks("name", List.of("Net"), null)).isEmpty());
+		assertTrue(call(OpenStackService.NETWORK, c -> neutron.listSubnets("name", List.of("Net-Subnet"), null)).isEmpty());
+		assertTrue(call(OpenStackService.NETWORK, c -> neutron.listRouters("name", List.of("Router"), null)).isEmpty());
+		assertTrue(call(OpenStackService.NETWORK, c -> neutron.listSecurityGroups("name", List.of("Group"), null)).isEmpty());
+		assertTrue(call(OpenStackService.BLOCK_STORAGE, c -> cinder.listVolumes(Map.of("name", "Data"))).isEmpty());
+	}
+	
+	/**
+	 * Runs a task the way ARCTIC does once its dependencies are done
+	 */
+	private static <R> void run(ArcticTask<OSClientV3, R> task) {
+		task.waitMethod(task.action());
+	}
+	
+	private <R> R call(OpenStackService service, Function<OSClientV3, R> fn) {
+		return clients.call(service, "test.list", fn);
+	}
+	
+	private static ArcticNetworkSO network(String name) {
+		return new ArcticNetworkSO() {
+			@Override public String getName() { return name; }
+			@Override public String getRangeId() { return RANGE; }
+			@Override public String getIpCidr() { return "10.0.0.0/24"; }
+			@Override public String getIpGateway() { return "10.0.0.1"; }
+			@Override public String getIpRangeStart() { return "10.0.0.10"; }
+			@Override public String getIpRangeEnd() { return "10.0.0.200"; }
+		};
+	}
+	
+	private static ArcticRouterSO router(String name, String... networks) {
+		return new ArcticRouterSO() {
+			@Override public String getName() { return name; }
+			@Override public String getRangeId() { return RANGE; }
+			@Override public List<String> getConnectedNetworkNames() { return List.of(networks); }
+		};
+	}
+	
+	private static ArcticSecurityGroupSO securityGroup(String name) {
+		return new ArcticSecurityGroupSO() {
+			@Override public String getName() { return name; }
+			@Override public String getRangeId() { return RANGE; }
+			@Override public String getDescription() { return name; }
+		};
+	}
+	
+	private static ArcticVolumeSO volume(String name, int size) {
+		return new ArcticVolumeSO() {
+			@Override public String getName() { return name; }
+			@Override public String getRangeId() { return RANGE; }
+			@Override public String getDescription() { return name; }
+			@Override public int getSize() { return size; }
+		};
+	}
+	
+}
@@ -0,0 +1,115 @@
+package com.rahman.shard.OpenStackShard;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.jupiter.api.Test;
+
+import com.rahman.shard.OpenStackShard.TaskPriorities.TaskType;
+
+public class TaskPrioritiesTest {
+
+	private final TaskPriorities priorities = new TaskPriorities();
+	
+	/**
+	 * Builds a range of a network, an image volume and a blank volume shared by two hosts, a
+	 * router and a security group with two rules
+	 */
+	private void buildRange() {
+		priorities.built(TaskType.NETWORK, List.of());
+		priorities.built(TaskType.IMAGE_VOLUME, List.of());
+		priorities.built(TaskType.BLANK_VOLUME, List.of());
+		priorities.built(TaskType.ROUTER, List.of());
+		priorities.built(TaskType.SECURITY_GROUP, List.of());
+		priorities.built(TaskType.HOST, List.of(TaskType.NETWORK, TaskType.IMAGE_VOLUME));
+		priorities.built(TaskType.HOST, List.of(TaskType.NETWORK, TaskType.BLANK_VOLUME));
+		priorities.built(TaskType.SECURITY_GROUP_RULE, List.of(TaskType.SECURITY_GROUP));
+		priorities.built(TaskType.SECURITY_GROUP_RULE, List.of(TaskType.SECURITY_GROUP));
+	}
+	
+	@Test
+	public void ranksByDurationUntilTheGraphIsKnown() {
+		assertEquals(0, priorities.of(TaskType.IMAGE_VOLUME));
+		assertEquals(1, priorities.of(TaskType.HOST));
+		assertEquals(2, priorities.of(TaskType.BLANK_VOLUME));
+		assertEquals(3, priorities.of(TaskType.NETWORK));
+		assertEquals(4, priorities.of(TaskType.ROUTER));
+		assertEquals(5, priorities.of(TaskType.SECURITY_GROUP));
+		assertEquals(6, priorities.of(TaskType.SECURITY_GROUP_RULE));
+	}
+	
+	@Test
+	public void ranksLongestChainsFirstOnceBuilt() {
+		buildRange();
+		assertEquals(0, priorities.of(TaskType.IMAGE_VOLUME));
+		assertEquals(1, priorities.of(TaskType.BLANK_VOLUME));
+		assertEquals(2, priorities.of(TaskType.NETWORK));
+		assertEquals(3, priorities.of(TaskType.HOST));
+		assertEquals(4, priorities.of(TaskType.ROUTER));
+		assertEquals(5, priorities.of(TaskType.SECURITY_GROUP));
+		assertEquals(6, priorities.of(TaskType.SECURITY_GROUP_RULE));
+	}
+	
+	@Test
+	public void everyTypeGetsItsOwnPriority() {
+		buildRange();
+		Set<Integer> seen = new HashSet<>();
+		for(TaskType type : TaskType.values()) {
+			assertTrue(seen.add(priorities.of(type)));
+		}
+	}
+	
+	@Test
+	public void dependenciesAlwaysRankAheadOfTheirDependents() {
+		buildRange();
+		// Even when hosts turn out to be slower than anything else
+		for(int i = 0; i < 3; i++) {
+			priorities.observe(TaskType.HOST, 600000);
+		}
+		assertTrue(priorities.of(TaskType.NETWORK) < priorities.of(TaskType.HOST));
+		assertTrue(priorities.of(TaskType.IMAGE_VOLUME) < priorities.of(TaskType.HOST));
+		assertTrue(priorities.of(TaskType.BLANK_VOLUME) < priorities.of(TaskType.HOST));
+		assertTrue(priorities.of(TaskType.SECURITY_GROUP) < priorities.of(TaskType.SECURITY_GROUP_RULE));
+	}
+	
+	@Test
+	public void routersDoNotWaitOnNetworks() {
+		buildRange();
+		for(int i = 0; i < 3; i++) {
+			priorities.observe(TaskType.ROUTER, 200000);
+		}
+		// Only the router's own time counts, no network chain runs through it
+		assertEquals(0, priorities.of(TaskType.ROUTER));
+		assertEquals(3, priorities.of(TaskType.NETWORK));
+	}
+	
+	@Test
+	public void moreWaitingTasksBreakEqualChains() {
+		for(int i = 0; i < 3; i++) {
+			priorities.observe(TaskType.NETWORK, 5000);
+		}
+		// One network and ten blank volumes, each host waits on both
+		priorities.built(TaskType.NETWORK, List.of());
+		for(int i = 0; i < 10; i++) {
+			priorities.built(TaskType.BLANK_VOLUME, List.of());
+			priorities.built(TaskType.HOST, List.of(TaskType.NETWORK, TaskType.BLANK_VOLUME));
+		}
+		assertTrue(priorities.of(TaskType.NETWORK) < priorities.of(TaskType.BLANK_VOLUME));
+	}
+	
+	@Test
+	public void measuredDurationsReplaceTheDefaults() {
+		assertEquals(2000, priorities.getExpectedMillis(TaskType.ROUTER));
+		// Not trusted until a few builds have been seen
+		priorities.observe(TaskType.ROUTER, 100000);
+		priorities.observe(TaskType.ROUTER, 100000);
+		assertEquals(2000, priorities.getExpectedMillis(TaskType.ROUTER));
+		priorities.observe(TaskType.ROUTER, 100000);
+		assertEquals(100000, priorities.getExpectedMillis(TaskType.ROUTER));
+	}
+	
+}
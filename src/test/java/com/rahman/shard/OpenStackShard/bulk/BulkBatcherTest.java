@@ -0,0 +1,136 @@
+package com.rahman.shard.OpenStackShard.bulk;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+
+public class BulkBatcherTest {
+
+	/** Sizes of the bulk requests made */
+	private final List<Integer> bulks = new CopyOnWriteArrayList<>();
+	/** Items created one by one */
+	private final List<String> singles = new CopyOnWriteArrayList<>();
+	
+	private List<String> upper(String key, List<String> items) {
+		bulks.add(items.size());
+		List<String> created = new ArrayList<>();
+		for(String item : items) {
+			created.add(key + ":" + item.toUpperCase());
+		}
+		return created;
+	}
+	
+	private String single(String key, String item) {
+		singles.add(item);
+		if(item.startsWith("bad")) throw new IllegalArgumentException("Rejected " + item);
+		return key + ":" + item.toUpperCase();
+	}
+	
+	@Test
+	public void itemsWithinTheLingerGoOutTogether() {
+		BulkBatcher<String, String, String> batcher = new BulkBatcher<>("Test", 100, 100, this::upper, this::single);
+		CompletableFuture<String> a = batcher.submit("k", "a");
+		CompletableFuture<String> b = batcher.submit("k", "b");
+		CompletableFuture<String> c = batcher.submit("k", "c");
+		
+		assertEquals("k:A", BulkBatcher.await(a));
+		assertEquals("k:B", BulkBatcher.await(b));
+		assertEquals("k:C", BulkBatcher.await(c));
+		assertEquals(List.of(3), bulks);
+		assertTrue(singles.isEmpty());
+	}
+	
+	@Test
+	public void keysAreBatchedSeparately() {
+		BulkBatcher<String, String, String> batcher = new BulkBatcher<>("Test", 100, 50, this::upper, this::single);
+		CompletableFuture<String> a = batcher.submit("one", "a");
+		CompletableFuture<String> b = batcher.submit("two", "b");
+		CompletableFuture<String> c = batcher.submit("one", "c");
+		
+		assertEquals("one:A", BulkBatcher.await(a));
+		assertEquals("two:B", BulkBatcher.await(b));
+		assertEquals("one:C", BulkBatcher.await(c));
+		// The batch of one is sent on its own
+		assertEquals(List.of(2), bulks);
+		assertEquals(List.of("b"), singles);
+	}
+	
+	@Test
+	public void fullBatchDoesNotWaitForTheLinger() throws Exception {
+		BulkBatcher<String, String, String> batcher = new BulkBatcher<>("Test", 2, 60000, this::upper, this::single);
+		CompletableFuture<String> a = batcher.submit("k", "a");
+		CompletableFuture<String> b = batcher.submit("k", "b");
+		
+		assertEquals("k:A", a.get(5, TimeUnit.SECONDS));
+		assertEquals("k:B", b.get(5, TimeUnit.SECONDS));
+		assertEquals(List.of(2), bulks);
+	}
+	
+	@Test
+	public void itemsPastMaxBatchStartTheNextBatch() throws Exception {
+		BulkBatcher<String, String, String> batcher = new BulkBatcher<>("Test", 2, 100, this::upper, this::single);
+		List<CompletableFuture<String>> futures = new ArrayList<>();
+		for(String item : List.of("a", "b", "c", "d", "e")) {
+			futures.add(batcher.submit("k", item));
+		}
+		for(CompletableFuture<String> f : futures) {
+			f.get(5, TimeUnit.SECONDS);
+		}
+		List<Integer> sizes = new ArrayList<>(bulks);
+		Collections.sort(sizes);
+		assertEquals(List.of(2, 2), sizes);
+		assertEquals(List.of("e"), singles);
+	}
+	
+	@Test
+	public void failedBulkIsRetriedItemByItem() {
+		BulkBatcher<String, String, String> batcher = new BulkBatcher<>("Test", 100, 50, (key, items) -> {
+			bulks.add(items.size());
+			throw new IllegalStateException("One Of Them Is Bad");
+		}, this::single);
+		CompletableFuture<String> good = batcher.submit("k", "good");
+		CompletableFuture<String> bad = batcher.submit("k", "bad");
+		
+		assertEquals("k:GOOD", BulkBatcher.await(good));
+		IllegalArgumentException e = assertThrows(IllegalArgumentException.class, () -> BulkBatcher.await(bad));
+		assertEquals("Rejected bad", e.getMessage());
+		assertEquals(List.of(2), bulks);
+		assertEquals(List.of("good", "bad"), singles);
+	}
+	
+	@Test
+	public void itemsTheBulkCallLeftOutFailWithoutFallback() {
+		BulkBatcher<String, String, String> batcher = new BulkBatcher<>("Test", 100, 50, (key, items) -> {
+			bulks.add(items.size());
+			return Arrays.asList("k:A", null);
+		}, this::single);
+		CompletableFuture<String> a = batcher.submit("k", "a");
+		CompletableFuture<String> b = batcher.submit("k", "b");
+		
+		assertEquals("k:A", BulkBatcher.await(a));
+		assertThrows(IllegalStateException.class, () -> BulkBatcher.await(b));
+		assertTrue(singles.isEmpty());
+	}
+	
+	@Test
+	public void wrongResultCountFallsBack() {
+		BulkBatcher<String, String, String> batcher = new BulkBatcher<>("Test", 100, 50, (key, items) -> List.of("k:A"), this::single);
+		CompletableFuture<String> a = batcher.submit("k", "a");
+		CompletableFuture<String> b = batcher.submit("k", "b");
+		
+		assertEquals("k:A", BulkBatcher.await(a));
+		assertEquals("k:B", BulkBatcher.await(b));
+		assertEquals(List.of("a", "b"), singles);
+	}
+	
+}
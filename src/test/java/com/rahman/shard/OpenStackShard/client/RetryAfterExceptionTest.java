@@ -0,0 +1,34 @@
+package com.rahman.shard.OpenStackShard.client;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import org.junit.jupiter.api.Test;
+
+public class RetryAfterExceptionTest {
+
+	/** Sun, 06 Nov 1994 08:49:37 GMT */
+	private static final long NOW = 784111777000L;
+	
+	@Test
+	public void readsSeconds() {
+		assertEquals(3000, RetryAfterException.parse("3", NOW));
+		assertEquals(500, RetryAfterException.parse(" 0.5 ", NOW));
+	}
+	
+	@Test
+	public void readsDates() {
+		assertEquals(120000, RetryAfterException.parse("Sun, 06 Nov 1994 08:51:37 GMT", NOW));
+	}
+	
+	@Test
+	public void datesInThePastDoNotWait() {
+		assertEquals(0, RetryAfterException.parse("Sun, 06 Nov 1994 08:00:00 GMT", NOW));
+	}
+	
+	@Test
+	public void unreadableValuesAreIgnored() {
+		assertEquals(-1, RetryAfterException.parse("soon", NOW));
+		assertEquals(-1, RetryAfterException.parse(null, NOW));
+	}
+	
+}
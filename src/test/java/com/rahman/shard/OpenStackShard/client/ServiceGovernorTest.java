@@ -0,0 +1,146 @@
+package com.rahman.shard.OpenStackShard.client;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+import org.openstack4j.api.exceptions.ResponseException;
+import org.openstack4j.model.common.ActionResponse;
+
+public class ServiceGovernorTest {
+
+	/** Backs off 10ms, then 20ms, 40ms... and gives up after 3 retries */
+	private final ServiceGovernor governor = new ServiceGovernor(Map.of(
+			"limits.retryAfterSeconds", "0.01",
+			"limits.maxRetries", "3",
+			"limits.compute.rate", "0")::get);
+	
+	@Test
+	public void retriesThrottledCallsUntilTheyGoThrough() {
+		AtomicInteger calls = new AtomicInteger();
+		String result = governor.execute(OpenStackService.COMPUTE, "servers.list", () -> {
+			if(calls.incrementAndGet() < 3) throw new ResponseException("Too Many Requests", 429);
+			return "ok";
+		});
+		assertEquals("ok", result);
+		assertEquals(3, calls.get());
+	}
+	
+	@Test
+	public void backsOffExponentially() {
+		AtomicInteger calls = new AtomicInteger();
+		long start = System.currentTimeMillis();
+		governor.execute(OpenStackService.COMPUTE, "servers.list", () -> {
+			if(calls.incrementAndGet() < 4) throw new ResponseException("Too Many Requests", 429);
+			return "ok";
+		});
+		// 10 + 20 + 40ms
+		long took = System.currentTimeMillis() - start;
+		assertTrue(took >= 65, "Took " + took + "ms");
+	}
+	
+	@Test
+	public void waitsAsLongAsRetryAfterAsks() {
+		// Without the header the first back off would take 10s
+		ServiceGovernor slow = new ServiceGovernor(Map.of("limits.retryAfterSeconds", "10", "limits.compute.rate", "0")::get);
+		AtomicInteger calls = new AtomicInteger();
+		long start = System.currentTimeMillis();
+		slow.execute(OpenStackService.COMPUTE, "servers.list", () -> {
+			if(calls.incrementAndGet() < 2) throw new RetryAfterException("Too Many Requests", 429, "0.05");
+			return "ok";
+		});
+		long took = System.currentTimeMillis() - start;
+		assertTrue(took >= 45 && took < 5000, "Took " + took + "ms");
+	}
+	
+	@Test
+	public void givesUpAfterMaxRetries() {
+		AtomicInteger calls = new AtomicInteger();
+		ResponseException e = assertThrows(ResponseException.class, () -> governor.execute(OpenStackService.COMPUTE, "servers.list", () -> {
+			calls.incrementAndGet();
+			throw new ResponseException("Too Many Requests", 429);
+		}));
+		assertEquals(429, e.getStatus());
+		assertEquals(4, calls.get());
+	}
+	
+	@Test
+	public void doesNotRetryOtherErrors() {
+		AtomicInteger calls = new AtomicInteger();
+		assertThrows(ResponseException.class, () -> governor.execute(OpenStackService.COMPUTE, "servers.get", () -> {
+			calls.incrementAndGet();
+			throw new ResponseException("Bad Request", 400);
+		}));
+		assertEquals(1, calls.get());
+	}
+	
+	@Test
+	public void retriesReadsOn503() {
+		AtomicInteger calls = new AtomicInteger();
+		governor.execute(OpenStackService.COMPUTE, "servers.list", () -> {
+			if(calls.incrementAndGet() < 2) throw new ResponseException("Service Unavailable", 503);
+			return "ok";
+		});
+		assertEquals(2, calls.get());
+	}
+	
+	@Test
+	public void doesNotRetryCreatesOn503() {
+		AtomicInteger calls = new AtomicInteger();
+		assertThrows(ResponseException.class, () -> governor.execute(OpenStackService.COMPUTE, "servers.boot", () -> {
+			calls.incrementAndGet();
+			throw new ResponseException("Service Unavailable", 503);
+		}));
+		assertEquals(1, calls.get());
+	}
+	
+	@Test
+	public void retriesCreatesOn429() {
+		AtomicInteger calls = new AtomicInteger();
+		governor.execute(OpenStackService.COMPUTE, "servers.multiCreate", () -> {
+			if(calls.incrementAndGet() < 2) throw new ResponseException("Too Many Requests", 429);
+			return "ok";
+		});
+		assertEquals(2, calls.get());
+	}
+	
+	@Test
+	public void retriesThrottledDeleteResponses() {
+		AtomicInteger calls = new AtomicInteger();
+		ActionResponse response = governor.execute(OpenStackService.COMPUTE, "servers.delete",
+				() -> calls.incrementAndGet() < 3 ? ActionResponse.actionFailed("Service Unavailable", 503) : ActionResponse.actionSuccess());
+		assertTrue(response.isSuccess());
+		assertEquals(3, calls.get());
+	}
+	
+	@Test
+	public void returnsOtherFailedResponsesAsIs() {
+		AtomicInteger calls = new AtomicInteger();
+		ActionResponse failed = ActionResponse.actionFailed("Conflict", 409);
+		assertSame(failed, governor.execute(OpenStackService.COMPUTE, "servers.delete", () -> {
+			calls.incrementAndGet();
+			return failed;
+		}));
+		assertEquals(1, calls.get());
+	}
+	
+	@Test
+	public void classifiesCreatingCallsAsNotIdempotent() {
+		assertFalse(ServiceGovernor.isIdempotent("servers.boot"));
+		assertFalse(ServiceGovernor.isIdempotent("servers.multiCreate"));
+		assertFalse(ServiceGovernor.isIdempotent("volumes.create"));
+		assertFalse(ServiceGovernor.isIdempotent("networks.bulkCreate"));
+		assertFalse(ServiceGovernor.isIdempotent("routers.attachInterface"));
+		assertTrue(ServiceGovernor.isIdempotent("servers.list"));
+		assertTrue(ServiceGovernor.isIdempotent("volumes.delete"));
+		assertTrue(ServiceGovernor.isIdempotent("routers.detachInterface"));
+		assertTrue(ServiceGovernor.isIdempotent("server.adopt"));
+	}
+	
+}
@@ -0,0 +1,113 @@
+package com.rahman.shard.OpenStackShard.client;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+
+public class TargetPlacerTest {
+
+	private final List<String> placed = new ArrayList<>();
+	
+	/**
+	 * Target with a fixed quota and latency, or whose quota call fails when the quota is negative
+	 */
+	private static class FakeTarget extends Target {
+		private final int free;
+		private int refreshed;
+		
+		private FakeTarget(String name, int free, double latencyMillis) {
+			super(name, new OpenStackClients() {
+				@Override
+				public synchronized double getLatencyMillis() {
+					return latencyMillis;
+				}
+			});
+			this.free = free;
+		}
+		
+		@Override
+		public void refreshQuota(long maxAgeMillis) {
+			refreshed++;
+			if(free < 0) throw new IllegalStateException("Quota Unavailable");
+		}
+		
+		@Override
+		public int getFreeInstances() {
+			return free;
+		}
+	}
+	
+	private TargetPlacer placer(Target... targets) {
+		return new TargetPlacer(List.of(targets), 60000, 100, (rangeId, target) -> placed.add(rangeId + "@" + target));
+	}
+	
+	@Test
+	public void singleTargetIsUsedWithoutAskingForQuota() {
+		FakeTarget only = new FakeTarget("only", 0, 0);
+		assertSame(only, placer(only).place("r1"));
+		assertEquals(0, only.refreshed);
+	}
+	
+	@Test
+	public void mostFreeInstancesWinAtEqualLatency() {
+		FakeTarget small = new FakeTarget("small", 10, 50);
+		FakeTarget large = new FakeTarget("large", 40, 50);
+		assertSame(large, placer(small, large).place("r1"));
+	}
+	
+	@Test
+	public void latencyScalesTheScoreDown() {
+		// 100 / (1 + 1000 / 100) is about 9, against 20 / 1
+		FakeTarget slow = new FakeTarget("slow", 100, 1000);
+		FakeTarget fast = new FakeTarget("fast", 20, 0);
+		assertSame(fast, placer(slow, fast).place("r1"));
+		
+		// A latency equal to the weight only halves the score
+		FakeTarget busier = new FakeTarget("busier", 100, 100);
+		FakeTarget idle = new FakeTarget("idle", 40, 0);
+		assertSame(busier, placer(busier, idle).place("r2"));
+	}
+	
+	@Test
+	public void targetsThatCannotAnswerAreSkipped() {
+		FakeTarget down = new FakeTarget("down", -1, 0);
+		FakeTarget up = new FakeTarget("up", 1, 500);
+		assertSame(up, placer(down, up).place("r1"));
+		
+		FakeTarget alsoDown = new FakeTarget("alsoDown", -1, 0);
+		assertSame(down, placer(down, alsoDown).place("r2"));
+	}
+	
+	@Test
+	public void placementsStickUntilReleased() {
+		FakeTarget a = new FakeTarget("a", 10, 0);
+		FakeTarget b = new FakeTarget("b", 5, 0);
+		TargetPlacer placer = placer(a, b);
+		assertSame(a, placer.place("r1"));
+		assertSame(a, placer.place("r1"));
+		assertEquals(List.of("r1@a"), placed);
+		assertEquals(1, a.refreshed);
+		
+		placer.release("r1");
+		placer.restore(Map.of("r1", "b", "r2", "gone"));
+		assertSame(b, placer.place("r1"));
+		assertEquals(List.of("r1@a"), placed);
+	}
+	
+	@Test
+	public void plannedHostsCountAgainstTheQuota() {
+		Target target = new Target("t", new OpenStackClients());
+		int free = target.getFreeInstances();
+		target.plan();
+		target.plan();
+		assertEquals(free - 2, target.getFreeInstances());
+		target.booted();
+		assertEquals(free - 1, target.getFreeInstances());
+	}
+	
+}
@@ -0,0 +1,61 @@
+package com.rahman.shard.OpenStackShard.client;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+public class TokenBucketTest {
+
+	@Test
+	public void burstGoesOutAtOnce() throws InterruptedException {
+		TokenBucket bucket = new TokenBucket(1, 5);
+		long start = System.currentTimeMillis();
+		for(int i = 0; i < 5; i++) {
+			bucket.acquire();
+		}
+		assertTrue(System.currentTimeMillis() - start < 200, "A full bucket should not hold back its burst");
+	}
+	
+	@Test
+	public void holdsRequestsToTheRate() throws InterruptedException {
+		TokenBucket bucket = new TokenBucket(20, 1);
+		long start = System.currentTimeMillis();
+		for(int i = 0; i < 5; i++) {
+			bucket.acquire();
+		}
+		// The first token is there, the other four refill at 50ms each
+		long took = System.currentTimeMillis() - start;
+		assertTrue(took >= 180, "Took " + took + "ms");
+	}
+	
+	@Test
+	public void zeroRateIsUnlimited() throws InterruptedException {
+		TokenBucket bucket = new TokenBucket(0, 1);
+		long start = System.currentTimeMillis();
+		for(int i = 0; i < 1000; i++) {
+			bucket.acquire();
+		}
+		assertTrue(System.currentTimeMillis() - start < 200);
+	}
+	
+	@Test
+	public void pauseHoldsBackEvenAnUnlimitedBucket() throws InterruptedException {
+		TokenBucket bucket = new TokenBucket(0, 1);
+		bucket.pause(150);
+		long start = System.currentTimeMillis();
+		bucket.acquire();
+		long took = System.currentTimeMillis() - start;
+		assertTrue(took >= 130, "Took " + took + "ms");
+	}
+	
+	@Test
+	public void shorterPauseDoesNotCutALongerOneShort() throws InterruptedException {
+		TokenBucket bucket = new TokenBucket(0, 1);
+		bucket.pause(150);
+		bucket.pause(10);
+		long start = System.currentTimeMillis();
+		bucket.acquire();
+		assertTrue(System.currentTimeMillis() - start >= 130);
+	}
+	
+}
@@ -0,0 +1,133 @@
+package com.rahman.shard.OpenStackShard.journal;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.rahman.shard.OpenStackShard.teardown.RangeInventory.Type;
+
+public class BuildJournalTest {
+
+	@TempDir
+	Path dir;
+	
+	private BuildJournal open() throws IOException {
+		BuildJournal journal = new BuildJournal(dir.resolve("journal"), 0);
+		journal.open();
+		return journal;
+	}
+	
+	private List<String> lines() throws IOException {
+		return Files.readAllLines(dir.resolve("journal"), StandardCharsets.UTF_8);
+	}
+	
+	@Test
+	public void replaysIntentsIdsAndPlacements() throws IOException {
+		BuildJournal journal = open();
+		BuildJournal.await(journal.intent("r1", Type.SERVER, "web"));
+		BuildJournal.await(journal.created("r1", Type.SERVER, "web", "s-1"));
+		BuildJournal.await(journal.intent("r1", Type.VOLUME, "disk"));
+		BuildJournal.await(journal.placed("r1", "east"));
+		
+		BuildJournal replayed = open();
+		assertEquals("s-1", replayed.get("r1", Type.SERVER, "web").getId());
+		assertNotNull(replayed.get("r1", Type.VOLUME, "disk"));
+		assertNull(replayed.get("r1", Type.VOLUME, "disk").getId());
+		assertEquals(Map.of("r1", "east"), replayed.getPlacements());
+	}
+	
+	@Test
+	public void deletedRangesAreNotReplayed() throws IOException {
+		BuildJournal journal = open();
+		BuildJournal.await(journal.created("r1", Type.NETWORK, "net", "n-1"));
+		BuildJournal.await(journal.created("r2", Type.NETWORK, "net", "n-2"));
+		BuildJournal.await(journal.placed("r1", "east"));
+		BuildJournal.await(journal.rangeDeleted("r1"));
+		
+		BuildJournal replayed = open();
+		assertNull(replayed.get("r1", Type.NETWORK, "net"));
+		assertEquals("n-2", replayed.get("r2", Type.NETWORK, "net").getId());
+		assertTrue(replayed.getPlacements().isEmpty());
+	}
+	
+	@Test
+	public void tornLastLineIsSkippedAndLaterLinesStillReplay() throws IOException {
+		// Cut short halfway through the ID, which would otherwise parse
+		Files.write(dir.resolve("journal"), "CREATED\tr1\tSERVER\tweb\ts-1\nCREATED\tr1\tSERVER\tdb\ts-2".getBytes(StandardCharsets.UTF_8));
+		
+		BuildJournal journal = open();
+		assertEquals("s-1", journal.get("r1", Type.SERVER, "web").getId());
+		assertNull(journal.get("r1", Type.SERVER, "db"));
+		BuildJournal.await(journal.created("r1", Type.SERVER, "app", "s-3"));
+		
+		BuildJournal replayed = open();
+		assertEquals("s-1", replayed.get("r1", Type.SERVER, "web").getId());
+		assertNull(replayed.get("r1", Type.SERVER, "db"));
+		assertEquals("s-3", replayed.get("r1", Type.SERVER, "app").getId());
+	}
+	
+	@Test
+	public void malformedLinesAreSkipped() throws IOException {
+		Files.write(dir.resolve("journal"), "CREATED\tr1\tNOT_A_TYPE\tweb\ts-1\nBOGUS\nINTENT\tr1\tROUTER\tgw\n".getBytes(StandardCharsets.UTF_8));
+		
+		BuildJournal journal = open();
+		assertEquals(1, journal.getEntries().size());
+		assertNotNull(journal.get("r1", Type.ROUTER, "gw"));
+	}
+	
+	@Test
+	public void compactionKeepsOnlyWhatIsStillKnown() throws IOException {
+		BuildJournal journal = open();
+		for(int i = 0; i < 10; i++) {
+			BuildJournal.await(journal.intent("r1", Type.SERVER, "host" + i));
+			BuildJournal.await(journal.created("r1", Type.SERVER, "host" + i, "s-" + i));
+		}
+		BuildJournal.await(journal.created("r2", Type.SERVER, "gone", "s-x"));
+		BuildJournal.await(journal.rangeDeleted("r2"));
+		BuildJournal.await(journal.placed("r1", "east"));
+		journal.drop(journal.get("r1", Type.SERVER, "host0"));
+		
+		journal.compact();
+		// One placement, then an INTENT and a CREATED line per kept server
+		assertEquals(1 + 2 * 9, lines().size());
+		
+		BuildJournal replayed = open();
+		assertNull(replayed.get("r1", Type.SERVER, "host0"));
+		assertEquals("s-9", replayed.get("r1", Type.SERVER, "host9").getId());
+		assertEquals(9, replayed.getEntries().size());
+		assertEquals(Map.of("r1", "east"), replayed.getPlacements());
+	}
+	
+	@Test
+	public void linesWrittenAfterCompactionGoToTheNewFile() throws IOException {
+		BuildJournal journal = open();
+		BuildJournal.await(journal.created("r1", Type.ROUTER, "gw", "rt-1"));
+		journal.compact();
+		BuildJournal.await(journal.created("r1", Type.SUBNET, "net-Subnet", "sn-1"));
+		
+		BuildJournal replayed = open();
+		assertEquals("rt-1", replayed.get("r1", Type.ROUTER, "gw").getId());
+		assertEquals("sn-1", replayed.get("r1", Type.SUBNET, "net-Subnet").getId());
+	}
+	
+	@Test
+	public void namesWithTabsAndLineBreaksStayOnOneLine() throws IOException {
+		BuildJournal journal = open();
+		BuildJournal.await(journal.created("r1", Type.VOLUME, "a\tb\nc", "v-1"));
+		
+		BuildJournal replayed = open();
+		assertEquals("v-1", replayed.get("r1", Type.VOLUME, "a b c").getId());
+	}
+	
+}
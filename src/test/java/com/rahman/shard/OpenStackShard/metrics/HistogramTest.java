@@ -0,0 +1,53 @@
+package com.rahman.shard.OpenStackShard.metrics;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import org.junit.jupiter.api.Test;
+
+public class HistogramTest {
+
+	private final Histogram histogram = new Histogram(new long[] { 10, 100, 1000 });
+	
+	@Test
+	public void countsValuesIntoTheirBuckets() {
+		histogram.observe(10);
+		histogram.observe(11);
+		histogram.observe(1000);
+		histogram.observe(5000);
+		assertArrayEquals(new long[] { 1, 1, 1, 1 }, histogram.getBuckets());
+		assertEquals(4, histogram.getCount());
+		assertEquals(6021, histogram.getSum());
+	}
+	
+	@Test
+	public void emptyQuantileIsZero() {
+		assertEquals(0, histogram.quantile(0.5));
+	}
+	
+	@Test
+	public void quantileIsTheUpperBoundOfItsBucket() {
+		for(int i = 0; i < 90; i++) histogram.observe(5);
+		for(int i = 0; i < 9; i++) histogram.observe(50);
+		histogram.observe(500);
+		assertEquals(10, histogram.quantile(0.5));
+		assertEquals(10, histogram.quantile(0.9));
+		assertEquals(100, histogram.quantile(0.95));
+		assertEquals(100, histogram.quantile(0.99));
+		assertEquals(1000, histogram.quantile(1.0));
+	}
+	
+	@Test
+	public void lowestQuantileSkipsEmptyBuckets() {
+		histogram.observe(50);
+		assertEquals(100, histogram.quantile(0));
+	}
+	
+	@Test
+	public void overflowReportsTheHighestBound() {
+		histogram.observe(5);
+		histogram.observe(99999);
+		assertEquals(1000, histogram.quantile(0.99));
+	}
+	
+}
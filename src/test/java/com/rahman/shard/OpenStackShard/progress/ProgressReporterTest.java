@@ -0,0 +1,95 @@
+package com.rahman.shard.OpenStackShard.progress;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+public class ProgressReporterTest {
+
+	private final List<String> sent = new ArrayList<>();
+	private ProgressReporter reporter;
+	private long later;
+	
+	@BeforeEach
+	public void setUp() {
+		reporter = new ProgressReporter((rangeId, message) -> sent.add(rangeId + ": " + message));
+		reporter.setIntervalMillis(5000);
+		// Past the interval of any range started by the test
+		later = System.currentTimeMillis() + 10000;
+	}
+	
+	@Test
+	public void repeatedPollsWaitForTheSummary() {
+		reporter.started("r1", "Instance", "a", () -> "Started a");
+		reporter.started("r1", "Instance", "b", () -> "Started b");
+		for(int i = 0; i < 10; i++) {
+			reporter.waiting("r1", "Instance", "a", "BUILD", () -> "Still building a");
+			reporter.waiting("r1", "Instance", "b", "BUILD", () -> "Still building b");
+		}
+		assertEquals(List.of("r1: Started a", "r1: Started b"), sent);
+		
+		reporter.flush(later);
+		assertEquals(3, sent.size());
+		assertEquals("r1: Progress: 0/2 Instances Ready, 2 Waiting {BUILD=2}", sent.get(2));
+	}
+	
+	@Test
+	public void statusChangesAreSentStraightAway() {
+		reporter.started("r1", "Volume", "v", () -> "Started v");
+		reporter.waiting("r1", "Volume", "v", "creating", () -> "v creating");
+		reporter.waiting("r1", "Volume", "v", "creating", () -> "v creating");
+		reporter.waiting("r1", "Volume", "v", "downloading", () -> "v downloading");
+		assertEquals(List.of("r1: Started v", "r1: v downloading"), sent);
+	}
+	
+	@Test
+	public void summariesAreSentOncePerIntervalAndOnlyOnChange() {
+		reporter.started("r1", "Instance", "a", () -> "Started a");
+		reporter.flush(System.currentTimeMillis());
+		assertEquals(1, sent.size());
+		
+		reporter.flush(later);
+		assertEquals(2, sent.size());
+		reporter.flush(later + 10000);
+		assertEquals(2, sent.size());
+		
+		reporter.waiting("r1", "Instance", "a", "BUILD", () -> "a building");
+		reporter.flush(later + 4999);
+		assertEquals(2, sent.size());
+		reporter.flush(later + 5000);
+		assertEquals(3, sent.size());
+		assertEquals("r1: Progress: 0/1 Instances Ready, 1 Waiting {BUILD=1}", sent.get(2));
+	}
+	
+	@Test
+	public void finishedRangesStartOver() {
+		reporter.started("r1", "Instance", "a", () -> "Started a");
+		reporter.failed("r1", "Network", "n", () -> "n failed");
+		reporter.ready("r1", "Instance", "a", () -> "a ready");
+		reporter.flush(later);
+		assertEquals("r1: Progress: 1/1 Instances Ready; 0/1 Networks Ready, 1 Failed", sent.get(sent.size() - 1));
+		
+		reporter.started("r1", "Instance", "b", () -> "Started b");
+		reporter.flush(System.currentTimeMillis() + 10000);
+		assertEquals("r1: Progress: 0/1 Instances Ready, 1 Waiting {STARTING=1}", sent.get(sent.size() - 1));
+	}
+	
+	@Test
+	public void rangesAreSummarizedSeparately() {
+		reporter.started("r1", "Instance", "a", () -> "Started a");
+		reporter.started("r2", "Instance", "b", () -> "Started b");
+		reporter.ready("r2", "Instance", "b", () -> "b ready");
+		sent.clear();
+		
+		reporter.flush(later);
+		assertEquals(2, sent.size());
+		sent.sort(null);
+		assertEquals("r1: Progress: 0/1 Instances Ready, 1 Waiting {STARTING=1}", sent.get(0));
+		assertEquals("r2: Progress: 1/1 Instances Ready", sent.get(1));
+	}
+	
+}
@@ -0,0 +1,92 @@
+package com.rahman.shard.OpenStackShard.readiness;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+public class PollPolicyTest {
+
+	private static final int RUNS = 1000;
+	
+	private final PollPolicy exact = new PollPolicy(1000, 2.0, 0);
+	private final PollPolicy jittered = new PollPolicy(1000, 2.0, 0.2);
+	
+	/**
+	 * @return Profile expecting 10s, with a window from 8.4s to 13.2s
+	 */
+	private static LatencyProfile trained() {
+		LatencyProfile profile = new LatencyProfile();
+		for(int i = 0; i < 3; i++) {
+			profile.observe(10000);
+		}
+		return profile;
+	}
+	
+	@Test
+	public void backsOffExponentially() {
+		LatencyProfile untrained = new LatencyProfile();
+		assertEquals(1000, exact.nextDelay(0, 0, 60000, untrained));
+		assertEquals(2000, exact.nextDelay(1, 0, 60000, untrained));
+		assertEquals(8000, exact.nextDelay(3, 0, 60000, untrained));
+	}
+	
+	@Test
+	public void backoffStopsAtTheCap() {
+		LatencyProfile untrained = new LatencyProfile();
+		assertEquals(5000, exact.nextDelay(10, 0, 5000, untrained));
+		assertEquals(5000, exact.nextDelay(Integer.MAX_VALUE, 0, 5000, untrained));
+	}
+	
+	@Test
+	public void jitterStaysWithinItsFraction() {
+		LatencyProfile untrained = new LatencyProfile();
+		long min = Long.MAX_VALUE;
+		long max = 0;
+		for(int i = 0; i < RUNS; i++) {
+			long delay = jittered.nextDelay(2, 0, 60000, untrained);
+			min = Math.min(min, delay);
+			max = Math.max(max, delay);
+		}
+		assertTrue(min >= 3200, "Shortest " + min);
+		assertTrue(max <= 4800, "Longest " + max);
+		assertTrue(max - min > 400, "Delays should actually be spread out");
+	}
+	
+	@Test
+	public void jitterNeverExceedsTheCap() {
+		LatencyProfile untrained = new LatencyProfile();
+		for(int i = 0; i < RUNS; i++) {
+			long delay = jittered.nextDelay(10, 0, 5000, untrained);
+			assertTrue(delay >= 4000 && delay <= 5000, "Delay " + delay);
+		}
+	}
+	
+	@Test
+	public void delayIsAlwaysPositive() {
+		PollPolicy tiny = new PollPolicy(0, 2.0, 1.0);
+		for(int i = 0; i < RUNS; i++) {
+			assertTrue(tiny.nextDelay(0, 0, 0, new LatencyProfile()) >= 1);
+		}
+	}
+	
+	@Test
+	public void skipsAheadToTheExpectedWindow() {
+		assertEquals(8400, exact.nextDelay(0, 0, 60000, trained()));
+		assertEquals(3400, exact.nextDelay(0, 5000, 60000, trained()));
+		// Never skips further than the cap
+		assertEquals(2000, exact.nextDelay(0, 0, 2000, trained()));
+	}
+	
+	@Test
+	public void pollsAtTheShortDelayInsideTheWindow() {
+		assertEquals(1000, exact.nextDelay(5, 9000, 60000, trained()));
+		assertEquals(1000, exact.nextDelay(5, 13000, 60000, trained()));
+	}
+	
+	@Test
+	public void backsOffAgainAfterTheWindow() {
+		assertEquals(32000, exact.nextDelay(5, 20000, 60000, trained()));
+	}
+	
+}
@@ -0,0 +1,234 @@
+package com.rahman.shard.OpenStackShard.sim;
+
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+/**
+ * Simulated Nova: servers including multi-create, flavors and the project's limits
+ */
+public class ComputeApi extends SimApi {
+
+	private final AtomicInteger addresses = new AtomicInteger();
+	
+	public ComputeApi(SimCloud cloud) {
+		super(cloud);
+		flavor("1", "m1.tiny", 1, 512, 1);
+		flavor("2", "m1.small", 1, 2048, 20);
+		flavor("3", "m1.medium", 2, 4096, 40);
+		flavor("4", "m1.large", 4, 8192, 80);
+		flavor("5", "m1.xlarge", 8, 16384, 160);
+	}
+	
+	@Override
+	public SimResponse handle(SimRequest request) {
+		switch(request.getCollection()) {
+			case "servers": return servers(request);
+			case "flavors":
+				if(request.getId() != null) return one(200, "flavor", cloud.require("flavors", request.getId()).render());
+				return many("flavors", cloud.list("flavors", f -> true));
+			case "limits": return limits();
+			default: throw notFound(request);
+		}
+	}
+	
+	private SimResponse servers(SimRequest request) {
+		String id = request.getId();
+		if(id == null) {
+			if(request.getMethod().equals("POST")) return boot(require(request, "server"));
+			return page(request, "servers", cloud.list("servers", s -> matches(request, s)));
+		}
+		
+		SimResource server = cloud.require("servers", id);
+		if(request.getAction() != null) return new SimResponse(202, null);
+		switch(request.getMethod()) {
+			case "PUT":
+				String name = text(require(request, "server"), "name");
+				if(name != null) server.update(b -> b.put("name", name));
+				return one(200, "server", server.render());
+			case "DELETE":
+				if(!server.isDeleting()) {
+					server.delete(null, cloud.getSettings().delete("server"));
+					release(server);
+				}
+				return new SimResponse(204, null);
+			default:
+				return one(200, "server", server.render());
+		}
+	}
+	
+	private SimResponse boot(JsonNode create) {
+		SimResource flavor = cloud.get("flavors", text(create, "flavorRef"));
+		if(flavor == null) throw new SimFault(400, "Flavor " + text(create, "flavorRef") + " could not be found.");
+		int min = create.path("min_count").asInt(1);
+		int count = Math.max(min, create.path("max_count").asInt(min));
+		int vcpus = flavor.getBody().path("vcpus").asInt();
+		int ram = flavor.getBody().path("ram").asInt();
+		
+		ObjectNode networks = cloud.getMapper().createObjectNode();
+		for(JsonNode net : create.path("networks")) {
+			SimResource network = cloud.get("networks", text(net, "uuid"));
+			if(network == null) throw new SimFault(400, "Network " + text(net, "uuid") + " could not be found.");
+			networks.putArray(network.getBody().path("name").asText(network.getId()));
+		}
+		List<String> volumes = new ArrayList<>();
+		for(JsonNode bdm : create.path("block_device_mapping_v2")) {
+			if(!"volume".equals(text(bdm, "source_type"))) continue;
+			SimResource volume = cloud.get("volumes", text(bdm, "uuid"));
+			if(volume == null) throw new SimFault(400, "Block Device Mapping is Invalid: failed to get volume " + text(bdm, "uuid") + ".");
+			if(count > 1) throw new SimFault(400, "Block Device Mapping is Invalid: a volume can only be attached to one server.");
+			volumes.add(volume.getId());
+		}
+		
+		cloud.reserve("instances", count, 403);
+		try {
+			cloud.reserve("cores", vcpus * count, 403);
+		} catch(SimFault e) {
+			cloud.release("instances", count);
+			throw e;
+		}
+		try {
+			cloud.reserve("ram", ram * count, 403);
+		} catch(SimFault e) {
+			cloud.release("instances", count);
+			cloud.release("cores", vcpus * count);
+			throw e;
+		}
+		
+		String reservation = "r-" + SimCloud.newId().substring(0, 8);
+		SimResource first = null;
+		for(int i = 0; i < count; i++) {
+			String id = SimCloud.newId();
+			ObjectNode body = cloud.newBody(id);
+			String name = text(create, "name");
+			body.put("name", count > 1 ? name + "-" + (i + 1) : name);
+			body.put("user_id", "sim-user");
+			body.put("created", SimCloud.timestamp(System.currentTimeMillis()));
+			body.put("reservation_id", reservation);
+			body.put("hostId", "");
+			body.put("accessIPv4", "");
+			body.put("accessIPv6", "");
+			body.put("config_drive", create.path("config_drive").asText(""));
+			body.put("OS-EXT-AZ:availability_zone", "nova");
+			body.putObject("flavor").put("id", flavor.getId()).putArray("links");
+			if(text(create, "imageRef") != null && !text(create, "imageRef").isEmpty()) {
+				body.putObject("image").put("id", text(create, "imageRef")).putArray("links");
+			} else {
+				body.put("image", "");
+			}
+			body.set("metadata", create.has("metadata") ? create.get("metadata").deepCopy() : cloud.getMapper().createObjectNode());
+			ObjectNode addressed = networks.deepCopy();
+			addressed.fieldNames().forEachRemaining(net -> ((ArrayNode) addressed.get(net)).addObject()
+					.put("addr", nextAddress())
+					.put("version", 4)
+					.put("OS-EXT-IPS:type", "fixed"));
+			body.set("addresses", addressed);
+			body.putArray("security_groups").addObject().put("name", "default");
+			body.putArray("links");
+			boolean fails = cloud.fails("server");
+			if(fails) {
+				body.putObject("fault").put("code", 500).put("message", "No valid host was found. There are not enough hosts available.");
+			}
+			
+			SimResource server = cloud.add("servers", new SimResource(id, body, cloud.getSettings().provision("server"), "BUILD", "ACTIVE", "ERROR", fails, "updated"));
+			for(String volumeId : volumes) {
+				cloud.require("volumes", volumeId).update(v -> v.putArray("attachments").addObject()
+						.put("server_id", id)
+						.put("volume_id", volumeId)
+						.put("id", volumeId)
+						.put("device", "/dev/vda"));
+			}
+			if(first == null) first = server;
+		}
+		
+		if(create.path("return_reservation_id").asBoolean(false)) {
+			ObjectNode body = cloud.getMapper().createObjectNode();
+			body.put("reservation_id", reservation);
+			return new SimResponse(202, body);
+		}
+		return one(202, "server", first.render());
+	}
+	
+	/**
+	 * Supports the reservation_id, name and changes-since filters of GET /servers
+	 */
+	private boolean matches(SimRequest request, SimResource server) {
+		String reservation = request.getQuery("reservation_id");
+		if(reservation != null && !reservation.equals(server.getBody().path("reservation_id").asText())) return false;
+		String name = request.getQuery("name");
+		if(name != null && !server.getBody().path("name").asText().contains(name)) return false;
+		String since = request.getQuery("changes-since");
+		if(since != null) {
+			try {
+				if(server.getUpdated() < Instant.parse(since).toEpochMilli()) return false;
+			} catch(DateTimeParseException e) {
+				throw new SimFault(400, "Invalid changes-since value " + since);
+			}
+		}
+		return true;
+	}
+	
+	private SimResponse limits() {
+		ObjectNode body = cloud.getMapper().createObjectNode();
+		ObjectNode limits = body.putObject("limits");
+		limits.putArray("rate");
+		limits.putObject("absolute")
+			.put("maxTotalInstances", cloud.getSettings().quota("instances"))
+			.put("totalInstancesUsed", cloud.getUsed("instances"))
+			.put("maxTotalCores", cloud.getSettings().quota("cores"))
+			.put("totalCoresUsed", cloud.getUsed("cores"))
+			.put("maxTotalRAMSize", cloud.getSettings().quota("ram"))
+			.put("totalRAMUsed", cloud.getUsed("ram"))
+			.put("maxSecurityGroups", cloud.getSettings().quota("securityGroups"))
+			.put("totalSecurityGroupsUsed", cloud.getUsed("securityGroups"))
+			.put("maxSecurityGroupRules", cloud.getSettings().quota("securityGroupRules"))
+			.put("maxServerMeta", 128)
+			.put("maxImageMeta", 128)
+			.put("maxPersonality", 5)
+			.put("maxPersonalitySize", 10240)
+			.put("maxTotalKeypairs", 100)
+			.put("maxTotalFloatingIps", -1)
+			.put("totalFloatingIpsUsed", 0)
+			.put("maxServerGroups", 10)
+			.put("maxServerGroupMembers", 10)
+			.put("totalServerGroupsUsed", 0);
+		return new SimResponse(200, body);
+	}
+	
+	private void release(SimResource server) {
+		SimResource flavor = cloud.get("flavors", server.getBody().path("flavor").path("id").asText());
+		cloud.release("instances", 1);
+		if(flavor != null) {
+			cloud.release("cores", flavor.getBody().path("vcpus").asInt());
+			cloud.release("ram", flavor.getBody().path("ram").asInt());
+		}
+	}
+	
+	private void flavor(String id, String name, int vcpus, int ram, int disk) {
+		ObjectNode body = cloud.getMapper().createObjectNode();
+		body.put("id", id);
+		body.put("name", name);
+		body.put("vcpus", vcpus);
+		body.put("ram", ram);
+		body.put("disk", disk);
+		body.put("swap", "");
+		body.put("OS-FLV-EXT-DATA:ephemeral", 0);
+		body.put("OS-FLV-DISABLED:disabled", false);
+		body.put("os-flavor-access:is_public", true);
+		body.put("rxtx_factor", 1);
+		body.putArray("links");
+		cloud.add("flavors", new SimResource(id, body, 0, null, null, null, false, null));
+	}
+	
+	private String nextAddress() {
+		int n = addresses.incrementAndGet();
+		return String.format("10.%d.%d.%d", (n >> 16) & 0xff, (n >> 8) & 0xff, n & 0xff);
+	}
+
+}
@@ -0,0 +1,100 @@
+package com.rahman.shard.OpenStackShard.sim;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+/**
+ * Simulated Glance v2, a read only image catalog paged with limit and marker
+ */
+public class ImageApi extends SimApi {
+
+	public ImageApi(SimCloud cloud, int images) {
+		super(cloud);
+		String[] systems = { "ubuntu-22.04", "debian-12", "rocky-9", "windows-server-2022", "kali-2024" };
+		for(int i = 0; i < images; i++) {
+			String name = systems[i % systems.length] + (i < systems.length ? "" : "-" + (i / systems.length));
+			image(name, name.startsWith("windows") ? "windows" : "linux");
+		}
+	}
+	
+	@Override
+	public SimResponse handle(SimRequest request) {
+		if(!request.getCollection().equals("images") || !request.getMethod().equals("GET")) throw notFound(request);
+		if(request.getId() != null) {
+			// Glance answers a single image without a wrapping object
+			return new SimResponse(200, cloud.require("images", request.getId()).render());
+		}
+		
+		List<SimResource> images = cloud.list("images", i -> matches(request, i));
+		int start = 0;
+		String marker = request.getQuery("marker");
+		if(marker != null) {
+			for(int i = 0; i < images.size(); i++) {
+				if(images.get(i).getId().equals(marker)) start = i + 1;
+			}
+		}
+		// Glance caps the page size at api_limit_max whatever the client asks for
+		int limit = Math.min(cloud.getSettings().getPageLimit(), request.getQuery("limit") == null ? 25 : Integer.parseInt(request.getQuery("limit")));
+		List<SimResource> page = new ArrayList<>(images.subList(Math.min(start, images.size()), Math.min(start + limit, images.size())));
+		
+		SimResponse response = many("images", page);
+		ObjectNode body = (ObjectNode) response.getBody();
+		body.put("first", "/v2/images");
+		body.put("schema", "/v2/schemas/images");
+		if(start + limit < images.size()) body.put("next", "/v2/images?marker=" + page.get(page.size() - 1).getId() + "&limit=" + limit);
+		return response;
+	}
+	
+	@Override
+	public SimResponse fault(int status, String message) {
+		ObjectNode body = cloud.getMapper().createObjectNode();
+		body.put("message", message);
+		body.put("code", status);
+		return new SimResponse(status, body);
+	}
+	
+	private static boolean matches(SimRequest request, SimResource image) {
+		for(String field : new String[] { "status", "visibility", "name", "os_type" }) {
+			String value = request.getQuery(field);
+			if(value != null && !value.equals(image.getBody().path(field).asText(null))) return false;
+		}
+		String tag = request.getQuery("tag");
+		if(tag != null) {
+			boolean tagged = false;
+			for(JsonNode t : image.getBody().path("tags")) {
+				tagged |= tag.equals(t.asText());
+			}
+			if(!tagged) return false;
+		}
+		return true;
+	}
+	
+	private void image(String name, String osType) {
+		String id = SimCloud.newId();
+		ObjectNode body = cloud.getMapper().createObjectNode();
+		String now = SimCloud.timestamp(System.currentTimeMillis());
+		body.put("id", id);
+		body.put("name", name);
+		body.put("status", "active");
+		body.put("visibility", "public");
+		body.put("protected", false);
+		body.put("disk_format", "qcow2");
+		body.put("container_format", "bare");
+		body.put("size", 2147483648L);
+		body.put("min_disk", 0);
+		body.put("min_ram", 0);
+		body.put("os_type", osType);
+		body.put("owner", cloud.getProjectId());
+		body.put("created_at", now);
+		body.put("updated_at", now);
+		body.putArray("tags");
+		body.put("self", "/v2/images/" + id);
+		body.put("file", "/v2/images/" + id + "/file");
+		body.put("schema", "/v2/schemas/image");
+		cloud.add("images", new SimResource(id, body, 0, null, null, null, false, null));
+	}
+
+}
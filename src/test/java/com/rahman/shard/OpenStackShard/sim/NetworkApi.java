@@ -0,0 +1,342 @@
+package com.rahman.shard.OpenStackShard.sim;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+/**
+ * Simulated Neutron: networks, subnets, routers with their interfaces, security groups and
+ * security group rules, each with single and bulk creates and with tags
+ */
+public class NetworkApi extends SimApi {
+
+	/** Fields of a rule that make it a duplicate of another rule in the same group */
+	private static final String[] RULE_KEY = { "direction", "ethertype", "protocol", "port_range_min", "port_range_max", "remote_ip_prefix", "remote_group_id" };
+	
+	/** Subnets attached to each router */
+	private final Map<String, Set<String>> interfaces = new ConcurrentHashMap<>();
+	
+	public NetworkApi(SimCloud cloud) {
+		super(cloud);
+	}
+	
+	@Override
+	public SimResponse handle(SimRequest request) {
+		String collection = request.getCollection();
+		String id = request.getId();
+		if("tags".equals(request.getAction())) {
+			return tag(request, cloud.require(collection, id));
+		}
+		if(request.getAction() != null) {
+			if(!collection.equals("routers")) throw notFound(request);
+			return routerInterface(request, cloud.require("routers", id));
+		}
+		if(id == null) {
+			if(request.getMethod().equals("POST")) return create(request);
+			return page(request, collection.replace('-', '_'), cloud.list(collection, r -> matches(request, r)));
+		}
+		
+		SimResource resource = cloud.require(collection, id);
+		switch(request.getMethod()) {
+			case "PUT":
+				JsonNode update = require(request, singular(collection));
+				resource.update(b -> update.fieldNames().forEachRemaining(f -> {
+					if(!f.equals("id")) b.set(f, update.get(f).deepCopy());
+				}));
+				return one(200, singular(collection), render(resource));
+			case "DELETE":
+				delete(collection, resource);
+				return new SimResponse(204, null);
+			default:
+				return one(200, singular(collection), render(resource));
+		}
+	}
+	
+	@Override
+	public SimResponse fault(int status, String message) {
+		String type;
+		switch(status) {
+			case 400: type = "BadRequest"; break;
+			case 404: type = "NotFound"; break;
+			case 409: type = "Conflict"; break;
+			default: type = "NeutronError";
+		}
+		ObjectNode body = cloud.getMapper().createObjectNode();
+		body.putObject("NeutronError").put("type", type).put("message", message).put("detail", "");
+		return new SimResponse(status, body);
+	}
+	
+	@Override
+	protected ObjectNode render(SimResource resource) {
+		ObjectNode body = resource.render();
+		if(body.has("security_group_rules")) {
+			ArrayNode rules = body.putArray("security_group_rules");
+			for(SimResource rule : cloud.list("security-group-rules", r -> resource.getId().equals(r.getBody().path("security_group_id").asText()))) {
+				rules.add(rule.render());
+			}
+		}
+		return body;
+	}
+	
+	/**
+	 * Creates one resource or, when the body holds the plural name, all of them in one go
+	 */
+	private SimResponse create(SimRequest request) {
+		String collection = request.getCollection();
+		String name = singular(collection);
+		String plural = collection.replace('-', '_');
+		JsonNode body = request.getBody();
+		boolean bulk = body != null && body.path(plural).isArray();
+		
+		List<JsonNode> items = new ArrayList<>();
+		if(bulk) {
+			body.get(plural).forEach(items::add);
+		} else {
+			items.add(require(request, name));
+		}
+		String quota = quotaName(collection);
+		cloud.reserve(quota, items.size(), 409);
+		
+		List<SimResource> created = new ArrayList<>();
+		try {
+			for(JsonNode item : items) {
+				created.add(createOne(collection, item));
+			}
+		} catch(SimFault e) {
+			// Neutron creates all of a bulk request or none of it
+			cloud.release(quota, items.size() - created.size());
+			for(SimResource resource : created) {
+				delete(collection, resource);
+			}
+			throw e;
+		}
+		
+		if(!bulk) return one(201, name, render(created.get(0)));
+		SimResponse response = many(plural, created);
+		return new SimResponse(201, response.getBody());
+	}
+	
+	private SimResource createOne(String collection, JsonNode item) {
+		String id = SimCloud.newId();
+		ObjectNode body = cloud.newBody(id);
+		body.put("name", item.path("name").asText(""));
+		body.put("description", item.path("description").asText(""));
+		body.putArray("tags");
+		switch(collection) {
+			case "networks":
+				body.put("admin_state_up", item.path("admin_state_up").asBoolean(true));
+				body.put("shared", item.path("shared").asBoolean(false));
+				body.put("router:external", false);
+				body.put("mtu", 1450);
+				body.put("provider:network_type", "vxlan");
+				body.putArray("subnets");
+				boolean fails = cloud.fails("network");
+				return cloud.add(collection, new SimResource(id, body, cloud.getSettings().provision("network"), "BUILD", "ACTIVE", "ERROR", fails, null));
+			case "subnets":
+				SimResource network = cloud.get("networks", text(item, "network_id"));
+				if(network == null) throw new SimFault(404, "Network " + text(item, "network_id") + " could not be found.");
+				body.put("network_id", network.getId());
+				body.put("cidr", item.path("cidr").asText());
+				body.put("gateway_ip", text(item, "gateway_ip"));
+				body.put("ip_version", item.path("ip_version").asInt(4));
+				body.put("enable_dhcp", item.path("enable_dhcp").asBoolean(true));
+				body.set("allocation_pools", item.has("allocation_pools") ? item.get("allocation_pools").deepCopy() : cloud.getMapper().createArrayNode());
+				body.putArray("dns_nameservers");
+				body.putArray("host_routes");
+				network.update(n -> ((ArrayNode) n.get("subnets")).add(id));
+				return cloud.add(collection, new SimResource(id, body, 0, null, null, null, false, null));
+			case "routers":
+				body.put("admin_state_up", item.path("admin_state_up").asBoolean(true));
+				if(item.has("external_gateway_info")) {
+					body.set("external_gateway_info", item.get("external_gateway_info").deepCopy());
+				} else {
+					body.putNull("external_gateway_info");
+				}
+				body.putArray("routes");
+				interfaces.put(id, ConcurrentHashMap.newKeySet());
+				return cloud.add(collection, new SimResource(id, body, 0, "ACTIVE", "ACTIVE", "ERROR", false, null));
+			case "security-groups":
+				body.put("stateful", true);
+				body.putArray("security_group_rules");
+				SimResource group = cloud.add(collection, new SimResource(id, body, 0, null, null, null, false, null));
+				// Neutron gives every new group rules allowing all egress traffic
+				for(String ethertype : new String[] { "IPv4", "IPv6" }) {
+					ObjectNode egress = cloud.getMapper().createObjectNode();
+					egress.put("security_group_id", id);
+					egress.put("direction", "egress");
+					egress.put("ethertype", ethertype);
+					cloud.reserve("securityGroupRules", 1, 409);
+					createOne("security-group-rules", egress);
+				}
+				return group;
+			case "security-group-rules":
+				SimResource owner = cloud.get("security-groups", text(item, "security_group_id"));
+				if(owner == null) throw new SimFault(404, "Security group " + text(item, "security_group_id") + " does not exist");
+				body.put("security_group_id", owner.getId());
+				body.put("direction", item.path("direction").asText("ingress"));
+				body.put("ethertype", item.path("ethertype").asText("IPv4"));
+				for(String field : new String[] { "protocol", "port_range_min", "port_range_max", "remote_ip_prefix", "remote_group_id" }) {
+					if(item.has(field) && !item.get(field).isNull()) {
+						body.set(field, item.get(field).deepCopy());
+					} else {
+						body.putNull(field);
+					}
+				}
+				synchronized(this) {
+					for(SimResource rule : cloud.list(collection, r -> owner.getId().equals(r.getBody().path("security_group_id").asText()))) {
+						if(sameRule(rule.getBody(), body)) {
+							throw new SimFault(409, "Security group rule already exists. Rule id is " + rule.getId() + ".");
+						}
+					}
+					return cloud.add(collection, new SimResource(id, body, 0, null, null, null, false, null));
+				}
+			default:
+				throw new SimFault(404, "The resource could not be found.");
+		}
+	}
+	
+	private SimResponse routerInterface(SimRequest request, SimResource router) {
+		String subnetId = request.getBody() == null ? null : text(request.getBody(), "subnet_id");
+		SimResource subnet = subnetId == null ? null : cloud.get("subnets", subnetId);
+		if(subnet == null) throw new SimFault(404, "Subnet " + subnetId + " could not be found.");
+		Set<String> attached = interfaces.computeIfAbsent(router.getId(), k -> ConcurrentHashMap.newKeySet());
+		switch(request.getAction()) {
+			case "add_router_interface":
+				if(!attached.add(subnetId)) throw new SimFault(400, "Router " + router.getId() + " already has a port on subnet " + subnetId + ".");
+				break;
+			case "remove_router_interface":
+				if(!attached.remove(subnetId)) throw new SimFault(404, "Router " + router.getId() + " has no interface on subnet " + subnetId + ".");
+				break;
+			default:
+				throw notFound(request);
+		}
+		
+		ObjectNode body = cloud.getMapper().createObjectNode();
+		body.put("id", router.getId());
+		body.put("subnet_id", subnetId);
+		body.putArray("subnet_ids").add(subnetId);
+		body.put("port_id", SimCloud.newId());
+		body.put("network_id", subnet.getBody().path("network_id").asText());
+		body.put("tenant_id", cloud.getProjectId());
+		return new SimResponse(200, body);
+	}
+	
+	/**
+	 * Adds the tag in the path, the only tag call the shard makes
+	 */
+	private SimResponse tag(SimRequest request, SimResource resource) {
+		String tag = request.getTag();
+		if(!request.getMethod().equals("PUT") || tag == null) throw notFound(request);
+		resource.update(b -> {
+			for(JsonNode t : b.path("tags")) {
+				if(t.asText().equals(tag)) return;
+			}
+			b.withArray("tags").add(tag);
+		});
+		return new SimResponse(201, null);
+	}
+	
+	private void delete(String collection, SimResource resource) {
+		switch(collection) {
+			case "networks":
+				if(serversOn(resource)) throw new SimFault(409, "Unable to complete operation on network " + resource.getId() + ". There are one or more ports still in use on the network.");
+				for(JsonNode subnetId : resource.render().path("subnets")) {
+					if(attached(subnetId.asText())) throw new SimFault(409, "Unable to complete operation on network " + resource.getId() + ". There are one or more ports still in use on the network.");
+				}
+				for(JsonNode subnetId : resource.render().path("subnets")) {
+					SimResource subnet = cloud.get("subnets", subnetId.asText());
+					if(subnet != null) delete("subnets", subnet);
+				}
+				break;
+			case "subnets":
+				SimResource network = cloud.get("networks", resource.getBody().path("network_id").asText());
+				if(attached(resource.getId()) || (network != null && serversOn(network))) {
+					throw new SimFault(409, "Unable to complete operation on subnet " + resource.getId() + ": One or more ports have an IP allocation from this subnet.");
+				}
+				if(network != null) network.update(n -> {
+					ArrayNode subnets = cloud.getMapper().createArrayNode();
+					n.path("subnets").forEach(s -> {
+						if(!s.asText().equals(resource.getId())) subnets.add(s.asText());
+					});
+					n.set("subnets", subnets);
+				});
+				break;
+			case "routers":
+				Set<String> attached = interfaces.get(resource.getId());
+				if(attached != null && !attached.isEmpty()) throw new SimFault(409, "Router " + resource.getId() + " still has ports");
+				interfaces.remove(resource.getId());
+				break;
+			case "security-groups":
+				for(SimResource rule : cloud.list("security-group-rules", r -> resource.getId().equals(r.getBody().path("security_group_id").asText()))) {
+					delete("security-group-rules", rule);
+				}
+				break;
+			default:
+		}
+		if(!resource.isDeleting()) {
+			resource.delete(null, 0);
+			cloud.release(quotaName(collection), 1);
+		}
+	}
+	
+	/**
+	 * Supports the id, name, network_id and security_group_id filters of a listing, each of
+	 * which may be repeated to match any of its values, and the tags filter, a comma separated
+	 * list of tags the resource must all carry
+	 */
+	private static boolean matches(SimRequest request, SimResource resource) {
+		for(String field : new String[] { "id", "name", "network_id", "security_group_id" }) {
+			List<String> values = request.getQueries(field);
+			if(!values.isEmpty() && !values.contains(resource.getBody().path(field).asText(null))) return false;
+		}
+		String tags = request.getQuery("tags");
+		if(tags != null) {
+			Set<String> carried = new HashSet<>();
+			resource.getBody().path("tags").forEach(t -> carried.add(t.asText()));
+			for(String tag : tags.split(",")) {
+				if(!carried.contains(tag)) return false;
+			}
+		}
+		return true;
+	}
+	
+	private boolean serversOn(SimResource network) {
+		String name = network.getBody().path("name").asText();
+		return !cloud.list("servers", s -> s.getBody().path("addresses").has(name)).isEmpty();
+	}
+	
+	private boolean attached(String subnetId) {
+		for(Set<String> subnets : interfaces.values()) {
+			if(subnets.contains(subnetId)) return true;
+		}
+		return false;
+	}
+	
+	private static boolean sameRule(JsonNode a, JsonNode b) {
+		for(String field : RULE_KEY) {
+			if(!Objects.equals(a.path(field).asText(null), b.path(field).asText(null))) return false;
+		}
+		return true;
+	}
+	
+	private static String singular(String collection) {
+		return collection.substring(0, collection.length() - 1).replace('-', '_');
+	}
+	
+	private static String quotaName(String collection) {
+		switch(collection) {
+			case "security-groups": return "securityGroups";
+			case "security-group-rules": return "securityGroupRules";
+			default: return collection;
+		}
+	}
+
+}
@@ -0,0 +1,305 @@
+package com.rahman.shard.OpenStackShard.sim;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * An in-process OpenStack cloud answering the Keystone v3, Nova, Neutron, Cinder and Glance v2
+ * calls this shard makes, so builds can be measured without a real cloud or a network.
+ * <p>
+ * Point openstack4j at {@link #getEndpoint()} with any user name and password and the project
+ * from {@link #getProjectId()}. The token's catalog sends every service back to this server,
+ * which answers each request after a latency drawn from the operation's distribution and may
+ * answer it with an injected 429 or 500 instead. Servers, volumes and networks take their
+ * provisioning delay to become ready, and creates are refused once a quota is used up. See
+ * {@link SimSettings} for everything that can be configured.
+ * <p>
+ * Run on its own it serves on port sim.port (default 5000) until the process is stopped.
+ */
+public class OpenStackSimulator {
+
+	private static final DateTimeFormatter KEYSTONE_TIME = DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ss.SSSSSS'Z'").withZone(ZoneOffset.UTC);
+	
+	private final SimSettings settings;
+	private final SimCloud cloud;
+	private final Map<String, SimApi> services = new HashMap<>();
+	private final ConcurrentMap<String, Long> tokens = new ConcurrentHashMap<>();
+	private final ConcurrentMap<String, LongAdder> requests = new ConcurrentHashMap<>();
+	private final LongAdder throttled = new LongAdder();
+	private final LongAdder errors = new LongAdder();
+	private HttpServer server;
+	private ExecutorService workers;
+	
+	public OpenStackSimulator(SimSettings settings) {
+		this.settings = settings;
+		this.cloud = new SimCloud(settings, "sim-project");
+		services.put("compute", new ComputeApi(cloud));
+		services.put("network", new NetworkApi(cloud));
+		services.put("volume", new VolumeApi(cloud));
+		services.put("image", new ImageApi(cloud, 10));
+	}
+	
+	public static void main(String[] args) throws IOException {
+		String port = System.getProperty("sim.port");
+		OpenStackSimulator simulator = new OpenStackSimulator(new SimSettings(System::getProperty));
+		simulator.start(port == null ? 5000 : Integer.parseInt(port));
+		System.out.println("OpenStack Simulator Listening:");
+		System.out.println("\tEndpoint: " + simulator.getEndpoint());
+		System.out.println("\tProjectID: " + simulator.getProjectId());
+		System.out.println("\tUsername/Password: Any");
+	}
+	
+	/**
+	 * Starts serving
+	 * @param port Port to listen on, 0 for any free port
+	 */
+	public void start(int port) throws IOException {
+		AtomicInteger count = new AtomicInteger();
+		workers = Executors.newFixedThreadPool(settings.getWorkers(), r -> {
+			Thread t = new Thread(r, "openstack-sim-" + count.incrementAndGet());
+			t.setDaemon(true);
+			return t;
+		});
+		server = HttpServer.create(new InetSocketAddress("127.0.0.1", port), 1024);
+		server.createContext("/", this::serve);
+		server.setExecutor(workers);
+		server.start();
+	}
+	
+	/**
+	 * Stops serving, every resource is forgotten with the simulator
+	 */
+	public void stop() {
+		if(server != null) server.stop(0);
+		if(workers != null) workers.shutdownNow();
+	}
+	
+	/**
+	 * @return Keystone v3 endpoint to authenticate against
+	 */
+	public String getEndpoint() {
+		return getBaseUrl() + "/identity/v3";
+	}
+	
+	public String getProjectId() {
+		return cloud.getProjectId();
+	}
+	
+	public SimCloud getCloud() {
+		return cloud;
+	}
+	
+	/**
+	 * @return Requests served per operation since the last reset
+	 */
+	public Map<String, Long> getRequests() {
+		Map<String, Long> counts = new TreeMap<>();
+		requests.forEach((operation, count) -> counts.put(operation, count.sum()));
+		return counts;
+	}
+	
+	/**
+	 * @return Requests answered with an injected 429 since the last reset
+	 */
+	public long getThrottled() {
+		return throttled.sum();
+	}
+	
+	/**
+	 * @return Requests answered with an injected 500 since the last reset
+	 */
+	public long getErrors() {
+		return errors.sum();
+	}
+	
+	public void resetCounters() {
+		requests.clear();
+		throttled.reset();
+		errors.reset();
+	}
+	
+	private String getBaseUrl() {
+		return "http://127.0.0.1:" + server.getAddress().getPort();
+	}
+	
+	private void serve(HttpExchange exchange) throws IOException {
+		SimApi api = null;
+		SimResponse response;
+		try {
+			List<String> segments = new ArrayList<>();
+			for(String segment : exchange.getRequestURI().getRawPath().split("/")) {
+				if(!segment.isEmpty()) segments.add(URLDecoder.decode(segment, StandardCharsets.UTF_8.name()));
+			}
+			String service = segments.isEmpty() ? "" : segments.remove(0);
+			// Drop the version and project segments each service puts in its URLs
+			segments.removeIf(s -> s.matches("v\\d+(\\.\\d+)?") || s.equals(cloud.getProjectId()));
+			
+			byte[] raw = exchange.getRequestBody().readAllBytes();
+			JsonNode body = raw.length == 0 ? null : cloud.getMapper().readTree(new ByteArrayInputStream(raw));
+			SimRequest request = new SimRequest(exchange.getRequestMethod(), segments, query(exchange.getRequestURI().getRawQuery()), body);
+			String operation = request.getOperation();
+			requests.computeIfAbsent(operation, k -> new LongAdder()).increment();
+			api = services.get(service);
+			
+			sleep(settings.latency(operation));
+			if(service.equals("identity")) {
+				response = authenticate(request);
+			} else if(api == null) {
+				throw new SimFault(404, "No service at /" + service);
+			} else if(!isValid(exchange.getRequestHeaders().getFirst("X-Auth-Token"))) {
+				throw new SimFault(401, "The request you have made requires authentication.");
+			} else if(roll(settings.throttleRate(operation))) {
+				throttled.increment();
+				response = api.fault(429, "Rate limit exceeded for " + operation + ", retry later.").header("Retry-After", "1");
+			} else if(roll(settings.errorRate(operation))) {
+				errors.increment();
+				response = api.fault(500, "The server has either erred or is incapable of performing the requested operation.");
+			} else {
+				response = api.handle(request);
+			}
+		} catch(SimFault e) {
+			response = api == null ? keystoneFault(e.getStatus(), e.getMessage()) : api.fault(e.getStatus(), e.getMessage());
+		} catch(IOException e) {
+			response = keystoneFault(400, "Malformed request body: " + e.getMessage());
+		} catch(RuntimeException e) {
+			System.out.println("Simulator Failed To Answer " + exchange.getRequestMethod() + " " + exchange.getRequestURI() + ": " + e);
+			response = api == null ? keystoneFault(500, e.toString()) : api.fault(500, e.toString());
+		}
+		
+		try {
+			byte[] bytes = response.getBody() == null ? new byte[0] : cloud.getMapper().writeValueAsBytes(response.getBody());
+			exchange.getResponseHeaders().set("Content-Type", "application/json");
+			response.getHeaders().forEach((name, value) -> exchange.getResponseHeaders().set(name, value));
+			exchange.sendResponseHeaders(response.getStatus(), bytes.length == 0 ? -1 : bytes.length);
+			if(bytes.length > 0) {
+				try(OutputStream out = exchange.getResponseBody()) {
+					out.write(bytes);
+				}
+			}
+		} finally {
+			exchange.close();
+		}
+	}
+	
+	/**
+	 * Issues a token for any credentials, scoped to the simulated project, whose catalog
+	 * points every service back at this simulator
+	 */
+	private SimResponse authenticate(SimRequest request) {
+		if(!request.getMethod().equals("POST") || request.getBody() == null || !request.getBody().path("auth").isObject()) {
+			throw new SimFault(400, "Expecting to find auth in request body.");
+		}
+		String token = SimCloud.newId().replace("-", "");
+		long now = System.currentTimeMillis();
+		long expires = now + settings.getTokenSeconds() * 1000L;
+		tokens.put(token, expires);
+		
+		String user = request.getBody().path("auth").path("identity").path("password").path("user").path("name").asText("admin");
+		ObjectNode body = cloud.getMapper().createObjectNode();
+		ObjectNode t = body.putObject("token");
+		t.putArray("methods").add("password");
+		t.put("issued_at", KEYSTONE_TIME.format(Instant.ofEpochMilli(now)));
+		t.put("expires_at", KEYSTONE_TIME.format(Instant.ofEpochMilli(expires)));
+		t.putArray("audit_ids").add(token.substring(0, 22));
+		ObjectNode u = t.putObject("user");
+		u.put("id", "sim-user");
+		u.put("name", user);
+		u.putObject("domain").put("id", "default").put("name", "Default");
+		ObjectNode project = t.putObject("project");
+		project.put("id", cloud.getProjectId());
+		project.put("name", cloud.getProjectId());
+		project.putObject("domain").put("id", "default").put("name", "Default");
+		t.putArray("roles").addObject().put("id", "sim-member").put("name", "member");
+		
+		ArrayNode catalog = t.putArray("catalog");
+		service(catalog, "identity", "keystone", getEndpoint());
+		service(catalog, "compute", "nova", getBaseUrl() + "/compute/v2.1");
+		service(catalog, "network", "neutron", getBaseUrl() + "/network");
+		service(catalog, "volumev3", "cinderv3", getBaseUrl() + "/volume/v3/" + cloud.getProjectId());
+		service(catalog, "volumev2", "cinderv2", getBaseUrl() + "/volume/v2/" + cloud.getProjectId());
+		service(catalog, "volume", "cinder", getBaseUrl() + "/volume/v3/" + cloud.getProjectId());
+		service(catalog, "image", "glance", getBaseUrl() + "/image");
+		return new SimResponse(201, body).header("X-Subject-Token", token);
+	}
+	
+	/**
+	 * @return Error body in Keystone's format, also used for unknown services
+	 */
+	private SimResponse keystoneFault(int status, String message) {
+		ObjectNode body = cloud.getMapper().createObjectNode();
+		body.putObject("error").put("code", status).put("message", message).put("title", status == 401 ? "Unauthorized" : "Error");
+		return new SimResponse(status, body);
+	}
+	
+	private void service(ArrayNode catalog, String type, String name, String url) {
+		ObjectNode service = catalog.addObject();
+		service.put("id", name);
+		service.put("type", type);
+		service.put("name", name);
+		ArrayNode endpoints = service.putArray("endpoints");
+		for(String facing : new String[] { "public", "internal", "admin" }) {
+			endpoints.addObject()
+				.put("id", name + "-" + facing)
+				.put("interface", facing)
+				.put("region", settings.getRegion())
+				.put("region_id", settings.getRegion())
+				.put("url", url);
+		}
+	}
+	
+	private boolean isValid(String token) {
+		Long expires = token == null ? null : tokens.get(token);
+		return expires != null && expires > System.currentTimeMillis();
+	}
+	
+	private static Map<String, List<String>> query(String raw) throws IOException {
+		Map<String, List<String>> params = new HashMap<>();
+		if(raw == null) return params;
+		for(String pair : raw.split("&")) {
+			int eq = pair.indexOf('=');
+			if(eq < 0) continue;
+			params.computeIfAbsent(URLDecoder.decode(pair.substring(0, eq), StandardCharsets.UTF_8.name()), k -> new ArrayList<>())
+				.add(URLDecoder.decode(pair.substring(eq + 1), StandardCharsets.UTF_8.name()));
+		}
+		return params;
+	}
+	
+	private static boolean roll(double rate) {
+		return rate > 0 && ThreadLocalRandom.current().nextDouble() < rate;
+	}
+	
+	private static void sleep(long millis) {
+		if(millis <= 0) return;
+		try {
+			Thread.sleep(millis);
+		} catch(InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+}
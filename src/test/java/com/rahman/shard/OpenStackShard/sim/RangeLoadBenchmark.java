@@ -0,0 +1,275 @@
+package com.rahman.shard.OpenStackShard.sim;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadInfo;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import com.rahman.shard.OpenStackShard.ServerMultiCreate;
+import com.rahman.shard.OpenStackShard.client.ConnectorSettings;
+import com.rahman.shard.OpenStackShard.client.OpenStackClients;
+import com.rahman.shard.OpenStackShard.client.ServiceGovernor;
+import com.rahman.shard.OpenStackShard.metrics.Metrics;
+import com.rahman.shard.OpenStackShard.metrics.MetricsSnapshot;
+import com.rahman.shard.OpenStackShard.readiness.PollPolicy;
+import com.rahman.shard.OpenStackShard.readiness.ReadinessEngine;
+import com.rahman.shard.OpenStackShard.teardown.RangeInventory;
+import com.rahman.shard.OpenStackShard.teardown.RangeTeardown;
+
+/**
+ * Builds and tears down synthetic ranges of increasing size against an OpenStackSimulator and
+ * reports for each the wall-clock build and teardown time, the API calls made and the peak
+ * number of threads, so a change to the shard can be measured locally.
+ * <p>
+ * Usage: RangeLoadBenchmark [hosts ...], by default ranges of 10, 100 and 1000 hosts. Options are
+ * read from system properties: the sim.* properties of {@link SimSettings}, the shard's own
+ * http.*, limits.*, poll.*, bulk.*, multiCreate.* and teardown.threads properties, and
+ * <ul>
+ * <li>load.hostsPerNetwork - Hosts sharing each network (default 25)</li>
+ * <li>load.rules - Rules of the range's security group (default 10)</li>
+ * <li>load.tasks - Range tasks running at once, like the ARCTIC task pool (default 64)</li>
+ * </ul>
+ * Setting sim.timeScale below 1 shrinks every simulated delay to shorten the runs. The
+ * simulator's threads are left out of the thread count.
+ * <p>
+ * Ranges are built by a {@link SyntheticRange}, which does not run OpenStackShard's own tasks,
+ * see there for what is and is not covered, OpenStackShardTest runs those against the
+ * simulator. Surefire does not run this class, and since every thread it leaves behind is a
+ * daemon it exits once main returns. Run it from the test classpath, e.g.
+ * {@code mvn test-compile exec:java -Dexec.classpathScope=test -Dexec.mainClass=com.rahman.shard.OpenStackShard.sim.RangeLoadBenchmark}.
+ */
+public class RangeLoadBenchmark {
+
+	/** How often the live threads are counted */
+	private static final long SAMPLE_MILLIS = 50;
+	
+	private final Function<String, String> properties;
+	
+	public RangeLoadBenchmark(Function<String, String> properties) {
+		this.properties = properties;
+	}
+	
+	public static void main(String[] args) throws Exception {
+		List<Integer> sizes = new ArrayList<>();
+		for(String arg : args) {
+			sizes.add(Integer.parseInt(arg.trim()));
+		}
+		if(sizes.isEmpty()) sizes = List.of(10, 100, 1000);
+		
+		RangeLoadBenchmark benchmark = new RangeLoadBenchmark(System::getProperty);
+		List<Result> results = new ArrayList<>();
+		for(int hosts : sizes) {
+			results.add(benchmark.run(hosts));
+		}
+		
+		System.out.println();
+		System.out.println(String.format("%8s %10s %12s %10s %10s %8s %8s %8s", "Hosts", "Build(s)", "Teardown(s)", "Requests", "Calls", "429s", "Failed", "Threads"));
+		for(Result r : results) {
+			System.out.println(String.format("%8d %10.1f %12.1f %10d %10d %8d %8d %8d",
+					r.hosts, r.buildMillis / 1000.0, r.teardownMillis / 1000.0, r.requests, r.calls, r.throttled, r.failed, r.peakThreads));
+		}
+	}
+	
+	/**
+	 * Builds and tears down one range on a fresh simulator
+	 * @param hosts Hosts in the range
+	 * @return What the run measured
+	 */
+	public Result run(int hosts) throws Exception {
+		OpenStackSimulator simulator = new OpenStackSimulator(new SimSettings(properties));
+		simulator.start(0);
+		ExecutorService tasks = Executors.newFixedThreadPool(intProperty("load.tasks", 64), named("load-task"));
+		ThreadSampler sampler = new ThreadSampler();
+		try {
+			ConnectorSettings connector = new ConnectorSettings(properties);
+			OpenStackClients clients = new OpenStackClients();
+			clients.connect(simulator.getEndpoint(), "load", "load", "Default", simulator.getProjectId(), null, connector.toConfig());
+			clients.setGovernor(new ServiceGovernor(properties));
+			ReadinessEngine.shared().setPolicy(new PollPolicy(intProperty("poll.initialMillis", 1000), doubleProperty("poll.multiplier", 2.0), doubleProperty("poll.jitter", 0.2)));
+			
+			int maxBatch = intProperty("bulk.maxBatch", 100);
+			int linger = intProperty("bulk.lingerMillis", 50);
+			String multi = properties.apply("multiCreate");
+			ServerMultiCreate multiCreate = Boolean.parseBoolean(multi)
+					? new ServerMultiCreate(r -> clients, intProperty("multiCreate.maxBatch", 50), intProperty("multiCreate.lingerMillis", 500), intProperty("multiCreate.threads", 4))
+					: null;
+			RangeInventory inventory = new RangeInventory();
+			RangeTeardown teardown = new RangeTeardown(r -> clients, inventory, intProperty("teardown.threads", 16));
+			String rangeId = "load-" + hosts + "-" + System.currentTimeMillis();
+			SyntheticRange range = new SyntheticRange(rangeId, hosts, intProperty("load.hostsPerNetwork", 25), intProperty("load.rules", 10),
+					clients, inventory, multiCreate, maxBatch, linger);
+			
+			System.out.println(String.format("Building Synthetic Range Of %d Hosts...", hosts));
+			simulator.resetCounters();
+			long calls = countCalls();
+			sampler.start();
+			
+			long start = System.currentTimeMillis();
+			int failed = range.build(tasks);
+			long built = System.currentTimeMillis();
+			teardown.teardown(rangeId).get();
+			long tornDown = System.currentTimeMillis();
+			
+			Result result = new Result();
+			result.hosts = hosts;
+			result.buildMillis = built - start;
+			result.teardownMillis = tornDown - built;
+			result.failed = failed + inventory.count(rangeId);
+			result.calls = countCalls() - calls;
+			result.requests = simulator.getRequests().values().stream().mapToLong(Long::longValue).sum();
+			result.throttled = simulator.getThrottled();
+			result.peakThreads = sampler.stop();
+			System.out.println(String.format("Range Of %d Hosts Built In %.1fs And Torn Down In %.1fs", hosts, result.buildMillis / 1000.0, result.teardownMillis / 1000.0));
+			for(Map.Entry<String, Long> e : simulator.getRequests().entrySet()) {
+				System.out.println(String.format("\t%-40s %d", e.getKey(), e.getValue()));
+			}
+			return result;
+		} finally {
+			sampler.stop();
+			tasks.shutdownNow();
+			simulator.stop();
+		}
+	}
+	
+	/**
+	 * @return Calls made through OpenStackClients so far, retries of throttled calls included
+	 */
+	private static long countCalls() {
+		long calls = 0;
+		for(MetricsSnapshot.Summary s : Metrics.shared().snapshot().getApiLatency().values()) {
+			calls += s.getCount();
+		}
+		return calls;
+	}
+	
+	private int intProperty(String key, int def) {
+		return (int) doubleProperty(key, def);
+	}
+	
+	private double doubleProperty(String key, double def) {
+		String value = properties.apply(key);
+		if(value == null) return def;
+		try {
+			return Double.parseDouble(value.trim());
+		} catch(NumberFormatException e) {
+			System.out.println("Invalid Number For `" + key + "`, Using Default " + def);
+			return def;
+		}
+	}
+	
+	private static ThreadFactory named(String prefix) {
+		AtomicInteger count = new AtomicInteger();
+		return r -> {
+			Thread t = new Thread(r, prefix + "-" + count.incrementAndGet());
+			t.setDaemon(true);
+			return t;
+		};
+	}
+	
+	/**
+	 * What one run measured
+	 */
+	public static class Result {
+		private int hosts;
+		private long buildMillis;
+		private long teardownMillis;
+		private long requests;
+		private long calls;
+		private long throttled;
+		private int failed;
+		private int peakThreads;
+		
+		public int getHosts() {
+			return hosts;
+		}
+		
+		public long getBuildMillis() {
+			return buildMillis;
+		}
+		
+		public long getTeardownMillis() {
+			return teardownMillis;
+		}
+		
+		/**
+		 * @return Requests the simulator answered
+		 */
+		public long getRequests() {
+			return requests;
+		}
+		
+		/**
+		 * @return Calls made through OpenStackClients
+		 */
+		public long getCalls() {
+			return calls;
+		}
+		
+		/**
+		 * @return Requests answered with an injected 429
+		 */
+		public long getThrottled() {
+			return throttled;
+		}
+		
+		/**
+		 * @return Tasks that failed plus resources the teardown left behind
+		 */
+		public int getFailed() {
+			return failed;
+		}
+		
+		/**
+		 * @return Most threads alive at once, the simulator's own not counted
+		 */
+		public int getPeakThreads() {
+			return peakThreads;
+		}
+	}
+	
+	/**
+	 * Counts the live threads outside the simulator every few milliseconds and keeps the peak
+	 */
+	private static class ThreadSampler {
+		private final ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+		private volatile Thread sampler;
+		private volatile int peak;
+		
+		private void start() {
+			peak = 0;
+			sampler = new Thread(() -> {
+				while(!Thread.currentThread().isInterrupted()) {
+					int live = 0;
+					for(ThreadInfo info : threads.getThreadInfo(threads.getAllThreadIds(), 0)) {
+						if(info != null && !info.getThreadName().startsWith("openstack-sim-")) live++;
+					}
+					peak = Math.max(peak, live);
+					try {
+						Thread.sleep(SAMPLE_MILLIS);
+					} catch(InterruptedException e) {
+						return;
+					}
+				}
+			}, "load-thread-sampler");
+			sampler.setDaemon(true);
+			sampler.start();
+		}
+		
+		private int stop() {
+			Thread t = sampler;
+			if(t != null) {
+				t.interrupt();
+				sampler = null;
+			}
+			return peak;
+		}
+	}
+
+}
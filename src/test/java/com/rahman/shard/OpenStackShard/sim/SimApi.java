@@ -0,0 +1,133 @@
+package com.rahman.shard.OpenStackShard.sim;
+
+import java.util.List;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+/**
+ * One simulated OpenStack service working on the shared SimCloud
+ */
+public abstract class SimApi {
+
+	protected final SimCloud cloud;
+	
+	protected SimApi(SimCloud cloud) {
+		this.cloud = cloud;
+	}
+	
+	/**
+	 * @param request Request with a valid token
+	 * @return The answer, failures are thrown as a SimFault
+	 */
+	public abstract SimResponse handle(SimRequest request);
+	
+	/**
+	 * Builds the error body Nova and Cinder answer with, e.g. {"itemNotFound": {"code": 404, "message": ...}}
+	 * @param status HTTP status of the failure
+	 * @param message What went wrong
+	 * @return The error answer
+	 */
+	public SimResponse fault(int status, String message) {
+		String name;
+		switch(status) {
+			case 400: name = "badRequest"; break;
+			case 401: name = "unauthorized"; break;
+			case 403: name = "forbidden"; break;
+			case 404: name = "itemNotFound"; break;
+			case 409: name = "conflictingRequest"; break;
+			case 413: case 429: name = "overLimit"; break;
+			default: name = "computeFault";
+		}
+		ObjectNode body = cloud.getMapper().createObjectNode();
+		body.putObject(name).put("code", status).put("message", message);
+		return new SimResponse(status, body);
+	}
+	
+	/**
+	 * @return Answer holding a single resource under the given name
+	 */
+	protected SimResponse one(int status, String name, JsonNode resource) {
+		ObjectNode body = cloud.getMapper().createObjectNode();
+		body.set(name, resource);
+		return new SimResponse(status, body);
+	}
+	
+	/**
+	 * @return Answer holding every resource under the given name
+	 */
+	protected SimResponse many(String name, Iterable<SimResource> resources) {
+		ObjectNode body = cloud.getMapper().createObjectNode();
+		ArrayNode array = body.putArray(name);
+		for(SimResource resource : resources) {
+			array.add(render(resource));
+		}
+		return new SimResponse(200, body);
+	}
+	
+	/**
+	 * Answers one page of a listing the way Nova, Cinder and Neutron page: at most limit
+	 * resources, never more than sim.pageLimit, after the one named by marker, with a next
+	 * link under {@code <name>_links} while more follow
+	 * @param resources Every matching resource in listing order
+	 * @return Answer holding the page under the given name
+	 */
+	protected SimResponse page(SimRequest request, String name, List<SimResource> resources) {
+		int start = 0;
+		String marker = request.getQuery("marker");
+		if(marker != null) {
+			start = -1;
+			for(int i = 0; i < resources.size(); i++) {
+				if(resources.get(i).getId().equals(marker)) start = i + 1;
+			}
+			if(start < 0) throw new SimFault(400, "Marker " + marker + " could not be found.");
+		}
+		int limit = cloud.getSettings().getPageLimit();
+		String requested = request.getQuery("limit");
+		if(requested != null) {
+			try {
+				limit = Math.min(limit, Integer.parseInt(requested));
+			} catch(NumberFormatException e) {
+				throw new SimFault(400, "limit param must be an integer");
+			}
+		}
+		int end = Math.min(resources.size(), start + Math.max(1, limit));
+		SimResponse response = many(name, resources.subList(Math.min(start, end), end));
+		if(end < resources.size()) {
+			ObjectNode link = ((ObjectNode) response.getBody()).putArray(name + "_links").addObject();
+			link.put("rel", "next");
+			link.put("href", "/" + request.getCollection() + "?limit=" + limit + "&marker=" + resources.get(end - 1).getId());
+		}
+		return response;
+	}
+	
+	/**
+	 * @return JSON of the resource as the service shows it, by default as stored
+	 */
+	protected ObjectNode render(SimResource resource) {
+		return resource.render();
+	}
+	
+	/**
+	 * @return The named object of the request body, answering a 400 if it is missing
+	 */
+	protected static JsonNode require(SimRequest request, String name) {
+		JsonNode node = request.getBody() == null ? null : request.getBody().get(name);
+		if(node == null || !node.isObject()) throw new SimFault(400, "Missing `" + name + "` in request body.");
+		return node;
+	}
+	
+	/**
+	 * @return Value of the field as text, or null if it is missing or null
+	 */
+	protected static String text(JsonNode node, String field) {
+		JsonNode value = node.get(field);
+		return value == null || value.isNull() ? null : value.asText();
+	}
+	
+	protected static SimFault notFound(SimRequest request) {
+		return new SimFault(404, "The resource could not be found: " + request.getMethod() + " " + request.getOperation());
+	}
+
+}
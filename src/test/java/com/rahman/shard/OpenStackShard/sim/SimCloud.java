@@ -0,0 +1,161 @@
+package com.rahman.shard.OpenStackShard.sim;
+
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Predicate;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+/**
+ * State of the simulated project shared by every service: the resources of each collection
+ * and the quota used so far.
+ */
+public class SimCloud {
+
+	private final SimSettings settings;
+	private final String projectId;
+	private final ObjectMapper mapper = new ObjectMapper();
+	private final ConcurrentMap<String, ConcurrentMap<String, SimResource>> collections = new ConcurrentHashMap<>();
+	private final Map<String, Integer> used = new HashMap<>();
+	
+	public SimCloud(SimSettings settings, String projectId) {
+		this.settings = settings;
+		this.projectId = projectId;
+	}
+	
+	/**
+	 * Adds a resource to a collection
+	 * @param collection Collection such as servers or security-groups
+	 * @return The added resource
+	 */
+	public SimResource add(String collection, SimResource resource) {
+		collection(collection).put(resource.getId(), resource);
+		return resource;
+	}
+	
+	/**
+	 * @return The resource, or null once it is gone
+	 */
+	public SimResource get(String collection, String id) {
+		ConcurrentMap<String, SimResource> resources = collection(collection);
+		SimResource resource = resources.get(id);
+		if(resource != null && resource.isGone()) {
+			resources.remove(id, resource);
+			return null;
+		}
+		return resource;
+	}
+	
+	/**
+	 * @return The resource, answering a 404 if there is none
+	 */
+	public SimResource require(String collection, String id) {
+		SimResource resource = get(collection, id);
+		if(resource == null) throw new SimFault(404, collection + " " + id + " could not be found.");
+		return resource;
+	}
+	
+	/**
+	 * @param filter Picks the resources to return
+	 * @return Every resource of the collection that is not gone and matches, oldest first
+	 */
+	public List<SimResource> list(String collection, Predicate<SimResource> filter) {
+		List<SimResource> found = new ArrayList<>();
+		for(SimResource resource : collection(collection).values()) {
+			if(resource.isGone()) {
+				collection(collection).remove(resource.getId(), resource);
+			} else if(filter.test(resource)) {
+				found.add(resource);
+			}
+		}
+		// Same order on every call so markers page through a listing reliably
+		found.sort((a, b) -> a.getCreated() != b.getCreated() ? Long.compare(a.getCreated(), b.getCreated()) : a.getId().compareTo(b.getId()));
+		return found;
+	}
+	
+	/**
+	 * Takes quota, failing with the given status if the limit would be exceeded
+	 * @param name Quota such as instances
+	 * @param amount How much to take
+	 * @param status Status the service answers an exceeded quota with
+	 */
+	public synchronized void reserve(String name, int amount, int status) {
+		int limit = settings.quota(name);
+		int current = used.getOrDefault(name, 0);
+		if(limit >= 0 && current + amount > limit) {
+			throw new SimFault(status, String.format("Quota exceeded for %s: Requested %d, but already used %d of %d %s", name, amount, current, limit, name));
+		}
+		used.put(name, current + amount);
+	}
+	
+	/**
+	 * Gives back quota taken by a deleted resource
+	 */
+	public synchronized void release(String name, int amount) {
+		used.put(name, Math.max(0, used.getOrDefault(name, 0) - amount));
+	}
+	
+	/**
+	 * @return Quota used so far
+	 */
+	public synchronized int getUsed(String name) {
+		return used.getOrDefault(name, 0);
+	}
+	
+	/**
+	 * @param kind server, volume or network
+	 * @return Whether a new resource of the kind should end up in ERROR
+	 */
+	public boolean fails(String kind) {
+		double rate = settings.failureRate(kind);
+		return rate > 0 && ThreadLocalRandom.current().nextDouble() < rate;
+	}
+	
+	/**
+	 * @return A new JSON object with the common ID and project fields filled in
+	 */
+	public ObjectNode newBody(String id) {
+		ObjectNode body = mapper.createObjectNode();
+		body.put("id", id);
+		body.put("tenant_id", projectId);
+		body.put("project_id", projectId);
+		return body;
+	}
+	
+	public ObjectMapper getMapper() {
+		return mapper;
+	}
+	
+	public SimSettings getSettings() {
+		return settings;
+	}
+	
+	public String getProjectId() {
+		return projectId;
+	}
+	
+	public static String newId() {
+		return UUID.randomUUID().toString();
+	}
+	
+	/**
+	 * @return The time as OpenStack writes it, e.g. 2024-01-31T12:00:00Z
+	 */
+	public static String timestamp(long millis) {
+		return Instant.ofEpochMilli(millis).truncatedTo(ChronoUnit.SECONDS).toString();
+	}
+	
+	private ConcurrentMap<String, SimResource> collection(String name) {
+		return collections.computeIfAbsent(name, k -> new ConcurrentHashMap<>());
+	}
+
+}
@@ -0,0 +1,21 @@
+package com.rahman.shard.OpenStackShard.sim;
+
+/**
+ * An error answer of the simulated cloud, turned into the service's error body by the simulator
+ */
+public class SimFault extends RuntimeException {
+
+	private static final long serialVersionUID = 1L;
+	
+	private final int status;
+	
+	public SimFault(int status, String message) {
+		super(message);
+		this.status = status;
+	}
+	
+	public int getStatus() {
+		return status;
+	}
+	
+}
@@ -0,0 +1,66 @@
+package com.rahman.shard.OpenStackShard.sim;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * A log-normal delay given by its median and 99th percentile, which is roughly how API
+ * latency and provisioning times of a real cloud are spread: most near the median with a long
+ * tail of slow ones.
+ */
+public class SimLatency {
+
+	/** z-score of the 99th percentile of a normal distribution */
+	private static final double Z_99 = 2.326;
+	
+	private final long medianMillis;
+	private final long p99Millis;
+	private final double sigma;
+	
+	public SimLatency(long medianMillis, long p99Millis) {
+		this.medianMillis = Math.max(0, medianMillis);
+		this.p99Millis = Math.max(this.medianMillis, p99Millis);
+		this.sigma = this.medianMillis == 0 || this.p99Millis == this.medianMillis ? 0 : Math.log((double) this.p99Millis / this.medianMillis) / Z_99;
+	}
+	
+	/**
+	 * Parses "median,p99" or just "median" for a fixed delay
+	 * @param value Milliseconds as given in the simulator properties, may be null
+	 * @param def Used when the value is missing or invalid
+	 * @return The parsed latency
+	 */
+	public static SimLatency parse(String value, SimLatency def) {
+		if(value == null) return def;
+		try {
+			String[] parts = value.split(",");
+			long median = Long.parseLong(parts[0].trim());
+			long p99 = parts.length > 1 ? Long.parseLong(parts[1].trim()) : median;
+			return new SimLatency(median, p99);
+		} catch(NumberFormatException e) {
+			System.out.println("Invalid Latency `" + value + "`, Expected `median,p99` In Milliseconds");
+			return def;
+		}
+	}
+	
+	/**
+	 * @param scale Multiplier applied to the drawn delay
+	 * @return A random delay in milliseconds
+	 */
+	public long sample(double scale) {
+		double millis = sigma == 0 ? medianMillis : medianMillis * Math.exp(sigma * ThreadLocalRandom.current().nextGaussian());
+		return Math.round(millis * scale);
+	}
+	
+	public long getMedianMillis() {
+		return medianMillis;
+	}
+	
+	public long getP99Millis() {
+		return p99Millis;
+	}
+	
+	@Override
+	public String toString() {
+		return medianMillis + "ms (p99 " + p99Millis + "ms)";
+	}
+	
+}
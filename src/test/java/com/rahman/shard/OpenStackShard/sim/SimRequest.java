@@ -0,0 +1,98 @@
+package com.rahman.shard.OpenStackShard.sim;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+/**
+ * A request to one of the simulated services, with the version and project segments already
+ * taken out of the path
+ */
+public class SimRequest {
+
+	private final String method;
+	private final List<String> path;
+	private final Map<String, List<String>> query;
+	private final JsonNode body;
+	
+	/**
+	 * @param path Segments after the service, e.g. [servers, 1234] for /compute/v2.1/servers/1234
+	 */
+	public SimRequest(String method, List<String> path, Map<String, List<String>> query, JsonNode body) {
+		this.method = method;
+		this.path = path;
+		this.query = query == null ? Collections.emptyMap() : query;
+		this.body = body;
+	}
+	
+	/**
+	 * @return Name the request is configured and counted under, e.g. servers.create
+	 */
+	public String getOperation() {
+		if(path.isEmpty()) return "versions.get";
+		String collection = path.get(0);
+		if(getTag() != null) return collection + ".tag";
+		if(path.size() > 2) return collection + "." + path.get(path.size() - 1);
+		boolean item = path.size() == 2 && !path.get(1).equals("detail");
+		switch(method) {
+			case "POST": return collection + (item ? "." + path.get(1) : ".create");
+			case "PUT": return collection + ".update";
+			case "DELETE": return collection + ".delete";
+			default: return collection + (item ? ".get" : ".list");
+		}
+	}
+	
+	public String getMethod() {
+		return method;
+	}
+	
+	/**
+	 * @return Collection the request is about, e.g. servers
+	 */
+	public String getCollection() {
+		return path.isEmpty() ? "" : path.get(0);
+	}
+	
+	/**
+	 * @return ID of the addressed resource, null for the collection itself
+	 */
+	public String getId() {
+		return path.size() < 2 || path.get(1).equals("detail") ? null : path.get(1);
+	}
+	
+	/**
+	 * @return Action on the addressed resource, e.g. add_router_interface, or null
+	 */
+	public String getAction() {
+		return path.size() > 2 ? path.get(2) : null;
+	}
+	
+	/**
+	 * @return Tag of a Neutron tag request, e.g. tag for /networks/1234/tags/tag, or null
+	 */
+	public String getTag() {
+		return path.size() == 4 && path.get(2).equals("tags") ? path.get(3) : null;
+	}
+	
+	/**
+	 * @return First value of the query parameter, or null if it is missing
+	 */
+	public String getQuery(String name) {
+		List<String> values = query.get(name);
+		return values == null || values.isEmpty() ? null : values.get(0);
+	}
+	
+	/**
+	 * @return Every value of a query parameter that may be repeated, such as Neutron's id filter
+	 */
+	public List<String> getQueries(String name) {
+		return query.getOrDefault(name, Collections.emptyList());
+	}
+	
+	public JsonNode getBody() {
+		return body;
+	}
+
+}
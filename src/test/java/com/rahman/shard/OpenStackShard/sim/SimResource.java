@@ -0,0 +1,116 @@
+package com.rahman.shard.OpenStackShard.sim;
+
+import java.util.Objects;
+import java.util.function.Consumer;
+
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+/**
+ * A resource of the simulated cloud. Its status is worked out from the clock whenever it is
+ * read instead of being driven by timers, so thousands of resources provisioning at once cost
+ * nothing while nobody is looking at them.
+ */
+public class SimResource {
+
+	private final String id;
+	private final ObjectNode body;
+	private final long created = System.currentTimeMillis();
+	private final long readyAt;
+	private final String pendingStatus;
+	private final String readyStatus;
+	private final String failedStatus;
+	private final String updatedField;
+	private volatile String deletingStatus;
+	private volatile long deletedAt = Long.MAX_VALUE;
+	private volatile long goneAt = Long.MAX_VALUE;
+	
+	/**
+	 * @param body JSON of the resource without its status
+	 * @param provisionMillis Time until the resource is ready
+	 * @param fails Whether the resource ends up in its failed status instead
+	 * @param updatedField Field holding the time of the last status change, null if the API has none
+	 */
+	public SimResource(String id, ObjectNode body, long provisionMillis, String pendingStatus, String readyStatus, String failedStatus, boolean fails, String updatedField) {
+		this.id = id;
+		this.body = body;
+		this.readyAt = created + provisionMillis;
+		this.pendingStatus = pendingStatus;
+		this.readyStatus = fails ? failedStatus : readyStatus;
+		this.failedStatus = failedStatus;
+		this.updatedField = updatedField;
+	}
+	
+	/**
+	 * @return JSON of the resource as it looks now
+	 */
+	public ObjectNode render() {
+		long now = System.currentTimeMillis();
+		ObjectNode copy;
+		synchronized(body) {
+			copy = body.deepCopy();
+		}
+		String status = now >= deletedAt && deletingStatus != null ? deletingStatus : now >= readyAt ? readyStatus : pendingStatus;
+		if(status != null) copy.put("status", status);
+		if(updatedField != null) {
+			copy.put(updatedField, SimCloud.timestamp(getUpdated()));
+		}
+		return copy;
+	}
+	
+	/**
+	 * Starts deleting the resource
+	 * @param status Status shown until it is gone, null to keep the current one
+	 * @param goneMillis Time until the resource disappears
+	 */
+	public void delete(String status, long goneMillis) {
+		long now = System.currentTimeMillis();
+		this.deletingStatus = status;
+		this.deletedAt = now;
+		this.goneAt = now + goneMillis;
+	}
+	
+	/**
+	 * @param update Applied to the JSON of the resource while nobody reads it
+	 */
+	public void update(Consumer<ObjectNode> update) {
+		synchronized(body) {
+			update.accept(body);
+		}
+	}
+	
+	/**
+	 * @return The stored JSON, read it within {@link #update(Consumer)} if it may change
+	 */
+	public ObjectNode getBody() {
+		return body;
+	}
+	
+	public String getId() {
+		return id;
+	}
+	
+	public boolean isReady() {
+		return System.currentTimeMillis() >= readyAt && (failedStatus == null || !Objects.equals(readyStatus, failedStatus));
+	}
+	
+	public boolean isDeleting() {
+		return deletedAt != Long.MAX_VALUE;
+	}
+	
+	public boolean isGone() {
+		return System.currentTimeMillis() >= goneAt;
+	}
+	
+	public long getCreated() {
+		return created;
+	}
+	
+	/**
+	 * @return When the status last changed
+	 */
+	public long getUpdated() {
+		long now = System.currentTimeMillis();
+		return now >= deletedAt ? deletedAt : now >= readyAt ? readyAt : created;
+	}
+
+}
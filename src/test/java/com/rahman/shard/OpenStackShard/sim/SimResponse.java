@@ -0,0 +1,42 @@
+package com.rahman.shard.OpenStackShard.sim;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+/**
+ * An answer of one of the simulated services
+ */
+public class SimResponse {
+
+	private final int status;
+	private final JsonNode body;
+	private final Map<String, String> headers = new HashMap<>();
+	
+	/**
+	 * @param body JSON answered, null for an empty body
+	 */
+	public SimResponse(int status, JsonNode body) {
+		this.status = status;
+		this.body = body;
+	}
+	
+	public SimResponse header(String name, String value) {
+		headers.put(name, value);
+		return this;
+	}
+	
+	public int getStatus() {
+		return status;
+	}
+	
+	public JsonNode getBody() {
+		return body;
+	}
+	
+	public Map<String, String> getHeaders() {
+		return headers;
+	}
+
+}
@@ -0,0 +1,163 @@
+package com.rahman.shard.OpenStackShard.sim;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * Reads how the simulated cloud behaves from properties, looked up per operation so a single
+ * slow or flaky call can be simulated. Operations are named after the collection and what is
+ * done to it, e.g. servers.create, servers.get, servers.list, servers.update, servers.delete or
+ * routers.add_router_interface, and auth.tokens for Keystone.
+ * <p>
+ * Recognised properties:
+ * <ul>
+ * <li>sim.timeScale - Multiplier applied to every latency and provisioning delay (default 1.0)</li>
+ * <li>sim.region - Region of every catalog endpoint (default RegionOne)</li>
+ * <li>sim.workers - Requests the simulator serves at once (default 256)</li>
+ * <li>sim.tokenSeconds - Lifetime of an issued token (default 3600)</li>
+ * <li>sim.pageLimit - Most resources in one page of a listing, like Nova's and Cinder's osapi_max_limit (default 1000)</li>
+ * <li>sim.latency.&lt;operation&gt; - API latency as median,p99 in milliseconds, falling back to sim.latency.default (default 20,200)</li>
+ * <li>sim.errors.&lt;operation&gt; - Share of requests answered with a 500, falling back to sim.errors.default (default 0)</li>
+ * <li>sim.throttle.&lt;operation&gt; - Share of requests answered with a 429, falling back to sim.throttle.default (default 0)</li>
+ * <li>sim.provision.&lt;kind&gt; - Time until a server, volume, imageVolume or network is ready, as median,p99 in milliseconds</li>
+ * <li>sim.delete.&lt;kind&gt; - Time until a deleted server or volume is gone, as median,p99 in milliseconds</li>
+ * <li>sim.failures.&lt;kind&gt; - Share of servers, volumes or networks that end up in ERROR (default 0)</li>
+ * <li>sim.quota.&lt;name&gt; - Limit for instances, cores, ram, volumes, gigabytes, networks, subnets, routers,
+ * securityGroups or securityGroupRules, -1 for unlimited</li>
+ * </ul>
+ */
+public class SimSettings {
+
+	private static final SimLatency DEFAULT_LATENCY = new SimLatency(20, 200);
+	private static final Map<String, SimLatency> PROVISION_DEFAULTS = Map.of(
+			"server", new SimLatency(20000, 60000),
+			"volume", new SimLatency(3000, 10000),
+			"imageVolume", new SimLatency(30000, 90000),
+			"network", new SimLatency(500, 2000));
+	private static final Map<String, SimLatency> DELETE_DEFAULTS = Map.of(
+			"server", new SimLatency(3000, 10000),
+			"volume", new SimLatency(2000, 6000));
+	private static final Map<String, Integer> QUOTA_DEFAULTS = Map.of(
+			"instances", 2000,
+			"cores", 8000,
+			"ram", 16 * 1024 * 1024,
+			"volumes", 2000,
+			"gigabytes", 100000,
+			"networks", 500,
+			"subnets", 500,
+			"routers", 100,
+			"securityGroups", 500,
+			"securityGroupRules", 10000);
+	
+	private final Function<String, String> properties;
+	private final double timeScale;
+	private final String region;
+	private final int workers;
+	private final int tokenSeconds;
+	private final int pageLimit;
+	private final Map<String, SimLatency> latencies = new ConcurrentHashMap<>();
+	private final Map<String, Double> rates = new ConcurrentHashMap<>();
+	
+	public SimSettings(Function<String, String> properties) {
+		this.properties = properties;
+		this.timeScale = doubleValue(properties.apply("sim.timeScale"), 1.0);
+		String region = properties.apply("sim.region");
+		this.region = region == null ? "RegionOne" : region;
+		this.workers = (int) doubleValue(properties.apply("sim.workers"), 256);
+		this.tokenSeconds = (int) doubleValue(properties.apply("sim.tokenSeconds"), 3600);
+		this.pageLimit = Math.max(1, (int) doubleValue(properties.apply("sim.pageLimit"), 1000));
+	}
+	
+	/**
+	 * @param operation Operation such as servers.create
+	 * @return Time the simulator takes to answer the operation, already scaled
+	 */
+	public long latency(String operation) {
+		return latencies.computeIfAbsent("latency." + operation,
+				k -> SimLatency.parse(properties.apply("sim." + k), SimLatency.parse(properties.apply("sim.latency.default"), DEFAULT_LATENCY))).sample(timeScale);
+	}
+	
+	/**
+	 * @param kind server, volume, imageVolume or network
+	 * @return Time until a new resource of the kind is ready, already scaled
+	 */
+	public long provision(String kind) {
+		return latencies.computeIfAbsent("provision." + kind,
+				k -> SimLatency.parse(properties.apply("sim." + k), PROVISION_DEFAULTS.getOrDefault(kind, new SimLatency(0, 0)))).sample(timeScale);
+	}
+	
+	/**
+	 * @param kind server or volume
+	 * @return Time until a deleted resource of the kind is gone, already scaled
+	 */
+	public long delete(String kind) {
+		return latencies.computeIfAbsent("delete." + kind,
+				k -> SimLatency.parse(properties.apply("sim." + k), DELETE_DEFAULTS.getOrDefault(kind, new SimLatency(0, 0)))).sample(timeScale);
+	}
+	
+	/**
+	 * @return Share of the operation's requests answered with a 500
+	 */
+	public double errorRate(String operation) {
+		return rate("errors." + operation, "errors.default");
+	}
+	
+	/**
+	 * @return Share of the operation's requests answered with a 429
+	 */
+	public double throttleRate(String operation) {
+		return rate("throttle." + operation, "throttle.default");
+	}
+	
+	/**
+	 * @param kind server, volume or network
+	 * @return Share of the kind's resources that end up in ERROR
+	 */
+	public double failureRate(String kind) {
+		return rate("failures." + kind, "failures.default");
+	}
+	
+	/**
+	 * @param name Quota such as instances or gigabytes
+	 * @return Limit of the simulated project, -1 for unlimited
+	 */
+	public int quota(String name) {
+		return (int) doubleValue(properties.apply("sim.quota." + name), QUOTA_DEFAULTS.getOrDefault(name, -1));
+	}
+	
+	public double getTimeScale() {
+		return timeScale;
+	}
+	
+	public String getRegion() {
+		return region;
+	}
+	
+	public int getWorkers() {
+		return workers;
+	}
+	
+	public int getTokenSeconds() {
+		return tokenSeconds;
+	}
+	
+	public int getPageLimit() {
+		return pageLimit;
+	}
+	
+	private double rate(String key, String fallback) {
+		return rates.computeIfAbsent(key, k -> doubleValue(properties.apply("sim." + k), doubleValue(properties.apply("sim." + fallback), 0)));
+	}
+	
+	private static double doubleValue(String value, double def) {
+		if(value == null) return def;
+		try {
+			return Double.parseDouble(value.trim());
+		} catch(NumberFormatException e) {
+			System.out.println("Invalid Number `" + value + "`, Using Default " + def);
+			return def;
+		}
+	}
+
+}
@@ -0,0 +1,225 @@
+package com.rahman.shard.OpenStackShard.sim;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.openstack4j.api.Builders;
+import org.openstack4j.model.compute.Server;
+import org.openstack4j.model.compute.ServerCreate;
+import org.openstack4j.model.image.v2.Image;
+import org.openstack4j.model.network.AttachInterfaceType;
+import org.openstack4j.model.network.IPVersionType;
+import org.openstack4j.model.network.Network;
+import org.openstack4j.model.network.Router;
+import org.openstack4j.model.network.SecurityGroup;
+import org.openstack4j.model.network.SecurityGroupRule;
+import org.openstack4j.model.network.Subnet;
+
+import com.rahman.shard.OpenStackShard.OpenStackWaiter;
+import com.rahman.shard.OpenStackShard.ServerMultiCreate;
+import com.rahman.shard.OpenStackShard.bulk.BulkBatcher;
+import com.rahman.shard.OpenStackShard.bulk.NeutronBulkService;
+import com.rahman.shard.OpenStackShard.client.OpenStackClients;
+import com.rahman.shard.OpenStackShard.client.OpenStackService;
+import com.rahman.shard.OpenStackShard.teardown.RangeInventory;
+import com.rahman.shard.OpenStackShard.teardown.RangeTeardown;
+
+/**
+ * A generated range built with the shard's own machinery in the order the shard's tasks run:
+ * networks are bulk created and get their subnet once ACTIVE, the router attaches to each
+ * subnet as soon as it exists, the security group gets its rules in one bulk create and every
+ * host is booted, multi-created where possible, once its network is ready and then waited on
+ * through the ReadinessEngine.
+ * <p>
+ * Every host, network and the router run as their own blocking task on the given pool, like
+ * ArcticTasks on the ARCTIC task pool, so the pool size limits how much is built at once.
+ * <p>
+ * This is a copy of the build order, not the shard: OpenStackShard's task bodies need the
+ * ARCTIC runtime, so they are not run here. Not covered, and not reflected in the measured
+ * numbers when they change, are the BuildJournal and adopting resources of an interrupted
+ * build, the NetworkPipeline, the BootVolumePlanner's inline root disks, the VolumeWarmPool,
+ * the TargetPlacer and everything else in OpenStackShard's buildHost, buildNetwork and
+ * buildRouter. What is exercised are the pieces those tasks are built from: OpenStackClients
+ * and its ServiceGovernor, the BulkBatcher, ServerMultiCreate, the ReadinessEngine through
+ * OpenStackWaiter and the RangeTeardown.
+ */
+public class SyntheticRange {
+
+	private final String rangeId;
+	private final int hosts;
+	private final int hostsPerNetwork;
+	private final int rules;
+	private final OpenStackClients clients;
+	private final RangeInventory inventory;
+	private final ServerMultiCreate multiCreate;
+	private final BulkBatcher<String, Network, Network> networks;
+	private final BulkBatcher<String, Subnet, Subnet> subnets;
+	private final BulkBatcher<String, SecurityGroupRule, SecurityGroupRule> ruleBatcher;
+	private final AtomicInteger failed = new AtomicInteger();
+	
+	/**
+	 * @param hosts Hosts in the range
+	 * @param hostsPerNetwork Hosts sharing each network
+	 * @param rules Rules of the range's security group
+	 * @param multiCreate Boots identical hosts together, null to boot each host on its own
+	 * @param maxBatch Most networks, subnets or rules sent in one bulk request
+	 * @param lingerMillis How long a bulk request waits for more items
+	 */
+	public SyntheticRange(String rangeId, int hosts, int hostsPerNetwork, int rules, OpenStackClients clients, RangeInventory inventory,
+			ServerMultiCreate multiCreate, int maxBatch, long lingerMillis) {
+		this.rangeId = rangeId;
+		this.hosts = hosts;
+		this.hostsPerNetwork = Math.max(1, hostsPerNetwork);
+		this.rules = rules;
+		this.clients = clients;
+		this.inventory = inventory;
+		this.multiCreate = multiCreate;
+		NeutronBulkService bulk = new NeutronBulkService();
+		this.networks = new BulkBatcher<>("Network", maxBatch, lingerMillis,
+				(key, nets) -> new ArrayList<>(clients.call(OpenStackService.NETWORK, "networks.bulkCreate", c -> bulk.createNetworks(nets))),
+				(key, net) -> clients.call(OpenStackService.NETWORK, "networks.create", c -> c.networking().network().create(net)));
+		this.subnets = new BulkBatcher<>("Subnet", maxBatch, lingerMillis,
+				(key, subs) -> new ArrayList<>(clients.call(OpenStackService.NETWORK, "subnets.bulkCreate", c -> bulk.createSubnets(subs))),
+				(key, sub) -> clients.call(OpenStackService.NETWORK, "subnets.create", c -> c.networking().subnet().create(sub)));
+		this.ruleBatcher = new BulkBatcher<>("Security Group Rule", maxBatch, lingerMillis,
+				(key, items) -> new ArrayList<>(clients.call(OpenStackService.NETWORK, "securityGroupRules.bulkCreate", c -> bulk.createSecurityGroupRules(items))),
+				(key, rule) -> clients.call(OpenStackService.NETWORK, "securityGroupRules.create", c -> c.networking().securityrule().create(rule)));
+	}
+	
+	/**
+	 * Builds the range, blocking until every host is ACTIVE or has failed
+	 * @param pool Runs the range's tasks
+	 * @return Hosts, networks or attachments that failed
+	 */
+	public int build(ExecutorService pool) {
+		List<? extends Image> images = clients.call(OpenStackService.IMAGE, "images.list", c -> c.imagesV2().list(Map.of("limit", "1")));
+		if(images.isEmpty()) throw new IllegalStateException("Simulator Has No Images To Boot From");
+		String imageId = images.get(0).getId();
+		
+		List<CompletableFuture<?>> tasks = new ArrayList<>();
+		int networkCount = (hosts + hostsPerNetwork - 1) / hostsPerNetwork;
+		Map<Integer, CompletableFuture<Network>> ready = new HashMap<>();
+		for(int n = 0; n < networkCount; n++) {
+			int index = n;
+			CompletableFuture<Network> network = CompletableFuture.supplyAsync(() -> buildNetwork(index), pool);
+			ready.put(n, network);
+			tasks.add(network);
+		}
+		
+		tasks.add(CompletableFuture.supplyAsync(() -> buildRouter(ready), pool).thenCompose(f -> f));
+		tasks.add(CompletableFuture.runAsync(this::buildSecurityGroup, pool));
+		
+		for(int h = 0; h < hosts; h++) {
+			String name = rangeId + "-host-" + h;
+			CompletableFuture<Network> network = ready.get(h / hostsPerNetwork);
+			tasks.add(network.thenAcceptAsync(net -> buildHost(name, imageId, net), pool));
+		}
+		
+		for(CompletableFuture<?> task : tasks) {
+			try {
+				task.join();
+			} catch(RuntimeException e) {
+				failed.incrementAndGet();
+				System.out.println("Synthetic Range " + rangeId + " Task Failed: " + e.getMessage());
+			}
+		}
+		return failed.get();
+	}
+	
+	private Network buildNetwork(int index) {
+		String name = rangeId + "-net-" + index;
+		Network net = BulkBatcher.await(networks.submit(rangeId, Builders.network().name(name).adminStateUp(true).build()));
+		inventory.record(rangeId, RangeInventory.Type.NETWORK, net.getId());
+		try {
+			OpenStackWaiter.await(OpenStackWaiter.networkUp(clients, rangeId, net, 3000, 10));
+		} catch(Exception e) {
+			throw new IllegalStateException("Network " + name + " Never Came Up: " + e.getMessage(), e);
+		}
+		
+		// Each network gets its own /24 out of 10.0.0.0/8
+		String prefix = String.format("10.%d.%d", (index >> 8) & 0xff, index & 0xff);
+		Subnet s = BulkBatcher.await(subnets.submit(rangeId, Builders.subnet()
+				.name(name + "-Subnet")
+				.networkId(net.getId())
+				.enableDHCP(true)
+				.addPool(prefix + ".10", prefix + ".250")
+				.ipVersion(IPVersionType.V4)
+				.cidr(prefix + ".0/24")
+				.gateway(prefix + ".1")
+				.build()));
+		inventory.record(rangeId, RangeInventory.Type.SUBNET, s.getId());
+		net.getSubnets().add(s.getId());
+		return net;
+	}
+	
+	private CompletableFuture<Void> buildRouter(Map<Integer, CompletableFuture<Network>> ready) {
+		Router r = clients.call(OpenStackService.NETWORK, "routers.create", c -> c.networking().router().create(Builders.router()
+				.name(rangeId + "-router")
+				.adminStateUp(true)
+				.clearExternalGateway()
+				.build()));
+		inventory.record(rangeId, RangeInventory.Type.ROUTER, r.getId());
+		
+		List<CompletableFuture<?>> attached = new ArrayList<>();
+		for(CompletableFuture<Network> network : ready.values()) {
+			attached.add(network.thenAccept(net -> {
+				String subnetId = net.getSubnets().get(0);
+				clients.call(OpenStackService.NETWORK, "routers.attachInterface", c -> c.networking().router().attachInterface(r.getId(), AttachInterfaceType.SUBNET, subnetId));
+				inventory.record(rangeId, RangeInventory.Type.ROUTER_INTERFACE, RangeInventory.interfaceId(r.getId(), subnetId));
+			}));
+		}
+		return CompletableFuture.allOf(attached.toArray(new CompletableFuture[0]));
+	}
+	
+	private void buildSecurityGroup() {
+		SecurityGroup sg = clients.call(OpenStackService.NETWORK, "securityGroups.create", c -> c.networking().securitygroup().create(Builders.securityGroup()
+				.name(rangeId + "-sg")
+				.description("Synthetic Range " + rangeId)
+				.build()));
+		inventory.record(rangeId, RangeInventory.Type.SECURITY_GROUP, sg.getId());
+		
+		List<CompletableFuture<SecurityGroupRule>> created = new ArrayList<>();
+		for(int i = 0; i < rules; i++) {
+			created.add(ruleBatcher.submit(rangeId + "/" + sg.getId(), Builders.securityGroupRule()
+					.securityGroupId(sg.getId())
+					.direction("ingress")
+					.ethertype("IPv4")
+					.protocol("tcp")
+					.portRangeMin(1000 + i)
+					.portRangeMax(1000 + i)
+					.build()));
+		}
+		for(CompletableFuture<SecurityGroupRule> rule : created) {
+			BulkBatcher.await(rule);
+		}
+	}
+	
+	private void buildHost(String name, String imageId, Network net) {
+		ServerCreate create = Builders.server()
+				.name(name)
+				.flavor("2")
+				.image(imageId)
+				.configDrive(true)
+				.addMetadataItem(RangeTeardown.RANGE_TAG, rangeId)
+				.networks(List.of(net.getId()))
+				.build();
+		Server s;
+		if(multiCreate != null) {
+			s = multiCreate.boot(rangeId, imageId + "|net:" + net.getId(), name, create);
+		} else {
+			s = clients.call(OpenStackService.COMPUTE, "servers.boot", c -> c.compute().servers().boot(create));
+		}
+		inventory.record(rangeId, RangeInventory.Type.SERVER, s.getId());
+		try {
+			OpenStackWaiter.await(OpenStackWaiter.instanceAvailable(clients, rangeId, s, 5000, 10));
+		} catch(Exception e) {
+			throw new IllegalStateException("Host " + name + " Did Not Become Active: " + e.getMessage(), e);
+		}
+	}
+
+}
@@ -0,0 +1,131 @@
+package com.rahman.shard.OpenStackShard.sim;
+
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.Map;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+/**
+ * Simulated Cinder: volumes, blank or created from an image, which are in-use while a live
+ * server has them attached
+ */
+public class VolumeApi extends SimApi {
+
+	public VolumeApi(SimCloud cloud) {
+		super(cloud);
+	}
+	
+	@Override
+	public SimResponse handle(SimRequest request) {
+		if(!request.getCollection().equals("volumes")) throw notFound(request);
+		String id = request.getId();
+		if(id == null) {
+			if(request.getMethod().equals("POST")) return create(require(request, "volume"));
+			return page(request, "volumes", cloud.list("volumes", v -> matches(request, v)));
+		}
+		
+		SimResource volume = cloud.require("volumes", id);
+		if(request.getAction() != null) return new SimResponse(202, null);
+		switch(request.getMethod()) {
+			case "PUT":
+				JsonNode update = require(request, "volume");
+				volume.update(v -> {
+					if(update.has("name")) v.put("name", text(update, "name"));
+					if(update.has("description")) v.put("description", text(update, "description"));
+					if(update.has("metadata")) v.set("metadata", update.get("metadata").deepCopy());
+				});
+				return one(200, "volume", render(volume));
+			case "DELETE":
+				if(attachedServer(volume) != null) throw new SimFault(400, "Invalid volume: Volume status must be available or error or error_restoring or error_extending or error_managing and must not be migrating, attached, belong to a group, have snapshots or be disassociated from snapshots after volume transfer.");
+				if(!volume.isDeleting()) {
+					volume.delete("deleting", cloud.getSettings().delete("volume"));
+					cloud.release("volumes", 1);
+					cloud.release("gigabytes", volume.getBody().path("size").asInt());
+				}
+				return new SimResponse(202, null);
+			default:
+				return one(200, "volume", render(volume));
+		}
+	}
+	
+	@Override
+	protected ObjectNode render(SimResource volume) {
+		ObjectNode body = volume.render();
+		if(attachedServer(volume) != null) {
+			if(!volume.isDeleting() && volume.isReady()) body.put("status", "in-use");
+		} else {
+			body.putArray("attachments");
+		}
+		return body;
+	}
+	
+	private SimResponse create(JsonNode create) {
+		int size = create.path("size").asInt(0);
+		if(size <= 0) throw new SimFault(400, "Invalid input received: 'size' must be an integer and greater than 0.");
+		cloud.reserve("volumes", 1, 413);
+		try {
+			cloud.reserve("gigabytes", size, 413);
+		} catch(SimFault e) {
+			cloud.release("volumes", 1);
+			throw e;
+		}
+		
+		String id = SimCloud.newId();
+		ObjectNode body = cloud.newBody(id);
+		String image = text(create, "imageRef");
+		body.put("name", text(create, "name"));
+		body.put("description", text(create, "description"));
+		body.put("size", size);
+		body.put("volume_type", create.path("volume_type").asText("__DEFAULT__"));
+		body.put("availability_zone", create.path("availability_zone").asText("nova"));
+		body.put("bootable", String.valueOf(image != null));
+		body.put("multiattach", false);
+		body.put("created_at", SimCloud.timestamp(System.currentTimeMillis()));
+		body.set("metadata", create.has("metadata") ? create.get("metadata").deepCopy() : cloud.getMapper().createObjectNode());
+		if(image != null) body.putObject("volume_image_metadata").put("image_id", image);
+		body.putArray("attachments");
+		body.putArray("links");
+		
+		long provision = cloud.getSettings().provision(image == null ? "volume" : "imageVolume");
+		SimResource volume = cloud.add("volumes", new SimResource(id, body, provision, "creating", "available", "error", cloud.fails("volume"), "updated_at"));
+		return one(202, "volume", render(volume));
+	}
+	
+	/**
+	 * Supports the name and metadata filters of GET /volumes, metadata given as a JSON object
+	 * every pair of which the volume's metadata must hold
+	 */
+	private boolean matches(SimRequest request, SimResource volume) {
+		String name = request.getQuery("name");
+		if(name != null && !name.equals(volume.getBody().path("name").asText())) return false;
+		String metadata = request.getQuery("metadata");
+		if(metadata != null) {
+			JsonNode wanted;
+			try {
+				wanted = cloud.getMapper().readTree(metadata.replace('\'', '"'));
+			} catch(IOException e) {
+				throw new SimFault(400, "Invalid metadata filter " + metadata);
+			}
+			JsonNode held = volume.render().path("metadata");
+			for(Iterator<Map.Entry<String, JsonNode>> it = wanted.fields(); it.hasNext();) {
+				Map.Entry<String, JsonNode> pair = it.next();
+				if(!pair.getValue().asText().equals(held.path(pair.getKey()).asText(null))) return false;
+			}
+		}
+		return true;
+	}
+	
+	/**
+	 * @return ID of the live server the volume is attached to, or null
+	 */
+	private String attachedServer(SimResource volume) {
+		for(JsonNode attachment : volume.render().path("attachments")) {
+			String server = text(attachment, "server_id");
+			if(server != null && cloud.get("servers", server) != null) return server;
+		}
+		return null;
+	}
+
+}
@@ -0,0 +1,71 @@
+package com.rahman.shard.OpenStackShard.teardown;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.openstack4j.api.Builders;
+import org.openstack4j.model.compute.Server;
+
+import com.rahman.shard.OpenStackShard.client.OpenStackClients;
+import com.rahman.shard.OpenStackShard.client.OpenStackService;
+import com.rahman.shard.OpenStackShard.readiness.PollPolicy;
+import com.rahman.shard.OpenStackShard.readiness.ReadinessEngine;
+import com.rahman.shard.OpenStackShard.sim.OpenStackSimulator;
+import com.rahman.shard.OpenStackShard.sim.SimSettings;
+import com.rahman.shard.OpenStackShard.teardown.RangeInventory.Type;
+
+public class RangeTeardownTest {
+
+	private OpenStackSimulator simulator;
+	private OpenStackClients clients;
+	
+	@BeforeEach
+	public void setUp() throws Exception {
+		// Every server ends up in ERROR, a hundredth of the usual delays
+		Map<String, String> settings = Map.of("sim.timeScale", "0.01", "sim.failures.server", "1");
+		simulator = new OpenStackSimulator(new SimSettings(settings::get));
+		simulator.start(0);
+		clients = new OpenStackClients();
+		clients.connect(simulator.getEndpoint(), "test", "test", "Default", simulator.getProjectId(), null, null);
+		ReadinessEngine.shared().setPolicy(new PollPolicy(50, 1.5, 0));
+	}
+	
+	@AfterEach
+	public void tearDown() {
+		simulator.stop();
+	}
+	
+	@Test
+	public void serversInErrorAreTornDown() throws Exception {
+		String rangeId = "teardown-error";
+		Server server = clients.call(OpenStackService.COMPUTE, "servers.boot", c -> c.compute().servers().boot(Builders.server()
+				.name("broken")
+				.flavor("1")
+				.image("image")
+				.addMetadataItem(RangeTeardown.RANGE_TAG, rangeId)
+				.build()));
+		long deadline = System.currentTimeMillis() + 10000;
+		while(status(server.getId()) != Server.Status.ERROR && System.currentTimeMillis() < deadline) {
+			Thread.sleep(50);
+		}
+		assertEquals(Server.Status.ERROR, status(server.getId()));
+		
+		RangeInventory inventory = new RangeInventory();
+		inventory.record(rangeId, Type.SERVER, server.getId());
+		new RangeTeardown(r -> clients, inventory, 2).teardown(rangeId).get(60, TimeUnit.SECONDS);
+		
+		assertEquals(0, inventory.count(rangeId));
+		assertNull(clients.call(OpenStackService.COMPUTE, "servers.get", c -> c.compute().servers().get(server.getId())));
+	}
+	
+	private Server.Status status(String id) {
+		return clients.call(OpenStackService.COMPUTE, "servers.get", c -> c.compute().servers().get(id)).getStatus();
+	}
+	
+}